@@ -0,0 +1,72 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading and writing one codeset file, what unmarshalCodeset and
+ * marshalCodeset did in UpdateFromCDCSource and {@link CodesetIO} does now.
+ * The codeset is the NDC unit of sale codeset of a synthetic codebase of the
+ * given size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g", "-Dcom.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize=true" })
+public class CodesetIOBenchmark
+{
+  @Param({ "1000", "10000", "100000", "1000000" })
+  public int size;
+
+  private CodesetIO codesetIO;
+  private Codeset codeset;
+  private File dir;
+  private File file;
+  private int marshalledLength;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    codesetIO = new CodesetIO();
+    codeset = SyntheticCodesets.create(size, 1).get(0);
+    dir = Files.createTempDirectory("benchmark").toFile();
+    file = new File(dir, "codeset.xml");
+    codesetIO.marshal(codeset, file);
+    marshalledLength = (int) file.length();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    SyntheticCodesets.delete(dir);
+  }
+
+  @Benchmark
+  public Codeset unmarshalCodeset() throws Exception {
+    return codesetIO.unmarshal(file);
+  }
+
+  @Benchmark
+  public int marshalCodeset() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(marshalledLength);
+    codesetIO.marshal(codeset, out);
+    return out.size();
+  }
+}
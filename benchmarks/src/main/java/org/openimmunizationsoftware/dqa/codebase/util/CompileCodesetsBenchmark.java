@@ -0,0 +1,78 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The two steps of {@link CompileCodesets} over the set files of a synthetic
+ * codebase: compiling them into Compiled.xml, every set file recompiled each
+ * time, and writing Compiled.bin from it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g", "-Dcom.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize=true" })
+public class CompileCodesetsBenchmark
+{
+  @Param({ "1000", "10000", "100000", "1000000" })
+  public int size;
+
+  private File dir;
+  private File compiledFile;
+  private File binaryFile;
+  private CodesetCompiler compiler;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory("benchmark").toFile();
+    File setLocationFile = new File(dir, "sets");
+    setLocationFile.mkdir();
+    SyntheticCodesets.write(SyntheticCodesets.create(size, 1), setLocationFile);
+    compiledFile = new File(dir, "Compiled.xml");
+    binaryFile = new File(dir, CompileCodesets.BINARY_FILENAME);
+    compiler = new CodesetCompiler(setLocationFile);
+    compiler.setOut(new PrintStream(new OutputStream() {
+      @Override
+      public void write(int b) {
+        // discard
+      }
+    }));
+    compiler.setRebuild(true);
+    compiler.compile(compiledFile);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    SyntheticCodesets.delete(dir);
+  }
+
+  @Benchmark
+  public int compile() throws Exception {
+    return compiler.compile(compiledFile);
+  }
+
+  @Benchmark
+  public long writeBinary() throws Exception {
+    CompiledCodebaseWriter.write(compiledFile, binaryFile);
+    return binaryFile.length();
+  }
+}
@@ -0,0 +1,75 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adding the links back between all the codesets of a synthetic codebase, what
+ * crossLink did in UpdateFromCDCSource and {@link CrossLinker} does now.
+ * Linking changes the codesets, so each call gets a fresh copy and is timed
+ * on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CrossLinkBenchmark
+{
+  private static final PrintStream NOWHERE = new PrintStream(new OutputStream() {
+    @Override
+    public void write(int b) {
+      // discard
+    }
+  });
+
+  @Param({ "1000", "10000", "100000", "1000000" })
+  public int size;
+
+  private ForkJoinPool pool;
+  private CrossLinker crossLinker;
+
+  @Setup(Level.Trial)
+  public void setUpPool() {
+    pool = new ForkJoinPool();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownPool() {
+    pool.shutdown();
+  }
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    crossLinker = new CrossLinker(SyntheticCodesets.createIndexed(size, 1), NOWHERE);
+  }
+
+  @Benchmark
+  public List<Codeset> crossLinkSerial() {
+    return crossLinker.linkSerial();
+  }
+
+  @Benchmark
+  public List<Codeset> crossLinkParallel() {
+    return crossLinker.link(pool);
+  }
+}
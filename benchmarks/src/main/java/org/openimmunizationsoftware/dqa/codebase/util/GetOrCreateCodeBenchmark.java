@@ -0,0 +1,72 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Finding or adding codes by value, what getOrCreateCode did in
+ * UpdateFromCDCSource and {@link IndexedCodeset#getOrCreate(String)} does
+ * now. One benchmark finds codes that are already there, in a mixed case as
+ * the sources write them, the other fills an empty codeset with every value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GetOrCreateCodeBenchmark
+{
+  @Param({ "1000", "10000", "100000", "1000000" })
+  public int size;
+
+  private IndexedCodeset indexedCodeset;
+  private String[] values;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    values = new String[size];
+    Codeset codeset = new Codeset();
+    for (int i = 0; i < size; i++) {
+      values[i] = SyntheticCodesets.value(0, i);
+      Code code = new Code();
+      code.setValue(values[i]);
+      codeset.getCode().add(code);
+    }
+    indexedCodeset = new IndexedCodeset(codeset);
+    for (int i = 0; i < size; i += 2) {
+      values[i] = values[i].toLowerCase();
+    }
+  }
+
+  @Benchmark
+  public Code getOrCreateExisting() {
+    next = next + 1 == size ? 0 : next + 1;
+    return indexedCodeset.getOrCreate(values[next]);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public IndexedCodeset getOrCreateAll() {
+    IndexedCodeset filled = new IndexedCodeset(new Codeset());
+    for (String value : values) {
+      filled.getOrCreate(value);
+    }
+    return filled;
+  }
+}
@@ -0,0 +1,107 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase.Codeset.Code;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matching lot numbers against the lot number patterns, by first character
+ * with {@link LotNumberMatcher#match(String)} and by trying every pattern with
+ * {@link LotNumberMatcher#matchEvery(String)}. Each operation matches one lot
+ * number, so the score is in lots per second. The patterns and lot numbers
+ * are generated, most of the patterns anchored on two letters the way
+ * manufacturers write them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LotNumberMatcherBenchmark
+{
+  @Param({ "30", "300", "3000" })
+  public int patternCount;
+
+  @Param({ "10000", "200000" })
+  public int lotCount;
+
+  private LotNumberMatcher matcher;
+  private String[] lotNumbers;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(1);
+    Codebase.Codeset patternCodeset = new Codebase.Codeset();
+    patternCodeset.setType(CodesetType.LOT_NUMBER_PATTERN);
+    for (int i = 0; i < patternCount; i++) {
+      Code code = new Code();
+      switch (i % 10) {
+      case 0:
+        code.setValue("\\d{" + (4 + random.nextInt(4)) + "}$");
+        break;
+      case 1:
+        code.setValue("^[" + letter(random) + "-Z]\\d+");
+        break;
+      default:
+        code.setValue("^" + letter(random) + letter(random) + "\\d{" + (3 + random.nextInt(4)) + "}$");
+      }
+      Code.Reference reference = new Code.Reference();
+      Code.Reference.LinkTo linkTo = new Code.Reference.LinkTo();
+      linkTo.setCodeset(CodesetType.MVX);
+      linkTo.setValue("M" + (i % 3));
+      reference.getLinkTo().add(linkTo);
+      code.setReference(reference);
+      patternCodeset.getCode().add(code);
+    }
+    Codebase codebase = new Codebase();
+    codebase.getCodeset().add(patternCodeset);
+    matcher = new LotNumberMatcher(new CodebaseIndex(codebase));
+
+    lotNumbers = new String[lotCount];
+    for (int i = 0; i < lotCount; i++) {
+      StringBuilder sb = new StringBuilder();
+      sb.append(letter(random)).append(letter(random));
+      int digits = 3 + random.nextInt(5);
+      for (int j = 0; j < digits; j++) {
+        sb.append((char) ('0' + random.nextInt(10)));
+      }
+      lotNumbers[i] = sb.toString();
+    }
+  }
+
+  private static char letter(Random random) {
+    return (char) ('A' + random.nextInt(26));
+  }
+
+  private String nextLotNumber() {
+    next = next + 1 == lotCount ? 0 : next + 1;
+    return lotNumbers[next];
+  }
+
+  @Benchmark
+  public List<Code> match() {
+    return matcher.match(nextLotNumber());
+  }
+
+  @Benchmark
+  public List<Code> matchEvery() {
+    return matcher.matchEvery(nextLotNumber());
+  }
+}
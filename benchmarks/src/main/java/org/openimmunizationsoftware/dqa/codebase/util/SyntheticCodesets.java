@@ -0,0 +1,111 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.bind.JAXBException;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code.Reference;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code.Reference.LinkTo;
+
+/**
+ * Builds codesets of any size for the benchmarks. The codes are spread over
+ * the codeset types below the way the real codebase spreads them, with most
+ * of them NDCs, and each links to a few codes of the other types, some of
+ * which do not exist. The same size and seed always give the same codesets.
+ */
+final class SyntheticCodesets
+{
+  static final String[] TYPES = { CodesetType.NDC_UNIT_OF_SALE, CodesetType.NDC_UNIT_OF_USE, CodesetType.CVX,
+      CodesetType.MVX, CodesetType.VACCINE_GROUP };
+  private static final String[] PREFIXES = { "S", "U", "C", "M", "G" };
+  private static final int[] SHARES = { 45, 45, 6, 2, 2 };
+  private static final String[] STATUSES = { "Valid", "Valid", "Valid", "Deprecated", "Invalid" };
+
+  private SyntheticCodesets() {
+    // static only
+  }
+
+  /**
+   * @return how many of the codes are of the type at this position
+   */
+  static int codeCount(int size, int type) {
+    return Math.max(1, (int) ((long) size * SHARES[type] / 100));
+  }
+
+  static String value(int type, int i) {
+    return PREFIXES[type] + String.format("%07d", i);
+  }
+
+  static List<Codeset> create(int size, long seed) {
+    Random random = new Random(seed);
+    List<Codeset> codesetList = new ArrayList<>();
+    for (int type = 0; type < TYPES.length; type++) {
+      Codeset codeset = new Codeset();
+      codeset.setType(TYPES[type]);
+      codeset.setLabel("Synthetic " + TYPES[type]);
+      int codeCount = codeCount(size, type);
+      for (int i = 0; i < codeCount; i++) {
+        Code code = new Code();
+        code.setValue(value(type, i));
+        code.setLabel("Synthetic code " + i + " of " + TYPES[type]);
+        code.setDescription(i % 3 == 0 ? "A longer description of synthetic code " + i : null);
+        Code.CodeStatus codeStatus = new Code.CodeStatus();
+        codeStatus.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+        code.setCodeStatus(codeStatus);
+        int linkCount = random.nextInt(4);
+        if (linkCount > 0) {
+          Reference reference = new Reference();
+          for (int l = 0; l < linkCount; l++) {
+            int target = random.nextInt(TYPES.length);
+            // one link in twenty goes to a code that does not exist
+            int targetCount = codeCount(size, target) + (random.nextInt(20) == 0 ? 1 : 0);
+            LinkTo linkTo = new LinkTo();
+            linkTo.setCodeset(TYPES[target]);
+            linkTo.setValue(value(target, random.nextInt(targetCount)));
+            reference.getLinkTo().add(linkTo);
+          }
+          code.setReference(reference);
+        }
+        codeset.getCode().add(code);
+      }
+      codesetList.add(codeset);
+    }
+    return codesetList;
+  }
+
+  static List<IndexedCodeset> createIndexed(int size, long seed) {
+    List<IndexedCodeset> indexedCodesetList = new ArrayList<>();
+    for (Codeset codeset : create(size, seed)) {
+      indexedCodesetList.add(new IndexedCodeset(codeset));
+    }
+    return indexedCodesetList;
+  }
+
+  /**
+   * Writes the codesets into the directory as set files, one per type.
+   */
+  static void write(List<Codeset> codesetList, File setLocationFile) throws JAXBException {
+    CodesetIO codesetIO = new CodesetIO();
+    for (Codeset codeset : codesetList) {
+      codesetIO.marshal(codeset, new File(setLocationFile, codeset.getType() + ".xml"));
+    }
+  }
+
+  /**
+   * Deletes the directory and everything in it.
+   */
+  static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,78 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cleaning up the text read from the CDC sources, one record for each code.
+ * clean is the same as it was in UpdateFromCDCSource and now runs inside
+ * {@link CdcRecordReader}; readAndTrim split a line of a delimited file and
+ * trimmed each field, which {@link DelimitedRecordReader} does now.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TextBenchmark
+{
+  private static final int FIELD_COUNT = 10;
+
+  @Param({ "1000", "10000", "100000", "1000000" })
+  public int size;
+
+  private String[] texts;
+  private char[] lines;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(1);
+    texts = new String[size];
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < size; i++) {
+      texts[i] = "  Synthetic\n\tvaccine  " + i + " (preservative free)\r\n ";
+      for (int field = 0; field < FIELD_COUNT; field++) {
+        if (field > 0) {
+          sb.append('|');
+        }
+        sb.append(random.nextBoolean() ? " " : "").append("field ").append(field).append(' ').append(i);
+        sb.append(random.nextBoolean() ? "  " : "");
+      }
+      sb.append("\r\n");
+    }
+    lines = sb.toString().toCharArray();
+  }
+
+  @Benchmark
+  public void clean(Blackhole blackhole) {
+    for (String text : texts) {
+      blackhole.consume(CdcRecordReader.clean(text));
+    }
+  }
+
+  @Benchmark
+  public void readAndTrim(Blackhole blackhole) throws IOException {
+    DelimitedRecordReader reader = new DelimitedRecordReader(lines, lines.length, '|');
+    while (reader.next()) {
+      for (int field = 0; field < reader.getFieldCount(); field++) {
+        blackhole.consume(reader.get(field));
+      }
+    }
+  }
+}
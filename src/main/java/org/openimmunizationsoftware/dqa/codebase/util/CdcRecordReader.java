@@ -0,0 +1,188 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Pull reader for the CDC source XML files. Walks the file with StAX and
+ * stops at each record element declared by the {@link CdcSource} so only one
+ * record is held in memory at a time. The values of the bound fields are
+ * written into a single slot array that is reused for every record, and
+ * fields that are not bound are skipped without creating strings.
+ */
+public class CdcRecordReader implements Closeable
+{
+  private static final String NAME = "Name";
+  private static final String VALUE = "Value";
+
+  private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+  private static XMLInputFactory createInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    return factory;
+  }
+
+  private final InputStream in;
+  private final XMLStreamReader reader;
+  private final CdcSource source;
+  private final String recordElement;
+  private final int nameSlot;
+  private final int valueSlot;
+  private final String[] fields;
+  private final StringBuilder text = new StringBuilder();
+  private int recordCount = 0;
+
+  public CdcRecordReader(File file, CdcSource source) throws IOException, XMLStreamException {
+    this.source = source;
+    this.recordElement = source.getRecordElement();
+    this.nameSlot = source.getSlot(NAME);
+    this.valueSlot = source.getSlot(VALUE);
+    this.fields = new String[source.getFieldCount()];
+    this.in = new BufferedInputStream(new FileInputStream(file));
+    try {
+      this.reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+    } catch (XMLStreamException e) {
+      in.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Advances to the next record element in the file.
+   *
+   * @return false when there are no more records
+   */
+  public boolean next() throws XMLStreamException {
+    Arrays.fill(fields, null);
+    while (reader.hasNext()) {
+      if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals(recordElement)) {
+        readRecord();
+        recordCount++;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void readRecord() throws XMLStreamException {
+    String field = null;
+    boolean named = false;
+    int nameValueSlot = -1;
+    String value = null;
+    int depth = 1;
+    while (depth > 0 && reader.hasNext()) {
+      switch (reader.next()) {
+      case XMLStreamConstants.START_ELEMENT:
+        depth++;
+        if (depth == 2) {
+          field = reader.getLocalName();
+          text.setLength(0);
+        }
+        break;
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.CDATA:
+      case XMLStreamConstants.SPACE:
+        if (depth >= 2) {
+          text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+        }
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        if (depth == 2) {
+          if (field.equals(NAME)) {
+            if (named && value != null) {
+              if (nameValueSlot >= 0) {
+                fields[nameValueSlot] = value;
+              }
+              value = null;
+            }
+            String name = clean(text);
+            named = true;
+            nameValueSlot = source.getSlot(name);
+            if (nameSlot >= 0) {
+              fields[nameSlot] = name;
+            }
+          } else if (field.equals(VALUE)) {
+            value = clean(text);
+            if (valueSlot >= 0) {
+              fields[valueSlot] = value;
+            }
+          } else {
+            int slot = source.getSlot(field);
+            if (slot >= 0) {
+              fields[slot] = clean(text);
+            }
+          }
+        }
+        depth--;
+        break;
+      default:
+        break;
+      }
+    }
+    if (nameValueSlot >= 0 && value != null) {
+      fields[nameValueSlot] = value;
+    }
+  }
+
+  /**
+   * @return the cleaned text of the field bound to the slot, or null if the
+   *         current record does not have it
+   */
+  public String get(int slot) {
+    return fields[slot];
+  }
+
+  public String get(int slot, String defaultValue) {
+    String value = fields[slot];
+    return value == null ? defaultValue : value;
+  }
+
+  public int getRecordCount() {
+    return recordCount;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      reader.close();
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Trims the text and collapses every run of control or space characters into
+   * a single space.
+   */
+  static String clean(CharSequence s) {
+    StringBuilder sb = new StringBuilder(s.length());
+    boolean whitespace = false;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c <= 32) {
+        whitespace = true;
+      } else {
+        if (whitespace && sb.length() > 0) {
+          sb.append(' ');
+        }
+        sb.append(c);
+        whitespace = false;
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,66 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Declares the layout of one CDC source XML file: the file name, the element
+ * that wraps each record and the fields that are read out of each record.
+ * Fields are bound once, usually into static constants, and the returned slot
+ * is then used to read the value from a {@link CdcRecordReader}. A field is
+ * matched either by the name of a child element of the record or by the text
+ * of a Name element that is followed by a Value element.
+ */
+public class CdcSource
+{
+  private final String filename;
+  private final String recordElement;
+  private final List<String> fieldNames = new ArrayList<>();
+  private final Map<String, Integer> fieldSlotMap = new HashMap<>();
+
+  public CdcSource(String filename, String recordElement) {
+    this.filename = filename;
+    this.recordElement = recordElement;
+  }
+
+  /**
+   * Binds a field of this source.
+   *
+   * @return the slot to read the field value from
+   */
+  public int bind(String fieldName) {
+    Integer slot = fieldSlotMap.get(fieldName);
+    if (slot == null) {
+      slot = fieldNames.size();
+      fieldNames.add(fieldName);
+      fieldSlotMap.put(fieldName, slot);
+    }
+    return slot;
+  }
+
+  public String getFilename() {
+    return filename;
+  }
+
+  public String getRecordElement() {
+    return recordElement;
+  }
+
+  public int getFieldCount() {
+    return fieldNames.size();
+  }
+
+  public String getFieldName(int slot) {
+    return fieldNames.get(slot);
+  }
+
+  /**
+   * @return the slot bound to the field name, or -1 if the field is not read
+   */
+  int getSlot(String fieldName) {
+    Integer slot = fieldSlotMap.get(fieldName);
+    return slot == null ? -1 : slot;
+  }
+}
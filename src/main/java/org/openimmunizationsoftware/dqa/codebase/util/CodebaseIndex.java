@@ -0,0 +1,216 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase.Codeset.Code;
+
+/**
+ * A read only index over a whole codebase for looking codes up at run time.
+ * Everything is worked out when the index is built: codes are indexed by
+ * codeset type and value, links are resolved to the codes they point to and
+ * deprecated codes to the codes that replace them. After that the index is
+ * never changed, so it can be shared by any number of threads without
+ * locking, and lookups are plain hash map reads that allocate nothing.
+ * <p>
+ * Values are matched exactly. When a codeset has more than one code with the
+ * same value the last one is found, the same as {@link IndexedCodeset}.
+ * <p>
+ * The codes handed out are the ones the index was built from and must not be
+ * changed.
+ */
+public final class CodebaseIndex
+{
+  public static final String STATUS_VALID = "Valid";
+  public static final String STATUS_DEPRECATED = "Deprecated";
+
+  private final Map<String, Codebase.Codeset> codesetMap;
+  private final Map<String, Map<String, Code>> codeMap;
+  private final Map<Code, Node> nodeMap;
+
+  /**
+   * What is known about a code beyond the code itself.
+   */
+  private static final class Node
+  {
+    private final Map<String, List<Code>> linkMap;
+    private final Code replacement;
+
+    private Node(Map<String, List<Code>> linkMap, Code replacement) {
+      this.linkMap = linkMap;
+      this.replacement = replacement;
+    }
+  }
+
+  public CodebaseIndex(Codebase codebase) {
+    Map<String, Codebase.Codeset> codesetMap = new HashMap<>();
+    Map<String, Map<String, Code>> codeMap = new HashMap<>();
+    for (Codebase.Codeset codeset : codebase.getCodeset()) {
+      if (codeset.getType() == null) {
+        continue;
+      }
+      codesetMap.put(codeset.getType(), codeset);
+      Map<String, Code> valueMap = new HashMap<>(Math.max(16, codeset.getCode().size() * 2));
+      for (Code code : codeset.getCode()) {
+        if (code.getValue() != null) {
+          valueMap.put(code.getValue(), code);
+        }
+      }
+      codeMap.put(codeset.getType(), Collections.unmodifiableMap(valueMap));
+    }
+    this.codesetMap = Collections.unmodifiableMap(codesetMap);
+    this.codeMap = Collections.unmodifiableMap(codeMap);
+
+    Map<Code, Node> nodeMap = new IdentityHashMap<>();
+    for (Codebase.Codeset codeset : codesetMap.values()) {
+      Map<String, Code> valueMap = codeMap.get(codeset.getType());
+      for (Code code : codeset.getCode()) {
+        nodeMap.put(code, createNode(code, valueMap));
+      }
+    }
+    this.nodeMap = Collections.unmodifiableMap(nodeMap);
+  }
+
+  private Node createNode(Code code, Map<String, Code> valueMap) {
+    Map<String, List<Code>> linkMap = Collections.emptyMap();
+    if (code.getReference() != null && !code.getReference().getLinkTo().isEmpty()) {
+      Map<String, List<Code>> resolvedMap = new HashMap<>();
+      for (Codebase.Codeset.Code.Reference.LinkTo linkTo : code.getReference().getLinkTo()) {
+        Code linked = lookup(linkTo.getCodeset(), linkTo.getValue());
+        if (linked != null) {
+          List<Code> linkedList = resolvedMap.get(linkTo.getCodeset());
+          if (linkedList == null) {
+            linkedList = new ArrayList<>();
+            resolvedMap.put(linkTo.getCodeset(), linkedList);
+          }
+          linkedList.add(linked);
+        }
+      }
+      for (Map.Entry<String, List<Code>> entry : resolvedMap.entrySet()) {
+        entry.setValue(Collections.unmodifiableList(entry.getValue()));
+      }
+      linkMap = resolvedMap;
+    }
+    Code replacement = null;
+    if (code.getCodeStatus() != null && code.getCodeStatus().getDeprecated() != null) {
+      String newCodeValue = code.getCodeStatus().getDeprecated().getNewCodeValue();
+      replacement = newCodeValue == null ? null : valueMap.get(newCodeValue);
+    }
+    return new Node(linkMap, replacement);
+  }
+
+  /**
+   * Builds the index from a compiled codebase file. If the binary form written
+   * by {@link CompileCodesets} is next to it and up to date it is read
+   * instead, which is much faster than unmarshalling the XML.
+   */
+  public static CodebaseIndex load(File compiledFile) throws IOException, JAXBException {
+    File binaryFile = new File(compiledFile.getAbsoluteFile().getParentFile(), CompileCodesets.BINARY_FILENAME);
+    if (CompiledCodebase.describes(binaryFile, compiledFile)) {
+      return new CodebaseIndex(CompiledCodebase.open(binaryFile).toCodebase());
+    }
+    Unmarshaller unmarshaller = JAXBContext.newInstance(Codebase.class).createUnmarshaller();
+    unmarshaller.setListener(new StringPool().createListener());
+    return new CodebaseIndex((Codebase) unmarshaller.unmarshal(compiledFile));
+  }
+
+  /**
+   * Builds the index straight from the set files, in filename order, the same
+   * as if they had been compiled first.
+   */
+  public static CodebaseIndex loadSets(File setLocationFile) throws JAXBException {
+    Unmarshaller unmarshaller = JAXBContext.newInstance(Codebase.class).createUnmarshaller();
+    unmarshaller.setListener(new StringPool().createListener());
+    Codebase codebase = new Codebase();
+    for (String setFilename : new CodesetCompiler(setLocationFile).listSetFilenames()) {
+      StreamSource source = new StreamSource(new File(setLocationFile, setFilename));
+      codebase.getCodeset().add(unmarshaller.unmarshal(source, Codebase.Codeset.class).getValue());
+    }
+    return new CodebaseIndex(codebase);
+  }
+
+  /**
+   * @return the codeset with this type, or null if there is none
+   */
+  public Codebase.Codeset getCodeset(String codesetType) {
+    return codesetMap.get(codesetType);
+  }
+
+  public boolean hasCodeset(String codesetType) {
+    return codesetMap.containsKey(codesetType);
+  }
+
+  /**
+   * @return the code, or null if the codeset does not exist or does not have
+   *         the value
+   */
+  public Code lookup(String codesetType, String value) {
+    Map<String, Code> valueMap = codeMap.get(codesetType);
+    return valueMap == null ? null : valueMap.get(value);
+  }
+
+  /**
+   * @return the codes in the target codeset the code links to, in the order
+   *         the links are listed, leaving out links to codes that do not exist
+   */
+  public List<Code> linksFrom(Code code, String targetCodesetType) {
+    Node node = nodeMap.get(code);
+    if (node == null) {
+      return Collections.emptyList();
+    }
+    List<Code> linkedList = node.linkMap.get(targetCodesetType);
+    return linkedList == null ? Collections.<Code> emptyList() : linkedList;
+  }
+
+  public List<Code> linksFrom(String codesetType, String value, String targetCodesetType) {
+    return linksFrom(lookup(codesetType, value), targetCodesetType);
+  }
+
+  /**
+   * @return the status of the code, or null if it has none
+   */
+  public static String getStatus(Code code) {
+    if (code == null || code.getCodeStatus() == null) {
+      return null;
+    }
+    return code.getCodeStatus().getStatus();
+  }
+
+  public String getStatus(String codesetType, String value) {
+    return getStatus(lookup(codesetType, value));
+  }
+
+  public static boolean isValid(Code code) {
+    return STATUS_VALID.equals(getStatus(code));
+  }
+
+  /**
+   * @return true if the code has the deprecated status or says what replaces
+   *         it
+   */
+  public static boolean isDeprecated(Code code) {
+    return STATUS_DEPRECATED.equals(getStatus(code))
+        || (code != null && code.getCodeStatus() != null && code.getCodeStatus().getDeprecated() != null);
+  }
+
+  /**
+   * @return the code in the same codeset a deprecated code was replaced by,
+   *         or null if there is none or it is not in the codeset
+   */
+  public Code getReplacement(Code code) {
+    Node node = nodeMap.get(code);
+    return node == null ? null : node.replacement;
+  }
+}
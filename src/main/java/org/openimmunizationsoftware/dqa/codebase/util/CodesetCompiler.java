@@ -0,0 +1,294 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compiles the code set files into a single codebase file. The set files are
+ * read and indented at the same time on a fork-join pool, each into its own
+ * buffer, and the buffers are then written out in filename order through a
+ * file channel, so the result does not depend on which file finished first.
+ * A {@link CompiledIndex} is written next to the compiled file so the next
+ * compile only has to redo the set files that changed.
+ * <p>
+ * Indenting works on the raw bytes, a line at a time, so the set files must
+ * use an ASCII compatible encoding such as UTF-8, which is what JAXB writes.
+ */
+public class CodesetCompiler
+{
+  static final byte[] HEADER = ("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+      + System.lineSeparator() + "<codebase>" + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII);
+  static final byte[] FOOTER = ("</codebase>" + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] INDENT = "    ".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] XML_DECLARATION = "<?xml".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] TYPE_START = "<type>".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] TYPE_END = "</type>".getBytes(StandardCharsets.US_ASCII);
+
+  private final File setLocationFile;
+  private final ForkJoinPool pool;
+  private PrintStream out = System.out;
+  private boolean rebuild = false;
+  private int recompiledCount = 0;
+  private int reusedCount = 0;
+
+  public CodesetCompiler(File setLocationFile) {
+    this(setLocationFile, ForkJoinPool.commonPool());
+  }
+
+  public CodesetCompiler(File setLocationFile, ForkJoinPool pool) {
+    this.setLocationFile = setLocationFile;
+    this.pool = pool;
+  }
+
+  public void setOut(PrintStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Compile every set file again even when the index says its block in the
+   * compiled file is still current.
+   */
+  public void setRebuild(boolean rebuild) {
+    this.rebuild = rebuild;
+  }
+
+  public int getRecompiledCount() {
+    return recompiledCount;
+  }
+
+  public int getReusedCount() {
+    return reusedCount;
+  }
+
+  /**
+   * @return the names of the set files, sorted
+   */
+  public String[] listSetFilenames() {
+    String[] setFilenames = setLocationFile.list(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.endsWith(".xml");
+      }
+    });
+    if (setFilenames == null) {
+      return new String[0];
+    }
+    Arrays.sort(setFilenames);
+    return setFilenames;
+  }
+
+  /**
+   * Brings the compiled file up to date with the set files. When the compiled
+   * file still matches its index, the blocks of set files whose digest has not
+   * changed are copied over from it as they are and only the other set files
+   * are compiled again. The new compiled file is written next to the old one
+   * and moved into place, and its index is written after it.
+   *
+   * @return how many set files the compiled file holds
+   */
+  public int compile(File compiledFile) throws IOException {
+    File indexFile = CompiledIndex.getIndexFile(compiledFile);
+    CompiledIndex oldIndex = rebuild ? null : CompiledIndex.load(indexFile);
+    if (oldIndex != null && !oldIndex.describes(compiledFile)) {
+      oldIndex = null;
+    }
+    final CompiledIndex reuseIndex = oldIndex;
+
+    String[] setFilenames = listSetFilenames();
+    List<ForkJoinTask<Block>> taskList = new ArrayList<>(setFilenames.length);
+    for (String setFilename : setFilenames) {
+      File setFile = new File(setLocationFile, setFilename);
+      taskList.add(pool.submit(() -> readBlock(setFile, reuseIndex)));
+    }
+    List<Block> blockList = new ArrayList<>(setFilenames.length);
+    boolean upToDate = reuseIndex != null && reuseIndex.getEntryList().size() == setFilenames.length;
+    for (int i = 0; i < setFilenames.length; i++) {
+      Block block = join(taskList.get(i), setFilenames[i]);
+      blockList.add(block);
+      upToDate = upToDate && block.reuse == reuseIndex.getEntryList().get(i);
+    }
+    recompiledCount = 0;
+    reusedCount = 0;
+    if (upToDate) {
+      reusedCount = setFilenames.length;
+      out.println(compiledFile.getName() + " is up to date");
+      return setFilenames.length;
+    }
+
+    File tempFile = File.createTempFile(compiledFile.getName(), ".tmp", compiledFile.getAbsoluteFile()
+        .getParentFile());
+    List<CompiledIndex.Entry> entryList = new ArrayList<>(setFilenames.length);
+    try {
+      try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+          FileChannel oldChannel = reuseIndex == null ? null
+              : FileChannel.open(compiledFile.toPath(), StandardOpenOption.READ)) {
+        writeFully(channel, ByteBuffer.wrap(HEADER));
+        for (int i = 0; i < setFilenames.length; i++) {
+          Block block = blockList.get(i);
+          long offset = channel.position();
+          if (block.reuse != null) {
+            out.println("Reusing " + setFilenames[i]);
+            transferFully(oldChannel, block.reuse.getOffset(), block.reuse.getLength(), channel);
+            reusedCount++;
+          } else {
+            out.println("Reading " + setFilenames[i]);
+            writeFully(channel, ByteBuffer.wrap(block.indented));
+            recompiledCount++;
+          }
+          entryList.add(new CompiledIndex.Entry(offset, channel.position() - offset, block.digest, block.type,
+              setFilenames[i]));
+        }
+        writeFully(channel, ByteBuffer.wrap(FOOTER));
+      }
+      // the old index no longer describes the compiled file once it is moved
+      Files.deleteIfExists(indexFile.toPath());
+      Files.move(tempFile.toPath(), compiledFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tempFile.toPath());
+    }
+    new CompiledIndex(compiledFile.length(), compiledFile.lastModified(), entryList).save(indexFile);
+    return setFilenames.length;
+  }
+
+  /**
+   * Reads a set file and works out its digest. If the index has a block for it
+   * with the same digest that block is reused, otherwise the file is indented.
+   */
+  private static Block readBlock(File setFile, CompiledIndex reuseIndex) throws IOException {
+    byte[] content = Files.readAllBytes(setFile.toPath());
+    Block block = new Block();
+    block.digest = ContentManifest.toHex(ContentManifest.createMessageDigest().digest(content));
+    CompiledIndex.Entry entry = reuseIndex == null ? null : reuseIndex.getEntry(setFile.getName());
+    if (entry != null && entry.getDigest().equals(block.digest)) {
+      block.reuse = entry;
+      block.type = entry.getType();
+    } else {
+      block.indented = indent(content);
+      block.type = findType(block.indented);
+    }
+    return block;
+  }
+
+  private static class Block
+  {
+    private String digest;
+    private String type;
+    private byte[] indented;
+    private CompiledIndex.Entry reuse;
+  }
+
+  /**
+   * @return the text of the first type element, which in a codeset names its
+   *         type, or an empty string if there is none
+   */
+  static String findType(byte[] content) {
+    int start = indexOf(content, TYPE_START, 0);
+    if (start < 0) {
+      return "";
+    }
+    start += TYPE_START.length;
+    int end = indexOf(content, TYPE_END, start);
+    if (end < 0) {
+      return "";
+    }
+    return new String(content, start, end - start, StandardCharsets.UTF_8).trim();
+  }
+
+  private static int indexOf(byte[] content, byte[] find, int from) {
+    for (int i = from; i + find.length <= content.length; i++) {
+      if (startsWith(content, i, content.length, find)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  static void transferFully(FileChannel from, long position, long length, FileChannel to) throws IOException {
+    long transferred = 0;
+    while (transferred < length) {
+      long count = from.transferTo(position + transferred, length - transferred, to);
+      if (count <= 0) {
+        throw new IOException("Compiled file ended before the block being copied");
+      }
+      transferred += count;
+    }
+  }
+
+  static <T> T join(ForkJoinTask<T> task, String setFilename) throws IOException {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading " + setFilename, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Unable to read " + setFilename, e.getCause());
+    }
+  }
+
+  static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Indents every line of the set file and ends it with the platform line
+   * separator, dropping the XML declaration if it is the first line. Lines
+   * end with \n, \r or \r\n, the same as for {@link java.io.BufferedReader}.
+   */
+  static byte[] indent(byte[] content) {
+    ByteArrayOutputStream indented = new ByteArrayOutputStream(content.length + content.length / 8);
+    int position = 0;
+    boolean first = true;
+    while (position < content.length) {
+      int end = position;
+      while (end < content.length && content[end] != '\n' && content[end] != '\r') {
+        end++;
+      }
+      if (!first || !startsWith(content, position, end, XML_DECLARATION)) {
+        indented.write(INDENT, 0, INDENT.length);
+        indented.write(content, position, end - position);
+        indented.write(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+      }
+      first = false;
+      if (end + 1 < content.length && content[end] == '\r' && content[end + 1] == '\n') {
+        end++;
+      }
+      position = end + 1;
+    }
+    return indented.toByteArray();
+  }
+
+  private static boolean startsWith(byte[] content, int start, int end, byte[] prefix) {
+    if (end - start < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (content[start + i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,133 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+
+/**
+ * Reads and writes codeset files with a single {@link JAXBContext}. Creating
+ * the context is expensive, so it is built once when this is constructed.
+ * Marshallers and unmarshallers are not thread safe, so each thread is given
+ * its own, created on first use and then reused for every later call on that
+ * thread. If a {@link StringPool} is given, the strings that repeat across
+ * codesets are pooled as they are read.
+ */
+public class CodesetIO
+{
+  private final JAXBContext jaxbContext;
+  private final long contextCreationMillis;
+  private final StringPool stringPool;
+  private final ThreadLocal<Marshaller> marshallerLocal = new ThreadLocal<>();
+  private final ThreadLocal<Unmarshaller> unmarshallerLocal = new ThreadLocal<>();
+
+  public CodesetIO() throws JAXBException {
+    this(null);
+  }
+
+  public CodesetIO(StringPool stringPool) throws JAXBException {
+    this.stringPool = stringPool;
+    long start = System.nanoTime();
+    jaxbContext = JAXBContext.newInstance(Codeset.class);
+    contextCreationMillis = (System.nanoTime() - start) / 1000000;
+  }
+
+  /**
+   * @return how long it took to create the JAXB context
+   */
+  public long getContextCreationMillis() {
+    return contextCreationMillis;
+  }
+
+  /**
+   * @return the pool strings are read into, or null if they are not pooled
+   */
+  public StringPool getStringPool() {
+    return stringPool;
+  }
+
+  public Codeset unmarshal(File file) throws JAXBException {
+    return (Codeset) getUnmarshaller().unmarshal(file);
+  }
+
+  public void marshal(Codeset codeset, File file) throws JAXBException {
+    getMarshaller().marshal(codeset, file);
+  }
+
+  public void marshal(Codeset codeset, OutputStream out) throws JAXBException {
+    getMarshaller().marshal(codeset, out);
+  }
+
+  /**
+   * Writes the codeset only if the file does not already hold exactly what
+   * would be written. The codeset is marshalled into memory and compared with
+   * the bytes of the file, and when it differs it is written to a temporary
+   * file that is then moved over the old one, so the file is never left half
+   * written. The temporary file is given the permissions of the file it
+   * replaces, so a rewritten codeset can still be read by whoever could read
+   * it before.
+   *
+   * @return true if the file was written
+   */
+  public boolean writeIfChanged(Codeset codeset, File file) throws JAXBException, IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    marshal(codeset, buffer);
+    byte[] content = buffer.toByteArray();
+    Path target = file.toPath();
+    if (file.exists() && file.length() == content.length && Arrays.equals(content, Files.readAllBytes(target))) {
+      return false;
+    }
+    // File.createTempFile leaves the permissions to the umask, unlike
+    // Files.createTempFile which makes the file readable by its owner only
+    Path temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile()).toPath();
+    try {
+      Files.write(temp, content);
+      if (file.exists() && Files.getFileAttributeView(target, PosixFileAttributeView.class) != null) {
+        Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+      }
+      try {
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    return true;
+  }
+
+  private Marshaller getMarshaller() throws JAXBException {
+    Marshaller marshaller = marshallerLocal.get();
+    if (marshaller == null) {
+      marshaller = jaxbContext.createMarshaller();
+      marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+      marshallerLocal.set(marshaller);
+    }
+    return marshaller;
+  }
+
+  private Unmarshaller getUnmarshaller() throws JAXBException {
+    Unmarshaller unmarshaller = unmarshallerLocal.get();
+    if (unmarshaller == null) {
+      unmarshaller = jaxbContext.createUnmarshaller();
+      if (stringPool != null) {
+        unmarshaller.setListener(stringPool.createListener());
+      }
+      unmarshallerLocal.set(unmarshaller);
+    }
+    return unmarshaller;
+  }
+}
@@ -0,0 +1,23 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+/**
+ * The types of the codesets the tools read, link and write, as given in the
+ * type of each codeset file.
+ */
+public final class CodesetType
+{
+  public static final String NDC_UNIT_OF_SALE = "VACCINATION_NDC_CODE_UNIT_OF_SALE";
+  public static final String NDC_UNIT_OF_USE = "VACCINATION_NDC_CODE_UNIT_OF_USE";
+  public static final String CVX = "VACCINATION_CVX_CODE";
+  public static final String MVX = "VACCINATION_MANUFACTURER_CODE";
+  public static final String CPT = "VACCINATION_CPT_CODE";
+  public static final String TRADE_NAME = "VACCINATION_TRADE_NAME";
+  public static final String VACCINE_GROUP = "VACCINE_GROUP";
+  public static final String VIS_DOC_TYPE = "VACCINATION_VIS_DOC_TYPE";
+  public static final String VIS_VACCINES = "VACCINATION_VIS_VACCINES";
+  public static final String LOT_NUMBER_PATTERN = "VACCINATION_LOT_NUMBER_PATTERN";
+
+  private CodesetType() {
+    // constants only
+  }
+}
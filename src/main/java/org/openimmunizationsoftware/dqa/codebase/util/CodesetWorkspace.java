@@ -0,0 +1,189 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.bind.JAXBException;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+
+/**
+ * Holds the codesets of one run in memory. Each codeset file is read the first
+ * time it is asked for and the same objects are handed to every later step.
+ * Steps mark the codesets they change, and {@link #flush()} writes only those
+ * files, once, at the end of the run.
+ * <p>
+ * Reads are counted against the step that asked for the codeset, see
+ * {@link StepScheduler#count(String, long)}.
+ * <p>
+ * Different files are read at the same time when asked for from different
+ * threads; only threads asking for the same file wait for each other.
+ */
+public class CodesetWorkspace
+{
+  private final File setLocationFile;
+  private final CodesetIO codesetIO;
+  private final ConcurrentMap<String, Entry> entryMap = new ConcurrentHashMap<>();
+  private final Set<String> changedSet = new LinkedHashSet<>();
+  private int readCount = 0;
+  private int writeCount = 0;
+  private int unchangedCount = 0;
+  private long bytesRead = 0;
+  private long bytesWritten = 0;
+
+  public CodesetWorkspace(File setLocationFile, CodesetIO codesetIO) {
+    this.setLocationFile = setLocationFile;
+    this.codesetIO = codesetIO;
+  }
+
+  /**
+   * @return the codeset stored in the file, read from disk only the first time
+   *         it is asked for, or null if it could not be read
+   */
+  public IndexedCodeset get(String filename) {
+    return entryMap.computeIfAbsent(filename, Entry::new).load();
+  }
+
+  private synchronized void countRead(long length) {
+    readCount++;
+    bytesRead += length;
+  }
+
+  private IndexedCodeset getLoaded(String filename) {
+    Entry entry = entryMap.get(filename);
+    return entry == null ? null : entry.getLoaded();
+  }
+
+  /**
+   * Marks the codeset as needing to be written. Its codes are sorted right
+   * away, as they would be when written, so that later steps see them in the
+   * same order they would have read them back from the file.
+   */
+  public synchronized void markChanged(String filename) {
+    IndexedCodeset indexedCodeset = getLoaded(filename);
+    if (indexedCodeset == null) {
+      throw new IllegalArgumentException("Codeset " + filename + " has not been loaded");
+    }
+    Collections.sort(indexedCodeset.getCode());
+    indexedCodeset.reindex();
+    changedSet.add(filename);
+  }
+
+  public synchronized boolean isChanged(String filename) {
+    return changedSet.contains(filename);
+  }
+
+  /**
+   * Writes every codeset that has been marked as changed, skipping those whose
+   * file already holds exactly what would be written. If a file can not be
+   * written the others are still written, the one that failed stays marked as
+   * changed, and an exception naming every file that failed is thrown at the
+   * end.
+   *
+   * @return the names of the files written
+   */
+  public synchronized List<String> flush() throws IOException {
+    List<String> writtenList = new ArrayList<>();
+    List<String> failedList = new ArrayList<>();
+    Exception failure = null;
+    for (Iterator<String> it = changedSet.iterator(); it.hasNext();) {
+      String filename = it.next();
+      Codeset codeset = getLoaded(filename).getCodeset();
+      Collections.sort(codeset.getCode());
+      try {
+        File file = new File(setLocationFile, filename);
+        if (codesetIO.writeIfChanged(codeset, file)) {
+          writeCount++;
+          bytesWritten += file.length();
+          writtenList.add(filename);
+        } else {
+          unchangedCount++;
+        }
+        it.remove();
+      } catch (JAXBException | IOException e) {
+        failedList.add(filename);
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw new IOException("Unable to write " + String.join(", ", failedList), failure);
+    }
+    return writtenList;
+  }
+
+  public synchronized int getReadCount() {
+    return readCount;
+  }
+
+  public synchronized int getWriteCount() {
+    return writeCount;
+  }
+
+  public synchronized long getBytesRead() {
+    return bytesRead;
+  }
+
+  public synchronized long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * @return how many codesets were marked as changed but did not need to be
+   *         written because their file already held the same content
+   */
+  public synchronized int getUnchangedCount() {
+    return unchangedCount;
+  }
+
+  /**
+   * One codeset file, read by the first thread that asks for it while any
+   * other thread asking for the same file waits.
+   */
+  private class Entry
+  {
+    private final String filename;
+    private boolean loaded = false;
+    private volatile IndexedCodeset indexedCodeset = null;
+
+    private Entry(String filename) {
+      this.filename = filename;
+    }
+
+    private synchronized IndexedCodeset load() {
+      if (!loaded) {
+        try {
+          File file = new File(setLocationFile, filename);
+          Codeset codeset = codesetIO.unmarshal(file);
+          indexedCodeset = new IndexedCodeset(codeset);
+          countRead(file.length());
+          StepScheduler.count(RunReport.CODESETS_READ, 1);
+          StepScheduler.count(RunReport.BYTES_READ, file.length());
+        } catch (JAXBException e) {
+          e.printStackTrace();
+        }
+        loaded = true;
+      }
+      return indexedCodeset;
+    }
+
+    /**
+     * @return the codeset if it has been read, without waiting on a read of it
+     *         in progress
+     */
+    private IndexedCodeset getLoaded() {
+      return indexedCodeset;
+    }
+  }
+}
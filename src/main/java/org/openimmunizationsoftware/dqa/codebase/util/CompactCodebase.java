@@ -0,0 +1,694 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+
+/**
+ * A read only copy of a {@link Codebase} kept in parallel arrays instead of
+ * JAXB beans. Each code in the bean model is a code object with its own code
+ * status, deprecated, reference, use date and use age objects and a list of
+ * link objects; here a code is a row across a few arrays of ints and bytes.
+ * Text is kept once in a string table and rows hold its number, statuses and
+ * concept types are small ordinals, and dates written as yyyyMMdd are kept as
+ * that number.
+ * <p>
+ * Codes are numbered across the whole codebase the same way
+ * {@link CompiledCodebase} numbers them, and can be read by number without
+ * creating any objects. The {@link Codeset} and {@link Code} views, and the
+ * views under them, have the same getters as the beans so read only code can
+ * use either; they are created when asked for and hold nothing but the
+ * number. The copy is not changed after it is built and can be shared between
+ * threads.
+ */
+public final class CompactCodebase
+{
+  private static final int NO_STRING = CompiledCodebase.NO_STRING;
+  private static final int NO_DATE = CompiledCodebase.NO_DATE;
+
+  private static final byte FLAG_CODE_STATUS = 1;
+  private static final byte FLAG_DEPRECATED = 2;
+  private static final byte FLAG_REFERENCE = 4;
+  private static final byte FLAG_USE_DATE = 8;
+  private static final byte FLAG_USE_AGE = 16;
+
+  private final String[] strings;
+  private final Map<String, Integer> codesetMap = new HashMap<>();
+  private final int[] codesetLabels;
+  private final int[] codesetTypes;
+  private final int[] firstCodes;
+  private final int[] valueOrder;
+
+  private final int[] values;
+  private final int[] labels;
+  private final int[] descriptions;
+  private final int[] testAges;
+  private final String[] statusNames;
+  private final byte[] statuses;
+  private final String[] conceptTypeNames;
+  private final byte[] conceptTypes;
+  private final byte[] flags;
+  private final int[] newCodeValues;
+  private final int[] reasons;
+  private final int[] effectiveDates;
+  private final int[] notBefores;
+  private final int[] notExpectedBefores;
+  private final int[] notExpectedAfters;
+  private final int[] notAfters;
+  private final byte[] notBeforeMonths;
+  private final byte[] notAfterMonths;
+  private final int[] firstLinks;
+  private final int[] linkCodesets;
+  private final int[] linkValues;
+
+  public CompactCodebase(Codebase codebase) {
+    Builder builder = new Builder();
+    List<Codebase.Codeset> codesetList = codebase.getCodeset();
+    int codesetCount = codesetList.size();
+    int codeCount = 0;
+    int linkCount = 0;
+    for (Codebase.Codeset codeset : codesetList) {
+      codeCount += codeset.getCode().size();
+      for (Codebase.Codeset.Code code : codeset.getCode()) {
+        if (code.getReference() != null) {
+          linkCount += code.getReference().getLinkTo().size();
+        }
+      }
+    }
+    codesetLabels = new int[codesetCount];
+    codesetTypes = new int[codesetCount];
+    firstCodes = new int[codesetCount + 1];
+    values = new int[codeCount];
+    labels = new int[codeCount];
+    descriptions = new int[codeCount];
+    testAges = new int[codeCount];
+    statuses = new byte[codeCount];
+    conceptTypes = new byte[codeCount];
+    flags = new byte[codeCount];
+    newCodeValues = new int[codeCount];
+    reasons = new int[codeCount];
+    effectiveDates = new int[codeCount];
+    notBefores = new int[codeCount];
+    notExpectedBefores = new int[codeCount];
+    notExpectedAfters = new int[codeCount];
+    notAfters = new int[codeCount];
+    notBeforeMonths = new byte[codeCount];
+    notAfterMonths = new byte[codeCount];
+    firstLinks = new int[codeCount + 1];
+    linkCodesets = new int[linkCount];
+    linkValues = new int[linkCount];
+
+    int code = 0;
+    int link = 0;
+    for (int codeset = 0; codeset < codesetCount; codeset++) {
+      Codebase.Codeset c = codesetList.get(codeset);
+      codesetLabels[codeset] = builder.string(c.getLabel());
+      codesetTypes[codeset] = builder.string(c.getType());
+      if (c.getType() != null && !codesetMap.containsKey(c.getType())) {
+        codesetMap.put(c.getType(), codeset);
+      }
+      firstCodes[codeset] = code;
+      for (Codebase.Codeset.Code bean : c.getCode()) {
+        values[code] = builder.string(bean.getValue());
+        labels[code] = builder.string(bean.getLabel());
+        descriptions[code] = builder.string(bean.getDescription());
+        testAges[code] = builder.string(bean.getTestAge());
+        conceptTypes[code] = builder.conceptType(bean.getConceptType());
+        newCodeValues[code] = NO_STRING;
+        reasons[code] = NO_STRING;
+        effectiveDates[code] = NO_DATE;
+        notBefores[code] = NO_DATE;
+        notExpectedBefores[code] = NO_DATE;
+        notExpectedAfters[code] = NO_DATE;
+        notAfters[code] = NO_DATE;
+        byte codeFlags = 0;
+        if (bean.getCodeStatus() != null) {
+          codeFlags |= FLAG_CODE_STATUS;
+          statuses[code] = builder.status(bean.getCodeStatus().getStatus());
+          Codebase.Codeset.Code.CodeStatus.Deprecated deprecated = bean.getCodeStatus().getDeprecated();
+          if (deprecated != null) {
+            codeFlags |= FLAG_DEPRECATED;
+            newCodeValues[code] = builder.string(deprecated.getNewCodeValue());
+            reasons[code] = builder.string(deprecated.getReason());
+            effectiveDates[code] = builder.date(deprecated.getEffectiveDate());
+          }
+        }
+        firstLinks[code] = link;
+        if (bean.getReference() != null) {
+          codeFlags |= FLAG_REFERENCE;
+          for (Codebase.Codeset.Code.Reference.LinkTo linkTo : bean.getReference().getLinkTo()) {
+            linkCodesets[link] = builder.string(linkTo.getCodeset());
+            linkValues[link] = builder.string(linkTo.getValue());
+            link++;
+          }
+        }
+        if (bean.getUseDate() != null) {
+          codeFlags |= FLAG_USE_DATE;
+          notBefores[code] = builder.date(bean.getUseDate().getNotBefore());
+          notExpectedBefores[code] = builder.date(bean.getUseDate().getNotExpectedBefore());
+          notExpectedAfters[code] = builder.date(bean.getUseDate().getNotExpectedAfter());
+          notAfters[code] = builder.date(bean.getUseDate().getNotAfter());
+        }
+        if (bean.getUseAge() != null) {
+          codeFlags |= FLAG_USE_AGE;
+          notBeforeMonths[code] = bean.getUseAge().getNotBeforeMonth();
+          notAfterMonths[code] = bean.getUseAge().getNotAfterMonth();
+        }
+        flags[code] = codeFlags;
+        code++;
+      }
+    }
+    firstCodes[codesetCount] = code;
+    firstLinks[codeCount] = link;
+    strings = builder.stringList.toArray(new String[builder.stringList.size()]);
+    statusNames = builder.statusList.toArray(new String[builder.statusList.size()]);
+    conceptTypeNames = builder.conceptTypeList.toArray(new String[builder.conceptTypeList.size()]);
+    valueOrder = sortValues();
+  }
+
+  /**
+   * Collects the distinct strings, statuses and concept types while the
+   * arrays are filled.
+   */
+  private static final class Builder
+  {
+    private final List<String> stringList = new ArrayList<>();
+    private final Map<String, Integer> stringMap = new HashMap<>();
+    private final List<String> statusList = new ArrayList<>(Collections.singletonList((String) null));
+    private final List<String> conceptTypeList = new ArrayList<>(Collections.singletonList((String) null));
+
+    private int string(String value) {
+      if (value == null) {
+        return NO_STRING;
+      }
+      Integer id = stringMap.get(value);
+      if (id == null) {
+        id = stringList.size();
+        stringList.add(value);
+        stringMap.put(value, id);
+      }
+      return id;
+    }
+
+    private int date(String date) {
+      if (date == null) {
+        return NO_DATE;
+      }
+      int packed = CompiledCodebase.parseDate(date);
+      return packed == NO_DATE ? -string(date) - 2 : packed;
+    }
+
+    private byte status(String status) {
+      return ordinal(statusList, status, "statuses");
+    }
+
+    private byte conceptType(String conceptType) {
+      return ordinal(conceptTypeList, conceptType, "concept types");
+    }
+
+    private static byte ordinal(List<String> nameList, String name, String what) {
+      int ordinal = nameList.indexOf(name);
+      if (ordinal < 0) {
+        if (nameList.size() > 0xFF) {
+          throw new IllegalArgumentException("Codebase has more than 255 different " + what);
+        }
+        ordinal = nameList.size();
+        nameList.add(name);
+      }
+      return (byte) ordinal;
+    }
+  }
+
+  private int[] sortValues() {
+    Integer[] order = new Integer[values.length];
+    for (int code = 0; code < order.length; code++) {
+      order[code] = code;
+    }
+    Comparator<Integer> byValue = new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        int c = compareValue(a, getValue(b));
+        return c != 0 ? c : a.compareTo(b);
+      }
+    };
+    for (int codeset = 0; codeset < getCodesetCount(); codeset++) {
+      Arrays.sort(order, firstCodes[codeset], firstCodes[codeset + 1], byValue);
+    }
+    int[] sorted = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      sorted[i] = order[i];
+    }
+    return sorted;
+  }
+
+  private int compareValue(int code, String value) {
+    String codeValue = getValue(code);
+    if (codeValue == null) {
+      return value == null ? 0 : -1;
+    }
+    return value == null ? 1 : codeValue.compareTo(value);
+  }
+
+  public int getCodesetCount() {
+    return codesetTypes.length;
+  }
+
+  public int getCodeCount() {
+    return values.length;
+  }
+
+  public int getStringCount() {
+    return strings.length;
+  }
+
+  /**
+   * @return the number of the first codeset with this type, or -1 if there is
+   *         none
+   */
+  public int findCodeset(String type) {
+    Integer codeset = codesetMap.get(type);
+    return codeset == null ? -1 : codeset;
+  }
+
+  /**
+   * @return the number of the first code in the codeset with exactly this
+   *         value, or -1 if there is none
+   */
+  public int findCode(int codeset, String value) {
+    if (codeset < 0 || value == null) {
+      return -1;
+    }
+    int low = firstCodes[codeset];
+    int high = firstCodes[codeset + 1] - 1;
+    int found = -1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int c = compareValue(valueOrder[middle], value);
+      if (c < 0) {
+        low = middle + 1;
+      } else {
+        if (c == 0) {
+          found = valueOrder[middle];
+        }
+        high = middle - 1;
+      }
+    }
+    return found;
+  }
+
+  public int findCode(String type, String value) {
+    return findCode(findCodeset(type), value);
+  }
+
+  public int getFirstCode(int codeset) {
+    return firstCodes[codeset];
+  }
+
+  public int getCodeCount(int codeset) {
+    return firstCodes[codeset + 1] - firstCodes[codeset];
+  }
+
+  public String getCodesetLabel(int codeset) {
+    return string(codesetLabels[codeset]);
+  }
+
+  public String getCodesetType(int codeset) {
+    return string(codesetTypes[codeset]);
+  }
+
+  private String string(int id) {
+    return id == NO_STRING ? null : strings[id];
+  }
+
+  private String dateText(int packed) {
+    if (packed == NO_DATE) {
+      return null;
+    }
+    return CompiledCodebase.isPackedDate(packed) ? CompiledCodebase.unpackDate(packed) : strings[-packed - 2];
+  }
+
+  public String getValue(int code) {
+    return string(values[code]);
+  }
+
+  public String getLabel(int code) {
+    return string(labels[code]);
+  }
+
+  public String getDescription(int code) {
+    return string(descriptions[code]);
+  }
+
+  public String getConceptType(int code) {
+    return conceptTypeNames[conceptTypes[code] & 0xFF];
+  }
+
+  public String getTestAge(int code) {
+    return string(testAges[code]);
+  }
+
+  public boolean hasCodeStatus(int code) {
+    return (flags[code] & FLAG_CODE_STATUS) != 0;
+  }
+
+  public String getStatus(int code) {
+    return statusNames[statuses[code] & 0xFF];
+  }
+
+  public boolean isDeprecated(int code) {
+    return (flags[code] & FLAG_DEPRECATED) != 0;
+  }
+
+  public String getNewCodeValue(int code) {
+    return string(newCodeValues[code]);
+  }
+
+  public String getReason(int code) {
+    return string(reasons[code]);
+  }
+
+  public boolean hasReference(int code) {
+    return (flags[code] & FLAG_REFERENCE) != 0;
+  }
+
+  public int getLinkCount(int code) {
+    return firstLinks[code + 1] - firstLinks[code];
+  }
+
+  public String getLinkCodeset(int code, int link) {
+    return string(linkCodesets[firstLinks[code] + link]);
+  }
+
+  public String getLinkValue(int code, int link) {
+    return string(linkValues[firstLinks[code] + link]);
+  }
+
+  public boolean hasUseDate(int code) {
+    return (flags[code] & FLAG_USE_DATE) != 0;
+  }
+
+  /**
+   * @return the dates packed the way {@link CompiledCodebase} packs them
+   */
+  public int getEffectiveDate(int code) {
+    return effectiveDates[code];
+  }
+
+  public int getNotBefore(int code) {
+    return notBefores[code];
+  }
+
+  public int getNotExpectedBefore(int code) {
+    return notExpectedBefores[code];
+  }
+
+  public int getNotExpectedAfter(int code) {
+    return notExpectedAfters[code];
+  }
+
+  public int getNotAfter(int code) {
+    return notAfters[code];
+  }
+
+  public boolean hasUseAge(int code) {
+    return (flags[code] & FLAG_USE_AGE) != 0;
+  }
+
+  public byte getNotBeforeMonth(int code) {
+    return notBeforeMonths[code];
+  }
+
+  public byte getNotAfterMonth(int code) {
+    return notAfterMonths[code];
+  }
+
+  /**
+   * @return a view of the codeset, or null if there is no codeset with this
+   *         type
+   */
+  public Codeset getCodeset(String type) {
+    int codeset = findCodeset(type);
+    return codeset < 0 ? null : new Codeset(codeset);
+  }
+
+  public Codeset getCodeset(int codeset) {
+    return new Codeset(codeset);
+  }
+
+  public List<Codeset> getCodesets() {
+    return new AbstractList<Codeset>() {
+      @Override
+      public Codeset get(int index) {
+        return new Codeset(index);
+      }
+
+      @Override
+      public int size() {
+        return getCodesetCount();
+      }
+    };
+  }
+
+  public Code getCode(int code) {
+    return new Code(code);
+  }
+
+  public final class Codeset
+  {
+    private final int codeset;
+
+    private Codeset(int codeset) {
+      this.codeset = codeset;
+    }
+
+    public int getId() {
+      return codeset;
+    }
+
+    public String getLabel() {
+      return getCodesetLabel(codeset);
+    }
+
+    public String getType() {
+      return getCodesetType(codeset);
+    }
+
+    public List<Code> getCode() {
+      return new AbstractList<Code>() {
+        @Override
+        public Code get(int index) {
+          if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+          }
+          return new Code(firstCodes[codeset] + index);
+        }
+
+        @Override
+        public int size() {
+          return getCodeCount(codeset);
+        }
+      };
+    }
+
+    /**
+     * @return the first code with exactly this value, or null if there is none
+     */
+    public Code getCode(String value) {
+      int code = findCode(codeset, value);
+      return code < 0 ? null : new Code(code);
+    }
+  }
+
+  public final class Code
+  {
+    private final int code;
+
+    private Code(int code) {
+      this.code = code;
+    }
+
+    public int getId() {
+      return code;
+    }
+
+    public String getValue() {
+      return CompactCodebase.this.getValue(code);
+    }
+
+    public String getLabel() {
+      return CompactCodebase.this.getLabel(code);
+    }
+
+    public String getDescription() {
+      return CompactCodebase.this.getDescription(code);
+    }
+
+    public String getConceptType() {
+      return CompactCodebase.this.getConceptType(code);
+    }
+
+    public String getTestAge() {
+      return CompactCodebase.this.getTestAge(code);
+    }
+
+    public CodeStatus getCodeStatus() {
+      return hasCodeStatus(code) ? new CodeStatus(code) : null;
+    }
+
+    public Reference getReference() {
+      return hasReference(code) ? new Reference(code) : null;
+    }
+
+    public UseDate getUseDate() {
+      return hasUseDate(code) ? new UseDate(code) : null;
+    }
+
+    public UseAge getUseAge() {
+      return hasUseAge(code) ? new UseAge(code) : null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Code && ((Code) o).code == code && ((Code) o).getModel() == CompactCodebase.this;
+    }
+
+    @Override
+    public int hashCode() {
+      return code;
+    }
+
+    private CompactCodebase getModel() {
+      return CompactCodebase.this;
+    }
+  }
+
+  public final class CodeStatus
+  {
+    private final int code;
+
+    private CodeStatus(int code) {
+      this.code = code;
+    }
+
+    public String getStatus() {
+      return CompactCodebase.this.getStatus(code);
+    }
+
+    public Deprecated getDeprecated() {
+      return isDeprecated(code) ? new Deprecated(code) : null;
+    }
+  }
+
+  public final class Deprecated
+  {
+    private final int code;
+
+    private Deprecated(int code) {
+      this.code = code;
+    }
+
+    public String getNewCodeValue() {
+      return CompactCodebase.this.getNewCodeValue(code);
+    }
+
+    public String getReason() {
+      return CompactCodebase.this.getReason(code);
+    }
+
+    public String getEffectiveDate() {
+      return dateText(effectiveDates[code]);
+    }
+  }
+
+  public final class Reference
+  {
+    private final int code;
+
+    private Reference(int code) {
+      this.code = code;
+    }
+
+    public List<LinkTo> getLinkTo() {
+      return new AbstractList<LinkTo>() {
+        @Override
+        public LinkTo get(int index) {
+          if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+          }
+          return new LinkTo(firstLinks[code] + index);
+        }
+
+        @Override
+        public int size() {
+          return getLinkCount(code);
+        }
+      };
+    }
+  }
+
+  public final class LinkTo
+  {
+    private final int link;
+
+    private LinkTo(int link) {
+      this.link = link;
+    }
+
+    public String getCodeset() {
+      return string(linkCodesets[link]);
+    }
+
+    public String getValue() {
+      return string(linkValues[link]);
+    }
+  }
+
+  public final class UseDate
+  {
+    private final int code;
+
+    private UseDate(int code) {
+      this.code = code;
+    }
+
+    public String getNotBefore() {
+      return dateText(notBefores[code]);
+    }
+
+    public String getNotExpectedBefore() {
+      return dateText(notExpectedBefores[code]);
+    }
+
+    public String getNotExpectedAfter() {
+      return dateText(notExpectedAfters[code]);
+    }
+
+    public String getNotAfter() {
+      return dateText(notAfters[code]);
+    }
+  }
+
+  public final class UseAge
+  {
+    private final int code;
+
+    private UseAge(int code) {
+      this.code = code;
+    }
+
+    public byte getNotBeforeMonth() {
+      return notBeforeMonths[code];
+    }
+
+    public byte getNotAfterMonth() {
+      return notAfterMonths[code];
+    }
+  }
+}
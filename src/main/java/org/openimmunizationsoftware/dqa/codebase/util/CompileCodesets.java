@@ -1,21 +1,34 @@
 package org.openimmunizationsoftware.dqa.codebase.util;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.PrintWriter;
+
+import javax.xml.bind.JAXBException;
 
 public class CompileCodesets
 {
   public static final String DEFAULT_BASE_LOCATION = "../codebase/base";
 
-  public static void main(String[] args) throws IOException {
+  /**
+   * Compile every set file again instead of reusing the blocks of unchanged
+   * set files from the last compile.
+   */
+  public static final String OPTION_REBUILD = "-rebuild";
+
+  /**
+   * The binary form of Compiled.xml, see {@link CompiledCodebase}.
+   */
+  public static final String BINARY_FILENAME = "Compiled.bin";
+
+  public static void main(String[] args) throws IOException, JAXBException {
     String baseLocationString = DEFAULT_BASE_LOCATION;
-    if (args.length > 0) {
-      baseLocationString = args[0];
+    boolean rebuild = false;
+    for (String arg : args) {
+      if (arg.equals(OPTION_REBUILD)) {
+        rebuild = true;
+      } else {
+        baseLocationString = arg;
+      }
     }
     File baseLocationFile = new File(baseLocationString);
     if (!baseLocationFile.exists()) {
@@ -28,29 +41,17 @@ public class CompileCodesets
       return;
     }
 
-    String setFilenames[] = setLocationFile.list(new FilenameFilter() {
-      @Override
-      public boolean accept(File dir, String name) {
-        return name.endsWith(".xml");
-      }
-    });
-    PrintWriter out = new PrintWriter(new FileWriter(new File(baseLocationFile, "Compiled.xml")));
-    out.println("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
-    out.println("<codebase>");
-    for (String setFilename : setFilenames) {
-      System.out.println("Reading " + setFilename);
-      BufferedReader in = new BufferedReader(new FileReader(new File(setLocationFile, setFilename)));
-      String line = in.readLine();
-      if (line != null) {
-        if (!line.startsWith("<?xml")) {
-          out.println("    " + line);
-        }
-        while ((line = in.readLine()) != null) {
-          out.println("    " + line);
-        }
-      }
+    CodesetCompiler compiler = new CodesetCompiler(setLocationFile);
+    compiler.setRebuild(rebuild);
+    File compiledFile = new File(baseLocationFile, "Compiled.xml");
+    compiler.compile(compiledFile);
+
+    File binaryFile = new File(baseLocationFile, BINARY_FILENAME);
+    if (!rebuild && CompiledCodebase.describes(binaryFile, compiledFile)) {
+      System.out.println(binaryFile.getName() + " is up to date");
+    } else {
+      System.out.println("Writing " + binaryFile.getName());
+      CompiledCodebaseWriter.write(compiledFile, binaryFile);
     }
-    out.println("</codebase>");
-    out.close();
   }
 }
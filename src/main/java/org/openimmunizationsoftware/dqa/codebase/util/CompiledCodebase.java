@@ -0,0 +1,523 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+
+/**
+ * A compiled codebase in its binary form, mapped into memory and read in
+ * place. Opening it only reads the header, so it is ready as soon as the file
+ * is mapped, and lookups read the records they need straight out of the
+ * mapping without building any objects for the rest of the codebase. Only
+ * absolute reads are used, so one instance can be shared between threads.
+ * <p>
+ * Codesets and codes are referred to by number. Codes are numbered across the
+ * whole codebase, with the codes of each codeset numbered one after the other
+ * in the order they are in the codeset. Text is kept once in a shared string
+ * table and records hold the number of the string, -1 meaning null.
+ * <p>
+ * The file is written by {@link CompiledCodebaseWriter}. All numbers are big
+ * endian and it is laid out as:
+ * <ul>
+ * <li>a header: magic, version, length and last modified time of the
+ * Compiled.xml it was made from, the string, codeset, code and link counts,
+ * and where each of the sections below starts</li>
+ * <li>the string table: an offset for each string plus one for the end of the
+ * last, then the strings, UTF-8 encoded</li>
+ * <li>a record of {@value #CODESET_INTS} ints for each codeset</li>
+ * <li>a record of {@value #CODE_INTS} ints for each code</li>
+ * <li>the value index: for each codeset the numbers of its codes sorted by the
+ * UTF-8 bytes of their value, so a value can be found by binary search</li>
+ * <li>the links: a pair of string numbers for each link, the codeset type and
+ * the value linked to</li>
+ * </ul>
+ * Use dates and the deprecated effective date are packed into an int: a date
+ * written as yyyyMMdd is kept as that number, {@link #NO_DATE} means there is
+ * none and anything else is kept as text, see {@link #getDateText(int)}.
+ */
+public class CompiledCodebase
+{
+  static final int MAGIC = 0x4F494342;
+  static final int VERSION = 1;
+
+  static final int HEADER_SOURCE_LENGTH = 8;
+  static final int HEADER_SOURCE_LAST_MODIFIED = 16;
+  static final int HEADER_STRING_COUNT = 24;
+  static final int HEADER_CODESET_COUNT = 28;
+  static final int HEADER_CODE_COUNT = 32;
+  static final int HEADER_LINK_COUNT = 36;
+  static final int HEADER_STRING_OFFSETS = 40;
+  static final int HEADER_STRING_DATA = 44;
+  static final int HEADER_CODESETS = 48;
+  static final int HEADER_CODES = 52;
+  static final int HEADER_VALUE_INDEX = 56;
+  static final int HEADER_LINKS = 60;
+  static final int HEADER_LENGTH = 64;
+
+  static final int CODESET_LABEL = 0;
+  static final int CODESET_TYPE = 1;
+  static final int CODESET_FIRST_CODE = 2;
+  static final int CODESET_CODE_COUNT = 3;
+  static final int CODESET_INTS = 4;
+
+  static final int CODE_VALUE = 0;
+  static final int CODE_LABEL = 1;
+  static final int CODE_DESCRIPTION = 2;
+  static final int CODE_CONCEPT_TYPE = 3;
+  static final int CODE_TEST_AGE = 4;
+  static final int CODE_STATUS = 5;
+  static final int CODE_NEW_CODE_VALUE = 6;
+  static final int CODE_REASON = 7;
+  static final int CODE_EFFECTIVE_DATE = 8;
+  static final int CODE_NOT_BEFORE = 9;
+  static final int CODE_NOT_EXPECTED_BEFORE = 10;
+  static final int CODE_NOT_EXPECTED_AFTER = 11;
+  static final int CODE_NOT_AFTER = 12;
+  static final int CODE_USE_AGE = 13;
+  static final int CODE_FLAGS = 14;
+  static final int CODE_FIRST_LINK = 15;
+  static final int CODE_LINK_COUNT = 16;
+  static final int CODE_INTS = 17;
+
+  static final int FLAG_CODE_STATUS = 1;
+  static final int FLAG_DEPRECATED = 2;
+  static final int FLAG_REFERENCE = 4;
+  static final int FLAG_USE_DATE = 8;
+  static final int FLAG_USE_AGE = 16;
+
+  public static final int NO_STRING = -1;
+  public static final int NO_DATE = -1;
+
+  private final ByteBuffer buffer;
+  private final int stringCount;
+  private final int codesetCount;
+  private final int codeCount;
+  private final int linkCount;
+  private final int stringOffsetsPosition;
+  private final int stringDataPosition;
+  private final int codesetsPosition;
+  private final int codesPosition;
+  private final int valueIndexPosition;
+  private final int linksPosition;
+
+  CompiledCodebase(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    if (buffer.capacity() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a compiled codebase");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Compiled codebase version " + buffer.getInt(4) + " is not supported");
+    }
+    stringCount = buffer.getInt(HEADER_STRING_COUNT);
+    codesetCount = buffer.getInt(HEADER_CODESET_COUNT);
+    codeCount = buffer.getInt(HEADER_CODE_COUNT);
+    linkCount = buffer.getInt(HEADER_LINK_COUNT);
+    stringOffsetsPosition = buffer.getInt(HEADER_STRING_OFFSETS);
+    stringDataPosition = buffer.getInt(HEADER_STRING_DATA);
+    codesetsPosition = buffer.getInt(HEADER_CODESETS);
+    codesPosition = buffer.getInt(HEADER_CODES);
+    valueIndexPosition = buffer.getInt(HEADER_VALUE_INDEX);
+    linksPosition = buffer.getInt(HEADER_LINKS);
+    if (linksPosition + 8L * linkCount > buffer.capacity()) {
+      throw new IOException("Compiled codebase is truncated");
+    }
+  }
+
+  /**
+   * Maps the file read only. The mapping stays valid after the file is
+   * closed, so nothing has to be closed when done with it.
+   */
+  public static CompiledCodebase open(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Compiled codebase " + file.getName() + " is too large to map");
+      }
+      return new CompiledCodebase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * @return true if the binary file was made from the compiled file as it is
+   *         now, going by its length and last modified time
+   */
+  public static boolean describes(File binaryFile, File compiledFile) throws IOException {
+    if (!binaryFile.exists() || !compiledFile.exists() || binaryFile.length() < HEADER_LENGTH) {
+      return false;
+    }
+    try (DataInputStream in = new DataInputStream(new FileInputStream(binaryFile))) {
+      return in.readInt() == MAGIC && in.readInt() == VERSION && in.readLong() == compiledFile.length()
+          && in.readLong() == compiledFile.lastModified();
+    }
+  }
+
+  public int getStringCount() {
+    return stringCount;
+  }
+
+  public int getCodesetCount() {
+    return codesetCount;
+  }
+
+  public int getCodeCount() {
+    return codeCount;
+  }
+
+  public int getLinkCount() {
+    return linkCount;
+  }
+
+  /**
+   * @return the string, or null for {@link #NO_STRING}
+   */
+  public String getString(int id) {
+    if (id == NO_STRING) {
+      return null;
+    }
+    int start = stringStart(id);
+    byte[] bytes = new byte[stringStart(id + 1) - start];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(start + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private int stringStart(int id) {
+    return stringDataPosition + buffer.getInt(stringOffsetsPosition + 4 * id);
+  }
+
+  /**
+   * Compares a string in the table with UTF-8 bytes, byte by byte as unsigned
+   * values, with null before everything else.
+   */
+  private int compareString(int id, byte[] key) {
+    if (id == NO_STRING) {
+      return -1;
+    }
+    int start = stringStart(id);
+    int length = stringStart(id + 1) - start;
+    int common = Math.min(length, key.length);
+    for (int i = 0; i < common; i++) {
+      int c = (buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return length - key.length;
+  }
+
+  private int codesetInt(int codeset, int field) {
+    return buffer.getInt(codesetsPosition + 4 * (codeset * CODESET_INTS + field));
+  }
+
+  private int codeInt(int code, int field) {
+    return buffer.getInt(codesPosition + 4 * (code * CODE_INTS + field));
+  }
+
+  /**
+   * @return the number of the codeset with this type, or -1 if there is none
+   */
+  public int findCodeset(String type) {
+    if (type == null) {
+      return -1;
+    }
+    byte[] key = type.getBytes(StandardCharsets.UTF_8);
+    for (int codeset = 0; codeset < codesetCount; codeset++) {
+      if (compareString(codesetInt(codeset, CODESET_TYPE), key) == 0) {
+        return codeset;
+      }
+    }
+    return -1;
+  }
+
+  public String getCodesetLabel(int codeset) {
+    return getString(codesetInt(codeset, CODESET_LABEL));
+  }
+
+  public String getCodesetType(int codeset) {
+    return getString(codesetInt(codeset, CODESET_TYPE));
+  }
+
+  /**
+   * @return the number of the first code of the codeset, the rest follow it
+   */
+  public int getFirstCode(int codeset) {
+    return codesetInt(codeset, CODESET_FIRST_CODE);
+  }
+
+  public int getCodeCount(int codeset) {
+    return codesetInt(codeset, CODESET_CODE_COUNT);
+  }
+
+  /**
+   * Looks the value up in the codeset's value index. If the codeset has more
+   * than one code with the value the first of them is found.
+   *
+   * @return the number of the code, or -1 if the codeset has no such value
+   */
+  public int findCode(int codeset, String value) {
+    if (codeset < 0 || value == null) {
+      return -1;
+    }
+    byte[] key = value.getBytes(StandardCharsets.UTF_8);
+    int first = getFirstCode(codeset);
+    int low = 0;
+    int high = getCodeCount(codeset) - 1;
+    int found = -1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int code = buffer.getInt(valueIndexPosition + 4 * (first + middle));
+      int c = compareString(codeInt(code, CODE_VALUE), key);
+      if (c < 0) {
+        low = middle + 1;
+      } else {
+        if (c == 0) {
+          found = code;
+        }
+        high = middle - 1;
+      }
+    }
+    return found;
+  }
+
+  public int findCode(String type, String value) {
+    return findCode(findCodeset(type), value);
+  }
+
+  public String getValue(int code) {
+    return getString(codeInt(code, CODE_VALUE));
+  }
+
+  public String getLabel(int code) {
+    return getString(codeInt(code, CODE_LABEL));
+  }
+
+  public String getDescription(int code) {
+    return getString(codeInt(code, CODE_DESCRIPTION));
+  }
+
+  public String getConceptType(int code) {
+    return getString(codeInt(code, CODE_CONCEPT_TYPE));
+  }
+
+  public String getTestAge(int code) {
+    return getString(codeInt(code, CODE_TEST_AGE));
+  }
+
+  public boolean hasCodeStatus(int code) {
+    return (codeInt(code, CODE_FLAGS) & FLAG_CODE_STATUS) != 0;
+  }
+
+  public String getStatus(int code) {
+    return getString(codeInt(code, CODE_STATUS));
+  }
+
+  public boolean isDeprecated(int code) {
+    return (codeInt(code, CODE_FLAGS) & FLAG_DEPRECATED) != 0;
+  }
+
+  public String getNewCodeValue(int code) {
+    return getString(codeInt(code, CODE_NEW_CODE_VALUE));
+  }
+
+  public String getReason(int code) {
+    return getString(codeInt(code, CODE_REASON));
+  }
+
+  /**
+   * @return the packed deprecated effective date
+   */
+  public int getEffectiveDate(int code) {
+    return codeInt(code, CODE_EFFECTIVE_DATE);
+  }
+
+  public boolean hasUseDate(int code) {
+    return (codeInt(code, CODE_FLAGS) & FLAG_USE_DATE) != 0;
+  }
+
+  /**
+   * @return the packed use date
+   */
+  public int getNotBefore(int code) {
+    return codeInt(code, CODE_NOT_BEFORE);
+  }
+
+  public int getNotExpectedBefore(int code) {
+    return codeInt(code, CODE_NOT_EXPECTED_BEFORE);
+  }
+
+  public int getNotExpectedAfter(int code) {
+    return codeInt(code, CODE_NOT_EXPECTED_AFTER);
+  }
+
+  public int getNotAfter(int code) {
+    return codeInt(code, CODE_NOT_AFTER);
+  }
+
+  public boolean hasUseAge(int code) {
+    return (codeInt(code, CODE_FLAGS) & FLAG_USE_AGE) != 0;
+  }
+
+  public byte getNotBeforeMonth(int code) {
+    return (byte) (codeInt(code, CODE_USE_AGE) >> 8);
+  }
+
+  public byte getNotAfterMonth(int code) {
+    return (byte) codeInt(code, CODE_USE_AGE);
+  }
+
+  public boolean hasReference(int code) {
+    return (codeInt(code, CODE_FLAGS) & FLAG_REFERENCE) != 0;
+  }
+
+  public int getLinkCount(int code) {
+    return codeInt(code, CODE_LINK_COUNT);
+  }
+
+  /**
+   * @return the type of the codeset the code's link at this position is to
+   */
+  public String getLinkCodeset(int code, int link) {
+    return getString(linkInt(code, link, 0));
+  }
+
+  public String getLinkValue(int code, int link) {
+    return getString(linkInt(code, link, 1));
+  }
+
+  private int linkInt(int code, int link, int field) {
+    return buffer.getInt(linksPosition + 8 * (codeInt(code, CODE_FIRST_LINK) + link) + 4 * field);
+  }
+
+  /**
+   * @return true if the packed date is a yyyyMMdd date, in which case
+   *         comparing two of them as ints compares the dates
+   */
+  public static boolean isPackedDate(int packed) {
+    return packed >= 0;
+  }
+
+  /**
+   * @return the date as it was written in the codeset, or null if there is
+   *         none
+   */
+  public String getDateText(int packed) {
+    if (packed == NO_DATE) {
+      return null;
+    }
+    if (isPackedDate(packed)) {
+      return unpackDate(packed);
+    }
+    return getString(-packed - 2);
+  }
+
+  /**
+   * @return the date as an int holding the same number if it is written as
+   *         yyyyMMdd, otherwise {@link #NO_DATE}
+   */
+  public static int parseDate(String date) {
+    if (date == null || date.length() != 8) {
+      return NO_DATE;
+    }
+    int packed = 0;
+    for (int i = 0; i < 8; i++) {
+      char c = date.charAt(i);
+      if (c < '0' || c > '9') {
+        return NO_DATE;
+      }
+      packed = packed * 10 + (c - '0');
+    }
+    return packed;
+  }
+
+  static String unpackDate(int packed) {
+    char[] text = new char[8];
+    for (int i = 7; i >= 0; i--) {
+      text[i] = (char) ('0' + packed % 10);
+      packed /= 10;
+    }
+    return new String(text);
+  }
+
+  /**
+   * Builds the JAXB model back from the binary form, the same as unmarshalling
+   * the Compiled.xml it was made from.
+   */
+  public Codebase toCodebase() {
+    return toCodebase(new StringPool());
+  }
+
+  /**
+   * @param stringPool
+   *          the pool the strings that repeat across codesets are kept in
+   */
+  public Codebase toCodebase(StringPool stringPool) {
+    Codebase codebase = new Codebase();
+    for (int codeset = 0; codeset < codesetCount; codeset++) {
+      Codebase.Codeset c = new Codebase.Codeset();
+      c.setLabel(getCodesetLabel(codeset));
+      c.setType(stringPool.intern(getCodesetType(codeset)));
+      List<Codebase.Codeset.Code> codeList = c.getCode();
+      int first = getFirstCode(codeset);
+      int count = getCodeCount(codeset);
+      for (int code = first; code < first + count; code++) {
+        codeList.add(toCode(code, stringPool));
+      }
+      codebase.getCodeset().add(c);
+    }
+    return codebase;
+  }
+
+  private Codebase.Codeset.Code toCode(int code, StringPool stringPool) {
+    Codebase.Codeset.Code c = new Codebase.Codeset.Code();
+    c.setValue(stringPool.intern(getValue(code)));
+    c.setLabel(getLabel(code));
+    c.setDescription(getDescription(code));
+    c.setConceptType(stringPool.intern(getConceptType(code)));
+    c.setTestAge(stringPool.intern(getTestAge(code)));
+    if (hasCodeStatus(code)) {
+      Codebase.Codeset.Code.CodeStatus codeStatus = new Codebase.Codeset.Code.CodeStatus();
+      codeStatus.setStatus(stringPool.intern(getStatus(code)));
+      if (isDeprecated(code)) {
+        Codebase.Codeset.Code.CodeStatus.Deprecated deprecated = new Codebase.Codeset.Code.CodeStatus.Deprecated();
+        deprecated.setNewCodeValue(stringPool.intern(getNewCodeValue(code)));
+        deprecated.setReason(stringPool.intern(getReason(code)));
+        deprecated.setEffectiveDate(stringPool.intern(getDateText(getEffectiveDate(code))));
+        codeStatus.setDeprecated(deprecated);
+      }
+      c.setCodeStatus(codeStatus);
+    }
+    if (hasReference(code)) {
+      Codebase.Codeset.Code.Reference reference = new Codebase.Codeset.Code.Reference();
+      for (int link = 0; link < getLinkCount(code); link++) {
+        Codebase.Codeset.Code.Reference.LinkTo linkTo = new Codebase.Codeset.Code.Reference.LinkTo();
+        linkTo.setCodeset(stringPool.intern(getLinkCodeset(code, link)));
+        linkTo.setValue(stringPool.intern(getLinkValue(code, link)));
+        reference.getLinkTo().add(linkTo);
+      }
+      c.setReference(reference);
+    }
+    if (hasUseDate(code)) {
+      Codebase.Codeset.Code.UseDate useDate = new Codebase.Codeset.Code.UseDate();
+      useDate.setNotBefore(getDateText(getNotBefore(code)));
+      useDate.setNotExpectedBefore(getDateText(getNotExpectedBefore(code)));
+      useDate.setNotExpectedAfter(getDateText(getNotExpectedAfter(code)));
+      useDate.setNotAfter(getDateText(getNotAfter(code)));
+      c.setUseDate(useDate);
+    }
+    if (hasUseAge(code)) {
+      Codebase.Codeset.Code.UseAge useAge = new Codebase.Codeset.Code.UseAge();
+      useAge.setNotBeforeMonth(getNotBeforeMonth(code));
+      useAge.setNotAfterMonth(getNotAfterMonth(code));
+      c.setUseAge(useAge);
+    }
+    return c;
+  }
+}
@@ -0,0 +1,266 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+
+/**
+ * Writes the binary form of a compiled codebase that {@link CompiledCodebase}
+ * maps and reads in place. See there for the layout of the file.
+ */
+public class CompiledCodebaseWriter
+{
+  private final Map<String, Integer> stringIdMap = new HashMap<>();
+  private final List<byte[]> stringList = new ArrayList<>();
+  private int stringDataLength = 0;
+
+  private int[] codesetInts;
+  private int[] codeInts;
+  private int[] valueIndex;
+  private int[] linkInts;
+
+  /**
+   * Unmarshals the compiled file and writes its binary form, marked with the
+   * length and last modified time of the compiled file so that
+   * {@link CompiledCodebase#describes(File, File)} can tell when it is out of
+   * date.
+   */
+  public static void write(File compiledFile, File binaryFile) throws IOException, JAXBException {
+    long sourceLength = compiledFile.length();
+    long sourceLastModified = compiledFile.lastModified();
+    JAXBContext jaxbContext = JAXBContext.newInstance(Codebase.class);
+    Codebase codebase = (Codebase) jaxbContext.createUnmarshaller().unmarshal(compiledFile);
+    new CompiledCodebaseWriter().write(codebase, sourceLength, sourceLastModified, binaryFile);
+  }
+
+  public void write(Codebase codebase, long sourceLength, long sourceLastModified, File binaryFile)
+      throws IOException {
+    build(codebase);
+    int stringCount = stringList.size();
+    long stringOffsetsPosition = CompiledCodebase.HEADER_LENGTH;
+    long stringDataPosition = stringOffsetsPosition + 4L * (stringCount + 1);
+    long codesetsPosition = stringDataPosition + stringDataLength;
+    long codesPosition = codesetsPosition + 4L * codesetInts.length;
+    long valueIndexPosition = codesPosition + 4L * codeInts.length;
+    long linksPosition = valueIndexPosition + 4L * valueIndex.length;
+    long length = linksPosition + 4L * linkInts.length;
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Codebase is too large for the binary form, it would take " + length + " bytes");
+    }
+
+    File tempFile = File.createTempFile(binaryFile.getName(), ".tmp", binaryFile.getAbsoluteFile().getParentFile());
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile),
+          64 * 1024))) {
+        out.writeInt(CompiledCodebase.MAGIC);
+        out.writeInt(CompiledCodebase.VERSION);
+        out.writeLong(sourceLength);
+        out.writeLong(sourceLastModified);
+        out.writeInt(stringCount);
+        out.writeInt(codesetInts.length / CompiledCodebase.CODESET_INTS);
+        out.writeInt(codeInts.length / CompiledCodebase.CODE_INTS);
+        out.writeInt(linkInts.length / 2);
+        out.writeInt((int) stringOffsetsPosition);
+        out.writeInt((int) stringDataPosition);
+        out.writeInt((int) codesetsPosition);
+        out.writeInt((int) codesPosition);
+        out.writeInt((int) valueIndexPosition);
+        out.writeInt((int) linksPosition);
+        int offset = 0;
+        for (byte[] string : stringList) {
+          out.writeInt(offset);
+          offset += string.length;
+        }
+        out.writeInt(offset);
+        for (byte[] string : stringList) {
+          out.write(string);
+        }
+        writeInts(out, codesetInts);
+        writeInts(out, codeInts);
+        writeInts(out, valueIndex);
+        writeInts(out, linkInts);
+      }
+      Files.move(tempFile.toPath(), binaryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tempFile.toPath());
+    }
+  }
+
+  private static void writeInts(DataOutputStream out, int[] ints) throws IOException {
+    for (int i : ints) {
+      out.writeInt(i);
+    }
+  }
+
+  private void build(Codebase codebase) {
+    List<Codebase.Codeset> codesetList = codebase.getCodeset();
+    int codeCount = 0;
+    int linkCount = 0;
+    for (Codebase.Codeset codeset : codesetList) {
+      for (Codebase.Codeset.Code code : codeset.getCode()) {
+        codeCount++;
+        if (code.getReference() != null) {
+          linkCount += code.getReference().getLinkTo().size();
+        }
+      }
+    }
+    codesetInts = new int[codesetList.size() * CompiledCodebase.CODESET_INTS];
+    codeInts = new int[codeCount * CompiledCodebase.CODE_INTS];
+    valueIndex = new int[codeCount];
+    linkInts = new int[linkCount * 2];
+
+    int code = 0;
+    int link = 0;
+    for (int codeset = 0; codeset < codesetList.size(); codeset++) {
+      Codebase.Codeset c = codesetList.get(codeset);
+      int base = codeset * CompiledCodebase.CODESET_INTS;
+      codesetInts[base + CompiledCodebase.CODESET_LABEL] = stringId(c.getLabel());
+      codesetInts[base + CompiledCodebase.CODESET_TYPE] = stringId(c.getType());
+      codesetInts[base + CompiledCodebase.CODESET_FIRST_CODE] = code;
+      codesetInts[base + CompiledCodebase.CODESET_CODE_COUNT] = c.getCode().size();
+      int firstCode = code;
+      for (Codebase.Codeset.Code cd : c.getCode()) {
+        link = buildCode(cd, code, link);
+        code++;
+      }
+      sortValues(firstCode, code);
+    }
+  }
+
+  private int buildCode(Codebase.Codeset.Code code, int index, int link) {
+    int base = index * CompiledCodebase.CODE_INTS;
+    Arrays.fill(codeInts, base, base + CompiledCodebase.CODE_INTS, CompiledCodebase.NO_STRING);
+    codeInts[base + CompiledCodebase.CODE_VALUE] = stringId(code.getValue());
+    codeInts[base + CompiledCodebase.CODE_LABEL] = stringId(code.getLabel());
+    codeInts[base + CompiledCodebase.CODE_DESCRIPTION] = stringId(code.getDescription());
+    codeInts[base + CompiledCodebase.CODE_CONCEPT_TYPE] = stringId(code.getConceptType());
+    codeInts[base + CompiledCodebase.CODE_TEST_AGE] = stringId(code.getTestAge());
+    int flags = 0;
+    if (code.getCodeStatus() != null) {
+      flags |= CompiledCodebase.FLAG_CODE_STATUS;
+      codeInts[base + CompiledCodebase.CODE_STATUS] = stringId(code.getCodeStatus().getStatus());
+      Codebase.Codeset.Code.CodeStatus.Deprecated deprecated = code.getCodeStatus().getDeprecated();
+      if (deprecated != null) {
+        flags |= CompiledCodebase.FLAG_DEPRECATED;
+        codeInts[base + CompiledCodebase.CODE_NEW_CODE_VALUE] = stringId(deprecated.getNewCodeValue());
+        codeInts[base + CompiledCodebase.CODE_REASON] = stringId(deprecated.getReason());
+        codeInts[base + CompiledCodebase.CODE_EFFECTIVE_DATE] = packDate(deprecated.getEffectiveDate());
+      }
+    }
+    Codebase.Codeset.Code.UseDate useDate = code.getUseDate();
+    if (useDate != null) {
+      flags |= CompiledCodebase.FLAG_USE_DATE;
+      codeInts[base + CompiledCodebase.CODE_NOT_BEFORE] = packDate(useDate.getNotBefore());
+      codeInts[base + CompiledCodebase.CODE_NOT_EXPECTED_BEFORE] = packDate(useDate.getNotExpectedBefore());
+      codeInts[base + CompiledCodebase.CODE_NOT_EXPECTED_AFTER] = packDate(useDate.getNotExpectedAfter());
+      codeInts[base + CompiledCodebase.CODE_NOT_AFTER] = packDate(useDate.getNotAfter());
+    }
+    Codebase.Codeset.Code.UseAge useAge = code.getUseAge();
+    codeInts[base + CompiledCodebase.CODE_USE_AGE] = 0;
+    if (useAge != null) {
+      flags |= CompiledCodebase.FLAG_USE_AGE;
+      codeInts[base + CompiledCodebase.CODE_USE_AGE] = (useAge.getNotBeforeMonth() & 0xFF) << 8
+          | (useAge.getNotAfterMonth() & 0xFF);
+    }
+    codeInts[base + CompiledCodebase.CODE_FIRST_LINK] = link;
+    codeInts[base + CompiledCodebase.CODE_LINK_COUNT] = 0;
+    if (code.getReference() != null) {
+      flags |= CompiledCodebase.FLAG_REFERENCE;
+      List<Codebase.Codeset.Code.Reference.LinkTo> linkToList = code.getReference().getLinkTo();
+      codeInts[base + CompiledCodebase.CODE_LINK_COUNT] = linkToList.size();
+      for (Codebase.Codeset.Code.Reference.LinkTo linkTo : linkToList) {
+        linkInts[2 * link] = stringId(linkTo.getCodeset());
+        linkInts[2 * link + 1] = stringId(linkTo.getValue());
+        link++;
+      }
+    }
+    codeInts[base + CompiledCodebase.CODE_FLAGS] = flags;
+    return link;
+  }
+
+  /**
+   * Fills the codeset's part of the value index with its codes sorted by the
+   * UTF-8 bytes of their value, keeping codes with the same value in order.
+   */
+  private void sortValues(int firstCode, int endCode) {
+    Integer[] codes = new Integer[endCode - firstCode];
+    for (int i = 0; i < codes.length; i++) {
+      codes[i] = firstCode + i;
+    }
+    Arrays.sort(codes, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer code1, Integer code2) {
+        return compareValues(valueId(code1), valueId(code2));
+      }
+    });
+    for (int i = 0; i < codes.length; i++) {
+      valueIndex[firstCode + i] = codes[i];
+    }
+  }
+
+  private int valueId(int code) {
+    return codeInts[code * CompiledCodebase.CODE_INTS + CompiledCodebase.CODE_VALUE];
+  }
+
+  private int compareValues(int id1, int id2) {
+    if (id1 == id2) {
+      return 0;
+    }
+    if (id1 == CompiledCodebase.NO_STRING || id2 == CompiledCodebase.NO_STRING) {
+      return id1 == CompiledCodebase.NO_STRING ? -1 : 1;
+    }
+    byte[] value1 = stringList.get(id1);
+    byte[] value2 = stringList.get(id2);
+    int common = Math.min(value1.length, value2.length);
+    for (int i = 0; i < common; i++) {
+      int c = (value1[i] & 0xFF) - (value2[i] & 0xFF);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return value1.length - value2.length;
+  }
+
+  private int stringId(String s) {
+    if (s == null) {
+      return CompiledCodebase.NO_STRING;
+    }
+    Integer id = stringIdMap.get(s);
+    if (id == null) {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      id = stringList.size();
+      stringIdMap.put(s, id);
+      stringList.add(bytes);
+      stringDataLength += bytes.length;
+    }
+    return id;
+  }
+
+  /**
+   * Packs a yyyyMMdd date into an int holding the same number. Anything else
+   * goes into the string table and is packed as -2 minus its string number.
+   */
+  int packDate(String date) {
+    int packed = CompiledCodebase.parseDate(date);
+    if (date == null || packed != CompiledCodebase.NO_DATE) {
+      return packed;
+    }
+    return -stringId(date) - 2;
+  }
+}
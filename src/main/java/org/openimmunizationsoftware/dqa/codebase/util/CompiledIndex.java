@@ -0,0 +1,171 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The sidecar index of a compiled codebase file. For each set file it records
+ * where its codeset block starts in the compiled file, how long the block is,
+ * the codeset type and the digest of the set file it was compiled from. The
+ * compiler uses it to copy blocks whose set file has not changed instead of
+ * compiling them again, and readers can use it to read a single codeset
+ * without parsing the whole compiled file.
+ * <p>
+ * The index is a text file: a first line holding the length and last modified
+ * time of the compiled file it describes, then one tab separated line per
+ * block with offset, length, digest, type and set filename.
+ */
+public class CompiledIndex
+{
+  private static final String HEADER_PREFIX = "# compiled ";
+
+  public static class Entry
+  {
+    private final long offset;
+    private final long length;
+    private final String digest;
+    private final String type;
+    private final String filename;
+
+    public Entry(long offset, long length, String digest, String type, String filename) {
+      this.offset = offset;
+      this.length = length;
+      this.digest = digest;
+      this.type = type;
+      this.filename = filename;
+    }
+
+    public long getOffset() {
+      return offset;
+    }
+
+    public long getLength() {
+      return length;
+    }
+
+    public String getDigest() {
+      return digest;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    public String getFilename() {
+      return filename;
+    }
+  }
+
+  private final long compiledLength;
+  private final long compiledLastModified;
+  private final List<Entry> entryList;
+  private final Map<String, Entry> entryByFilenameMap = new LinkedHashMap<>();
+  private final Map<String, Entry> entryByTypeMap = new LinkedHashMap<>();
+
+  public CompiledIndex(long compiledLength, long compiledLastModified, List<Entry> entryList) {
+    this.compiledLength = compiledLength;
+    this.compiledLastModified = compiledLastModified;
+    this.entryList = Collections.unmodifiableList(new ArrayList<>(entryList));
+    for (Entry entry : entryList) {
+      entryByFilenameMap.put(entry.getFilename(), entry);
+      if (!entry.getType().equals("")) {
+        entryByTypeMap.put(entry.getType(), entry);
+      }
+    }
+  }
+
+  public static File getIndexFile(File compiledFile) {
+    return new File(compiledFile.getPath() + ".index");
+  }
+
+  /**
+   * @return the index, or null if it does not exist or cannot be read
+   */
+  public static CompiledIndex load(File indexFile) throws IOException {
+    if (!indexFile.exists()) {
+      return null;
+    }
+    try (BufferedReader in = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+      String line = in.readLine();
+      if (line == null || !line.startsWith(HEADER_PREFIX)) {
+        return null;
+      }
+      String[] header = line.substring(HEADER_PREFIX.length()).split(" ");
+      long compiledLength = Long.parseLong(header[0]);
+      long compiledLastModified = Long.parseLong(header[1]);
+      List<Entry> entryList = new ArrayList<>();
+      while ((line = in.readLine()) != null) {
+        String[] fields = line.split("\t", 5);
+        if (fields.length != 5) {
+          return null;
+        }
+        entryList.add(new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2], fields[3],
+            fields[4]));
+      }
+      return new CompiledIndex(compiledLength, compiledLastModified, entryList);
+    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+      return null;
+    }
+  }
+
+  public void save(File indexFile) throws IOException {
+    try (Writer out = Files.newBufferedWriter(indexFile.toPath(), StandardCharsets.UTF_8)) {
+      out.write(HEADER_PREFIX + compiledLength + " " + compiledLastModified + "\n");
+      for (Entry entry : entryList) {
+        out.write(entry.getOffset() + "\t" + entry.getLength() + "\t" + entry.getDigest() + "\t" + entry.getType()
+            + "\t" + entry.getFilename() + "\n");
+      }
+    }
+  }
+
+  /**
+   * @return true if the compiled file is still the one this index was written
+   *         for, going by its length and last modified time
+   */
+  public boolean describes(File compiledFile) {
+    return compiledFile.exists() && compiledFile.length() == compiledLength
+        && compiledFile.lastModified() == compiledLastModified;
+  }
+
+  public List<Entry> getEntryList() {
+    return entryList;
+  }
+
+  public Entry getEntry(String filename) {
+    return entryByFilenameMap.get(filename);
+  }
+
+  public Entry getEntryByType(String type) {
+    return entryByTypeMap.get(type);
+  }
+
+  /**
+   * Reads one codeset block straight out of the compiled file.
+   */
+  public static byte[] readBlock(File compiledFile, Entry entry) throws IOException {
+    if (entry.getLength() > Integer.MAX_VALUE) {
+      throw new IOException("Codeset block for " + entry.getFilename() + " is too large to read into memory");
+    }
+    ByteBuffer buffer = ByteBuffer.allocate((int) entry.getLength());
+    try (FileChannel channel = FileChannel.open(compiledFile.toPath(), StandardOpenOption.READ)) {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, entry.getOffset() + buffer.position()) < 0) {
+          throw new IOException("Compiled file ends before the codeset block for " + entry.getFilename());
+        }
+      }
+    }
+    return buffer.array();
+  }
+}
@@ -0,0 +1,135 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Remembers a SHA-256 digest of the content of each file a run read or wrote,
+ * so the next run can tell which files have changed since. The digests are
+ * kept in a properties file, keyed by a name chosen by the caller. The file is
+ * written in key order and without a date, so it only changes when a digest
+ * does.
+ */
+public class ContentManifest
+{
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File manifestFile;
+  private final Properties digestProperties = new Properties();
+  private final Map<File, String> currentDigestMap = new HashMap<>();
+
+  /**
+   * Loads the manifest, or starts an empty one if the file does not exist yet.
+   */
+  public ContentManifest(File manifestFile) throws IOException {
+    this.manifestFile = manifestFile;
+    if (manifestFile.exists()) {
+      try (InputStream in = new FileInputStream(manifestFile)) {
+        digestProperties.load(in);
+      }
+    }
+  }
+
+  /**
+   * @return true if the file has the same content it had when it was last
+   *         recorded under this key
+   */
+  public boolean isUnchanged(String key, File file) throws IOException {
+    String digest = digestProperties.getProperty(key);
+    return digest != null && digest.equals(getDigest(file));
+  }
+
+  /**
+   * Records the current content of the file under this key. The file is read
+   * again, as it may have been written since it was last looked at.
+   */
+  public void record(String key, File file) throws IOException {
+    currentDigestMap.remove(file);
+    digestProperties.setProperty(key, getDigest(file));
+  }
+
+  public void save() throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    digestProperties.store(buffer, null);
+    List<String> lineList = new ArrayList<>();
+    for (String line : new String(buffer.toByteArray(), StandardCharsets.ISO_8859_1).split("\\r?\\n")) {
+      // drops the date comment that store always writes
+      if (!line.isEmpty() && !line.startsWith("#")) {
+        lineList.add(line);
+      }
+    }
+    Collections.sort(lineList);
+    StringBuilder sb = new StringBuilder();
+    sb.append("# Content digests of the files read and written by the last update\n");
+    for (String line : lineList) {
+      sb.append(line).append('\n');
+    }
+    byte[] content = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    if (!manifestFile.exists() || !Arrays.equals(content, Files.readAllBytes(manifestFile.toPath()))) {
+      Files.write(manifestFile.toPath(), content);
+    }
+  }
+
+  private String getDigest(File file) throws IOException {
+    String digest = currentDigestMap.get(file);
+    if (digest == null) {
+      digest = digest(file);
+      currentDigestMap.put(file, digest);
+    }
+    return digest;
+  }
+
+  /**
+   * @return the hex SHA-256 digest of the file's content, or an empty string
+   *         if the file does not exist
+   */
+  public static String digest(File file) throws IOException {
+    if (!file.exists()) {
+      return "";
+    }
+    MessageDigest messageDigest = createMessageDigest();
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      while (channel.read(buffer) >= 0) {
+        buffer.flip();
+        messageDigest.update(buffer);
+        buffer.clear();
+      }
+    }
+    return toHex(messageDigest.digest());
+  }
+
+  static MessageDigest createMessageDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+      sb.append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+}
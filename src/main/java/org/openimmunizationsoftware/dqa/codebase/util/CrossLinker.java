@@ -0,0 +1,392 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code.Reference.LinkTo;
+
+/**
+ * Makes every link between codesets go both ways. Each link from a code to a
+ * code in another codeset is checked: repeated links and links to codes that
+ * do not exist are removed, and the code linked to is given a link back.
+ * <p>
+ * {@link #linkSerial()} walks the codesets, their codes and their links in
+ * order on one thread. {@link #link(ForkJoinPool)} gets the same result, with
+ * the same counts, in three phases: the links out of each codeset are checked
+ * and resolved at the same time, the resulting edges are grouped by the
+ * codeset they point into and those already linked back are dropped, again
+ * at the same time, and then the remaining links back are added in one merge
+ * ordered the way the serial walk would have added them. Links back that the
+ * serial walk would go on to examine, because they are added to a code it has
+ * not reached yet, are examined in that merge as well.
+ */
+public class CrossLinker
+{
+  private final List<Codeset> codesetList = new ArrayList<>();
+  private final List<IndexedCodeset> indexedCodesetList = new ArrayList<>();
+  private final Map<String, IndexedCodeset> codesetCodeMap = new HashMap<>();
+  private final Map<String, Integer> codesetPositionMap = new HashMap<>();
+  private final int[] linksExamined;
+  private final int[] linksRemoved;
+  private final int[] linksMade;
+  private final boolean[] walked;
+  private final PrintStream err;
+
+  /**
+   * @param indexedCodesetList
+   *          the codesets, in the order they are to be walked; when two share
+   *          a type, links to that type go to the last one
+   */
+  public CrossLinker(List<IndexedCodeset> indexedCodesetList, PrintStream err) {
+    for (IndexedCodeset indexedCodeset : indexedCodesetList) {
+      codesetPositionMap.put(indexedCodeset.getType(), codesetList.size());
+      codesetList.add(indexedCodeset.getCodeset());
+      this.indexedCodesetList.add(indexedCodeset);
+      codesetCodeMap.put(indexedCodeset.getType(), indexedCodeset);
+    }
+    linksExamined = new int[codesetList.size()];
+    linksRemoved = new int[codesetList.size()];
+    linksMade = new int[codesetList.size()];
+    walked = new boolean[codesetList.size()];
+    Arrays.fill(walked, true);
+    this.err = err;
+  }
+
+  /**
+   * Only walks the links out of the codesets of these types. The links out of
+   * the other codesets are left as they are, but they can still be linked to.
+   */
+  public void walkOnly(Collection<String> typeCollection) {
+    for (int position = 0; position < codesetList.size(); position++) {
+      walked[position] = typeCollection.contains(codesetList.get(position).getType());
+    }
+  }
+
+  public int getLinksExamined(int codesetPosition) {
+    return linksExamined[codesetPosition];
+  }
+
+  public int getLinksRemoved(int codesetPosition) {
+    return linksRemoved[codesetPosition];
+  }
+
+  public int getLinksMade(int codesetPosition) {
+    return linksMade[codesetPosition];
+  }
+
+  /**
+   * @return the codesets that were changed, in walk order
+   */
+  public List<Codeset> linkSerial() {
+    Set<Codeset> codesetChanged = new HashSet<>();
+    for (int position = 0; position < codesetList.size(); position++) {
+      if (!walked[position]) {
+        continue;
+      }
+      Codeset codeset = codesetList.get(position);
+      IndexedCodeset indexedCodeset = indexedCodesetList.get(position);
+      for (Code code : codeset.getCode()) {
+        if (code.getReference() != null) {
+          Set<String> alreadySeen = new HashSet<>();
+          for (Iterator<LinkTo> linkToIt = indexedCodeset.getLinkIndex(code).iterator(); linkToIt.hasNext();) {
+            LinkTo linkTo = linkToIt.next();
+            {
+              String alreadySeenKey = linkTo.getCodeset() + "." + linkTo.getValue();
+              if (alreadySeen.contains(alreadySeenKey)) {
+                err.println("  + Link " + alreadySeenKey + " is already mentioned, removing");
+                linkToIt.remove();
+                linksRemoved[position]++;
+                continue;
+              }
+              alreadySeen.add(alreadySeenKey);
+            }
+            linksExamined[position]++;
+            String otherCodesetType = linkTo.getCodeset();
+            IndexedCodeset otherCodeIndex = codesetCodeMap.get(otherCodesetType);
+            if (otherCodeIndex == null) {
+              err.println("  + Unable to find link to codeset '" + otherCodesetType + "'");
+            } else {
+              if (linkTo.getValue() == null || linkTo.getValue().equals("")) {
+                err.println("  + Link has no value in '" + code.getValue() + "'");
+              } else {
+                Code otherCode = otherCodeIndex.getExact(linkTo.getValue());
+                if (otherCode == null) {
+                  err.println(unableToFind(codeset, code, linkTo));
+                  linkToIt.remove();
+                  linksRemoved[position]++;
+                  codesetChanged.add(codeset);
+                } else {
+                  if (otherCodeIndex.getLinkIndex(otherCode).add(codeset.getType(), code.getValue())) {
+                    linksMade[position]++;
+                    codesetChanged.add(otherCodeIndex.getCodeset());
+                  }
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+    return inWalkOrder(codesetChanged);
+  }
+
+  /**
+   * @return the codesets that were changed, in walk order
+   */
+  public List<Codeset> link(ForkJoinPool pool) {
+    // phase one: check the links out of each codeset and resolve their targets
+    List<Callable<Outgoing>> outgoingTaskList = new ArrayList<>();
+    for (int position = 0; position < codesetList.size(); position++) {
+      final int sourcePosition = position;
+      outgoingTaskList.add(() -> collectOutgoing(sourcePosition));
+    }
+    List<Outgoing> outgoingList = invokeAll(pool, outgoingTaskList);
+
+    Set<Codeset> codesetChanged = new HashSet<>();
+    for (int position = 0; position < codesetList.size(); position++) {
+      Outgoing outgoing = outgoingList.get(position);
+      for (String message : outgoing.messageList) {
+        err.println(message);
+      }
+      if (outgoing.changed) {
+        codesetChanged.add(codesetList.get(position));
+      }
+    }
+
+    // phase two: group the edges by the codeset they point into, keeping walk
+    // order, and drop those that are already linked back
+    List<Callable<List<Edge>>> incomingTaskList = new ArrayList<>();
+    for (int position = 0; position < codesetList.size(); position++) {
+      final int targetPosition = position;
+      incomingTaskList.add(() -> collectIncoming(targetPosition, outgoingList));
+    }
+    List<List<Edge>> incomingList = invokeAll(pool, incomingTaskList);
+
+    // phase three: add the missing links back in walk order
+    PriorityQueue<Edge> edgeQueue = new PriorityQueue<>(Edge.WALK_ORDER);
+    for (List<Edge> incoming : incomingList) {
+      edgeQueue.addAll(incoming);
+    }
+    int sequence = 0;
+    while (!edgeQueue.isEmpty()) {
+      Edge edge = edgeQueue.poll();
+      int position = (int) (edge.position >>> 32);
+      Code target = edge.target;
+      IndexedCodeset targetIndex = indexedCodesetList.get((int) (edge.targetPosition >>> 32));
+      String linkCodeset = codesetList.get(position).getType();
+      String linkValue = edge.source.getValue();
+      if (edge.linkBack != null) {
+        // a link back added earlier to a code the walk had not reached yet
+        linksExamined[position]++;
+        IndexedCodeset otherCodeIndex = codesetCodeMap.get(edge.linkBack.getCodeset());
+        if (otherCodeIndex == null) {
+          err.println("  + Unable to find link to codeset '" + edge.linkBack.getCodeset() + "'");
+          continue;
+        }
+        if (edge.linkBack.getValue() == null || edge.linkBack.getValue().equals("")) {
+          err.println("  + Link has no value in '" + edge.source.getValue() + "'");
+          continue;
+        }
+        target = otherCodeIndex.getExact(edge.linkBack.getValue());
+        if (target == null) {
+          err.println(unableToFind(codesetList.get(position), edge.source, edge.linkBack));
+          indexedCodesetList.get(position).getLinkIndex(edge.source).remove(edge.linkBack);
+          linksRemoved[position]++;
+          codesetChanged.add(codesetList.get(position));
+          continue;
+        }
+        targetIndex = otherCodeIndex;
+      }
+      if (targetIndex.getLinkIndex(target).add(linkCodeset, linkValue)) {
+        long targetPosition = edge.targetPosition;
+        if (edge.linkBack != null) {
+          int targetCodesetPosition = codesetPositionMap.get(edge.linkBack.getCodeset());
+          targetPosition = ((long) targetCodesetPosition << 32)
+              | outgoingList.get(targetCodesetPosition).positionMap.get(target);
+        }
+        linksMade[position]++;
+        codesetChanged.add(codesetList.get((int) (targetPosition >>> 32)));
+        if (targetPosition > edge.position && walked[(int) (targetPosition >>> 32)]) {
+          List<LinkTo> linkToList = target.getReference().getLinkTo();
+          edgeQueue.add(new Edge(targetPosition, 1, sequence++, target, null, 0, linkToList.get(linkToList
+              .size() - 1)));
+        }
+      }
+    }
+    return inWalkOrder(codesetChanged);
+  }
+
+  private Outgoing collectOutgoing(int position) {
+    Outgoing outgoing = new Outgoing();
+    Codeset codeset = codesetList.get(position);
+    List<Code> codeList = codeset.getCode();
+    for (int codePosition = 0; codePosition < codeList.size(); codePosition++) {
+      Code code = codeList.get(codePosition);
+      outgoing.positionMap.put(code, codePosition);
+      if (!walked[position] || code.getReference() == null) {
+        continue;
+      }
+      int sequence = 0;
+      Set<String> alreadySeen = new HashSet<>();
+      for (Iterator<LinkTo> linkToIt = indexedCodesetList.get(position).getLinkIndex(code).iterator(); linkToIt
+          .hasNext();) {
+        LinkTo linkTo = linkToIt.next();
+        String alreadySeenKey = linkTo.getCodeset() + "." + linkTo.getValue();
+        if (!alreadySeen.add(alreadySeenKey)) {
+          outgoing.messageList.add("  + Link " + alreadySeenKey + " is already mentioned, removing");
+          linkToIt.remove();
+          linksRemoved[position]++;
+          continue;
+        }
+        linksExamined[position]++;
+        String otherCodesetType = linkTo.getCodeset();
+        IndexedCodeset otherCodeIndex = codesetCodeMap.get(otherCodesetType);
+        if (otherCodeIndex == null) {
+          outgoing.messageList.add("  + Unable to find link to codeset '" + otherCodesetType + "'");
+        } else if (linkTo.getValue() == null || linkTo.getValue().equals("")) {
+          outgoing.messageList.add("  + Link has no value in '" + code.getValue() + "'");
+        } else {
+          Code otherCode = otherCodeIndex.getExact(linkTo.getValue());
+          if (otherCode == null) {
+            outgoing.messageList.add(unableToFind(codeset, code, linkTo));
+            linkToIt.remove();
+            linksRemoved[position]++;
+            outgoing.changed = true;
+          } else {
+            long sourcePosition = ((long) position << 32) | codePosition;
+            Edge edge = new Edge(sourcePosition, 0, sequence++, code, otherCode, 0, null);
+            int targetCodesetPosition = codesetPositionMap.get(otherCodesetType);
+            List<Edge> edgeList = outgoing.edgeListMap.get(targetCodesetPosition);
+            if (edgeList == null) {
+              edgeList = new ArrayList<>();
+              outgoing.edgeListMap.put(targetCodesetPosition, edgeList);
+            }
+            edgeList.add(edge);
+          }
+        }
+      }
+    }
+    return outgoing;
+  }
+
+  private List<Edge> collectIncoming(int targetCodesetPosition, List<Outgoing> outgoingList) {
+    Map<Code, Integer> positionMap = outgoingList.get(targetCodesetPosition).positionMap;
+    IndexedCodeset targetIndex = indexedCodesetList.get(targetCodesetPosition);
+    List<Edge> incoming = new ArrayList<>();
+    for (int position = 0; position < outgoingList.size(); position++) {
+      List<Edge> edgeList = outgoingList.get(position).edgeListMap.get(targetCodesetPosition);
+      if (edgeList == null) {
+        continue;
+      }
+      String linkCodeset = codesetList.get(position).getType();
+      for (Edge edge : edgeList) {
+        // links are only ever added from here on, so one that is already there
+        // will never be made
+        if (edge.target.getReference() == null
+            || !targetIndex.getLinkIndex(edge.target).contains(linkCodeset, edge.source.getValue())) {
+          edge.targetPosition = ((long) targetCodesetPosition << 32) | positionMap.get(edge.target);
+          incoming.add(edge);
+        }
+      }
+    }
+    return incoming;
+  }
+
+  private static String unableToFind(Codeset codeset, Code code, LinkTo linkTo) {
+    return "  + Unable to find link from '" + code.getValue() + "' in codeset '" + codeset.getType()
+        + "' to code '" + linkTo.getValue() + "' in codeset '" + linkTo.getCodeset() + "'";
+  }
+
+  private List<Codeset> inWalkOrder(Set<Codeset> codesetChanged) {
+    List<Codeset> changedList = new ArrayList<>();
+    for (Codeset codeset : codesetList) {
+      if (codesetChanged.contains(codeset) && !changedList.contains(codeset)) {
+        changedList.add(codeset);
+      }
+    }
+    return changedList;
+  }
+
+  private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> taskList) {
+    List<Callable<T>> stepTaskList = new ArrayList<>(taskList.size());
+    for (Callable<T> task : taskList) {
+      stepTaskList.add(StepScheduler.inStep(task));
+    }
+    List<T> resultList = new ArrayList<>(taskList.size());
+    for (Future<T> future : pool.invokeAll(stepTaskList)) {
+      try {
+        resultList.add(future.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while cross linking", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new IllegalStateException("Unable to cross link", e.getCause());
+      }
+    }
+    return resultList;
+  }
+
+  /**
+   * The links out of one codeset that resolved to a code, grouped by the
+   * position of the codeset they point into.
+   */
+  private static class Outgoing
+  {
+    private final Map<Integer, List<Edge>> edgeListMap = new HashMap<>();
+    private final Map<Code, Integer> positionMap = new IdentityHashMap<>();
+    private final List<String> messageList = new ArrayList<>();
+    private boolean changed = false;
+  }
+
+  /**
+   * A link to be made back from target to source, or, when linkBack is set, a
+   * link back that was added to source and is examined when the walk reaches
+   * it. Edges are ordered by where the serial walk would handle them: by
+   * codeset and code position, the code's own links before links added to it,
+   * and then in the order they were found.
+   */
+  private static class Edge
+  {
+    private static final Comparator<Edge> WALK_ORDER = Comparator.comparingLong((Edge e) -> e.position)
+        .thenComparingInt(e -> e.kind).thenComparingInt(e -> e.sequence);
+
+    private final long position;
+    private final int kind;
+    private final int sequence;
+    private final Code source;
+    private final Code target;
+    private long targetPosition;
+    private final LinkTo linkBack;
+
+    private Edge(long position, int kind, int sequence, Code source, Code target, long targetPosition,
+        LinkTo linkBack) {
+      this.position = position;
+      this.kind = kind;
+      this.sequence = sequence;
+      this.source = source;
+      this.target = target;
+      this.targetPosition = targetPosition;
+      this.linkBack = linkBack;
+    }
+  }
+}
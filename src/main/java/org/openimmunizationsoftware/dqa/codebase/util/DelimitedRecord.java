@@ -0,0 +1,36 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A cursor over the lines of a delimited text file. Fields are trimmed and
+ * trailing empty fields are not counted, so a line reads the same as
+ * <code>line.split("\\|")</code> followed by a trim of each part.
+ */
+public interface DelimitedRecord extends Closeable
+{
+  /**
+   * @return false when there are no more lines
+   */
+  public boolean next() throws IOException;
+
+  /**
+   * @return the length of the current line before it was split
+   */
+  public int getLineLength();
+
+  public int getFieldCount();
+
+  /**
+   * @return the trimmed value of the field
+   * @throws ArrayIndexOutOfBoundsException
+   *           if the current line does not have the field
+   */
+  public String get(int field);
+
+  /**
+   * @return the length of the field once trimmed, without creating a String
+   */
+  public int length(int field);
+}
@@ -0,0 +1,205 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads delimited text records, such as the pipe separated NDC files, out of
+ * a reusable character buffer. Each call to {@link #next()} only records where
+ * the fields of the line start and end; a String is created only when a field
+ * is asked for with {@link #get(int)}.
+ */
+public class DelimitedRecordReader implements DelimitedRecord
+{
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private final Reader in;
+  private final char delimiter;
+  private char[] buffer;
+  private int bufferEnd = 0;
+  private int position = 0;
+  private boolean endOfInput = false;
+  private boolean skipLineFeed = false;
+
+  private int lineStart = 0;
+  private int lineEnd = 0;
+  private int[] fieldStart = new int[32];
+  private int[] fieldEnd = new int[32];
+  private int fieldCount = 0;
+  private int lineCount = 0;
+
+  public DelimitedRecordReader(Reader in, char delimiter) {
+    this(in, delimiter, DEFAULT_BUFFER_SIZE);
+  }
+
+  public DelimitedRecordReader(Reader in, char delimiter, int bufferSize) {
+    this.in = in;
+    this.delimiter = delimiter;
+    this.buffer = new char[bufferSize];
+  }
+
+  /**
+   * Reads the lines of text that has already been loaded into memory, without
+   * copying it.
+   */
+  public DelimitedRecordReader(char[] text, int length, char delimiter) {
+    this.in = null;
+    this.delimiter = delimiter;
+    this.buffer = text;
+    this.bufferEnd = length;
+    this.endOfInput = true;
+  }
+
+  /**
+   * Advances to the next line. Lines end with \n, \r or \r\n.
+   */
+  @Override
+  public boolean next() throws IOException {
+    int scan = position;
+    while (true) {
+      if (scan >= bufferEnd) {
+        if (endOfInput) {
+          if (position >= bufferEnd) {
+            return false;
+          }
+          setLine(position, bufferEnd);
+          position = bufferEnd;
+          return true;
+        }
+        scan -= fill();
+        continue;
+      }
+      char c = buffer[scan];
+      if (skipLineFeed) {
+        skipLineFeed = false;
+        if (c == '\n' && scan == position) {
+          position++;
+          scan++;
+          continue;
+        }
+      }
+      if (c == '\n' || c == '\r') {
+        setLine(position, scan);
+        position = scan + 1;
+        skipLineFeed = c == '\r';
+        return true;
+      }
+      scan++;
+    }
+  }
+
+  /**
+   * Moves the unread part of the buffer to the front, growing the buffer when
+   * a single line fills it, and reads more input after it.
+   *
+   * @return how far the unread characters moved towards the front
+   */
+  private int fill() throws IOException {
+    int shift = position;
+    int remaining = bufferEnd - position;
+    if (remaining == buffer.length) {
+      char[] larger = new char[buffer.length * 2];
+      System.arraycopy(buffer, position, larger, 0, remaining);
+      buffer = larger;
+    } else if (shift > 0) {
+      System.arraycopy(buffer, position, buffer, 0, remaining);
+    }
+    position = 0;
+    bufferEnd = remaining;
+    int read = in.read(buffer, bufferEnd, buffer.length - bufferEnd);
+    if (read < 0) {
+      endOfInput = true;
+    } else {
+      bufferEnd += read;
+    }
+    return shift;
+  }
+
+  private void setLine(int start, int end) {
+    lineStart = start;
+    lineEnd = end;
+    lineCount++;
+    fieldCount = 0;
+    int fieldBegin = start;
+    for (int i = start; i <= end; i++) {
+      if (i == end || buffer[i] == delimiter) {
+        if (fieldCount == fieldStart.length) {
+          int[] largerStart = new int[fieldCount * 2];
+          int[] largerEnd = new int[fieldCount * 2];
+          System.arraycopy(fieldStart, 0, largerStart, 0, fieldCount);
+          System.arraycopy(fieldEnd, 0, largerEnd, 0, fieldCount);
+          fieldStart = largerStart;
+          fieldEnd = largerEnd;
+        }
+        fieldStart[fieldCount] = fieldBegin;
+        fieldEnd[fieldCount] = i;
+        fieldCount++;
+        fieldBegin = i + 1;
+      }
+    }
+    if (start == end) {
+      // an empty line still has one empty field
+      return;
+    }
+    while (fieldCount > 0 && fieldStart[fieldCount - 1] == fieldEnd[fieldCount - 1]) {
+      fieldCount--;
+    }
+  }
+
+  @Override
+  public int getLineLength() {
+    return lineEnd - lineStart;
+  }
+
+  @Override
+  public int getFieldCount() {
+    return fieldCount;
+  }
+
+  public int getLineCount() {
+    return lineCount;
+  }
+
+  @Override
+  public String get(int field) {
+    int start = trimmedStart(field);
+    return new String(buffer, start, trimmedEnd(field, start) - start);
+  }
+
+  @Override
+  public int length(int field) {
+    int start = trimmedStart(field);
+    return trimmedEnd(field, start) - start;
+  }
+
+  int trimmedStart(int field) {
+    checkField(field);
+    int start = fieldStart[field];
+    int end = fieldEnd[field];
+    while (start < end && buffer[start] <= ' ') {
+      start++;
+    }
+    return start;
+  }
+
+  int trimmedEnd(int field, int start) {
+    int end = fieldEnd[field];
+    while (end > start && buffer[end - 1] <= ' ') {
+      end--;
+    }
+    return end;
+  }
+
+  private void checkField(int field) {
+    if (field < 0 || field >= fieldCount) {
+      throw new ArrayIndexOutOfBoundsException(field);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (in != null) {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code;
+
+/**
+ * A view over a {@link Codeset} that finds codes by value through a hash index
+ * instead of scanning the code list. Values are matched ignoring case, the same
+ * way {@link String#equalsIgnoreCase(String)} does, and when a codeset has more
+ * than one code with the same value the last one in the list is found.
+ * <p>
+ * Codes must be added through {@link #add(Code)} or
+ * {@link #getOrCreate(String)} to keep the index in sync. If the code list is
+ * changed directly, for example by sorting it, call {@link #reindex()}.
+ * <p>
+ * The links of each code are kept in a {@link LinkIndex}, made the first time
+ * {@link #getLinkIndex(Code)} is asked for it. Links should only be added and
+ * removed through that index; {@link #reindex()} also drops the link indexes
+ * so they are rebuilt from the codes as they are now.
+ */
+public class IndexedCodeset
+{
+  private final Codeset codeset;
+  private final Map<String, Code> codeMap;
+  private final Map<Code, LinkIndex> linkIndexMap = new IdentityHashMap<>();
+
+  public IndexedCodeset(Codeset codeset) {
+    this.codeset = codeset;
+    this.codeMap = new HashMap<>(Math.max(16, codeset.getCode().size() * 2));
+    reindex();
+  }
+
+  public void reindex() {
+    codeMap.clear();
+    linkIndexMap.clear();
+    for (Code code : codeset.getCode()) {
+      if (code.getValue() != null) {
+        codeMap.put(fold(code.getValue()), code);
+      }
+    }
+  }
+
+  public Codeset getCodeset() {
+    return codeset;
+  }
+
+  public String getType() {
+    return codeset.getType();
+  }
+
+  public List<Code> getCode() {
+    return codeset.getCode();
+  }
+
+  public int size() {
+    return codeset.getCode().size();
+  }
+
+  /**
+   * @return the code with the value, ignoring case, or null if there is none
+   */
+  public Code get(String value) {
+    if (value == null) {
+      return null;
+    }
+    return codeMap.get(fold(value));
+  }
+
+  /**
+   * @return the code with exactly this value, or null if there is none
+   */
+  public Code getExact(String value) {
+    Code code = get(value);
+    if (code == null || code.getValue().equals(value)) {
+      return code;
+    }
+    // another code differs only by case, fall back to a scan
+    Code found = null;
+    for (Code c : codeset.getCode()) {
+      if (value.equals(c.getValue())) {
+        found = c;
+      }
+    }
+    return found;
+  }
+
+  public Code getOrCreate(String value) {
+    Code code = get(value);
+    if (code == null) {
+      code = new Code();
+      code.setValue(value);
+      add(code);
+    }
+    return code;
+  }
+
+  public void add(Code code) {
+    codeset.getCode().add(code);
+    if (code.getValue() != null) {
+      codeMap.put(fold(code.getValue()), code);
+    }
+  }
+
+  /**
+   * @return the index of the links of the code, which must be one of the codes
+   *         of this codeset
+   */
+  public LinkIndex getLinkIndex(Code code) {
+    LinkIndex linkIndex = linkIndexMap.get(code);
+    if (linkIndex == null) {
+      linkIndex = new LinkIndex(code);
+      linkIndexMap.put(code, linkIndex);
+    }
+    return linkIndex;
+  }
+
+  /**
+   * Folds the value so that two values are equal ignoring case exactly when
+   * their folded forms are equal.
+   */
+  static String fold(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (Character.toLowerCase(Character.toUpperCase(c)) != c) {
+        char[] folded = value.toCharArray();
+        for (int j = i; j < folded.length; j++) {
+          folded[j] = Character.toLowerCase(Character.toUpperCase(folded[j]));
+        }
+        return new String(folded);
+      }
+    }
+    return value;
+  }
+}
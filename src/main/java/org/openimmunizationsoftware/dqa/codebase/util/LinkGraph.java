@@ -0,0 +1,319 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase.Codeset.Code;
+
+/**
+ * The links between codes, compiled into arrays of ints. Codes are numbered
+ * across the whole codebase, codeset after codeset, the same way
+ * {@link CompiledCodebase} numbers them, and the links from one codeset to
+ * another are kept as compressed sparse rows: an offset for each code of the
+ * source codeset into one array of target code numbers.
+ * <p>
+ * Paths over several codesets, such as from an NDC through its CVX to its
+ * vaccine groups, can be given when the graph is built. They are followed
+ * for every code then and the codes reached are kept the same way, so
+ * answering one takes a single array read per code found. Links to codes that
+ * do not exist are left out. The graph is not changed after it is built and
+ * can be shared between threads.
+ */
+public final class LinkGraph
+{
+  /**
+   * The paths followed when none are given: NDCs and trade names to vaccine
+   * groups through CVX, and trade names to manufacturers.
+   */
+  public static final List<String[]> DEFAULT_CLOSURE_PATHS = Collections.unmodifiableList(Arrays.asList(
+      new String[] { CodesetType.NDC_UNIT_OF_SALE, CodesetType.CVX, CodesetType.VACCINE_GROUP },
+      new String[] { CodesetType.NDC_UNIT_OF_USE, CodesetType.CVX, CodesetType.VACCINE_GROUP },
+      new String[] { CodesetType.TRADE_NAME, CodesetType.CVX, CodesetType.VACCINE_GROUP },
+      new String[] { CodesetType.TRADE_NAME, CodesetType.MVX }));
+
+  /**
+   * The codes linked to from each code of one source codeset.
+   */
+  public static final class Links
+  {
+    private final int firstCode;
+    private final int[] offsets;
+    private final int[] targets;
+
+    private Links(int firstCode, int[] offsets, int[] targets) {
+      this.firstCode = firstCode;
+      this.offsets = offsets;
+      this.targets = targets;
+    }
+
+    /**
+     * @return how many codes the code links to, 0 if it is not in the source
+     *         codeset
+     */
+    public int count(int code) {
+      int row = code - firstCode;
+      if (row < 0 || row >= offsets.length - 1) {
+        return 0;
+      }
+      return offsets[row + 1] - offsets[row];
+    }
+
+    /**
+     * @return the number of the code's link at this position
+     */
+    public int get(int code, int link) {
+      return targets[offsets[code - firstCode] + link];
+    }
+
+    /**
+     * @return how many links there are from the whole codeset
+     */
+    public int size() {
+      return targets.length;
+    }
+  }
+
+  private final List<Codebase.Codeset> codesetList;
+  private final Map<String, Integer> codesetIdMap = new HashMap<>();
+  private final int[] firstCodes;
+  private final Code[] codes;
+  private final int[] codesetOfCode;
+  private final List<Map<String, Integer>> valueIdMapList;
+  private final Map<Code, Integer> codeIdMap = new IdentityHashMap<>();
+  private final Links[][] links;
+  private final Links[][] closures;
+
+  public LinkGraph(Codebase codebase) {
+    this(codebase, DEFAULT_CLOSURE_PATHS);
+  }
+
+  /**
+   * @param closurePaths
+   *          the paths to follow, each a list of codeset types starting with
+   *          the source codeset. Paths with a codeset that is not in the
+   *          codebase are skipped.
+   */
+  public LinkGraph(Codebase codebase, List<String[]> closurePaths) {
+    codesetList = new ArrayList<>(codebase.getCodeset());
+    int codesetCount = codesetList.size();
+    firstCodes = new int[codesetCount + 1];
+    valueIdMapList = new ArrayList<>(codesetCount);
+    List<Code> codeList = new ArrayList<>();
+    for (int codeset = 0; codeset < codesetCount; codeset++) {
+      Codebase.Codeset c = codesetList.get(codeset);
+      if (c.getType() != null) {
+        codesetIdMap.put(c.getType(), codeset);
+      }
+      firstCodes[codeset] = codeList.size();
+      Map<String, Integer> valueIdMap = new HashMap<>(Math.max(16, c.getCode().size() * 2));
+      valueIdMapList.add(valueIdMap);
+      for (Code code : c.getCode()) {
+        if (code.getValue() != null) {
+          valueIdMap.put(code.getValue(), codeList.size());
+        }
+        codeIdMap.put(code, codeList.size());
+        codeList.add(code);
+      }
+    }
+    firstCodes[codesetCount] = codeList.size();
+    codes = codeList.toArray(new Code[codeList.size()]);
+    codesetOfCode = new int[codes.length];
+    for (int codeset = 0; codeset < codesetCount; codeset++) {
+      Arrays.fill(codesetOfCode, firstCodes[codeset], firstCodes[codeset + 1], codeset);
+    }
+
+    links = new Links[codesetCount][codesetCount];
+    for (int codeset = 0; codeset < codesetCount; codeset++) {
+      buildLinks(codeset);
+      Links none = new Links(firstCodes[codeset], new int[firstCodes[codeset + 1] - firstCodes[codeset] + 1],
+          new int[0]);
+      for (int target = 0; target < codesetCount; target++) {
+        if (links[codeset][target] == null) {
+          links[codeset][target] = none;
+        }
+      }
+    }
+    closures = new Links[codesetCount][codesetCount];
+    for (String[] path : closurePaths) {
+      buildClosure(path);
+    }
+  }
+
+  private void buildLinks(int source) {
+    int codeCount = firstCodes[source + 1] - firstCodes[source];
+    Map<Integer, List<List<Integer>>> rowsByTarget = new HashMap<>();
+    for (int row = 0; row < codeCount; row++) {
+      Code code = codes[firstCodes[source] + row];
+      if (code.getReference() == null) {
+        continue;
+      }
+      for (Code.Reference.LinkTo linkTo : code.getReference().getLinkTo()) {
+        Integer target = linkTo.getCodeset() == null ? null : codesetIdMap.get(linkTo.getCodeset());
+        if (target == null) {
+          continue;
+        }
+        int targetCode = findCode(target, linkTo.getValue());
+        if (targetCode < 0) {
+          continue;
+        }
+        List<List<Integer>> rowList = rowsByTarget.get(target);
+        if (rowList == null) {
+          rowList = new ArrayList<>(codeCount);
+          for (int i = 0; i < codeCount; i++) {
+            rowList.add(new ArrayList<Integer>(0));
+          }
+          rowsByTarget.put(target, rowList);
+        }
+        if (!rowList.get(row).contains(targetCode)) {
+          rowList.get(row).add(targetCode);
+        }
+      }
+    }
+    for (Map.Entry<Integer, List<List<Integer>>> entry : rowsByTarget.entrySet()) {
+      links[source][entry.getKey()] = toLinks(firstCodes[source], entry.getValue());
+    }
+  }
+
+  private void buildClosure(String[] path) {
+    int[] codesetPath = new int[path.length];
+    for (int i = 0; i < path.length; i++) {
+      Integer codeset = codesetIdMap.get(path[i]);
+      if (codeset == null) {
+        return;
+      }
+      codesetPath[i] = codeset;
+    }
+    int source = codesetPath[0];
+    int target = codesetPath[path.length - 1];
+    int codeCount = firstCodes[source + 1] - firstCodes[source];
+    List<List<Integer>> rowList = new ArrayList<>(codeCount);
+    Links existing = closures[source][target];
+    for (int row = 0; row < codeCount; row++) {
+      int code = firstCodes[source] + row;
+      List<Integer> reachedList = new ArrayList<>();
+      if (existing != null) {
+        for (int i = 0; i < existing.count(code); i++) {
+          reachedList.add(existing.get(code, i));
+        }
+      }
+      List<Integer> frontierList = Collections.singletonList(code);
+      for (int hop = 1; hop < codesetPath.length && !frontierList.isEmpty(); hop++) {
+        Links hopLinks = links(codesetPath[hop - 1], codesetPath[hop]);
+        List<Integer> nextList = new ArrayList<>();
+        for (int from : frontierList) {
+          for (int i = 0; i < hopLinks.count(from); i++) {
+            int to = hopLinks.get(from, i);
+            if (!nextList.contains(to)) {
+              nextList.add(to);
+            }
+          }
+        }
+        frontierList = nextList;
+      }
+      for (int reached : frontierList) {
+        if (!reachedList.contains(reached)) {
+          reachedList.add(reached);
+        }
+      }
+      rowList.add(reachedList);
+    }
+    closures[source][target] = toLinks(firstCodes[source], rowList);
+  }
+
+  private static Links toLinks(int firstCode, List<List<Integer>> rowList) {
+    int[] offsets = new int[rowList.size() + 1];
+    for (int row = 0; row < rowList.size(); row++) {
+      offsets[row + 1] = offsets[row] + rowList.get(row).size();
+    }
+    int[] targets = new int[offsets[rowList.size()]];
+    for (int row = 0; row < rowList.size(); row++) {
+      List<Integer> targetList = rowList.get(row);
+      for (int i = 0; i < targetList.size(); i++) {
+        targets[offsets[row] + i] = targetList.get(i);
+      }
+    }
+    return new Links(firstCode, offsets, targets);
+  }
+
+  public int getCodesetCount() {
+    return codesetList.size();
+  }
+
+  /**
+   * @return the number of the codeset with this type, or -1 if there is none
+   */
+  public int findCodeset(String type) {
+    Integer codeset = codesetIdMap.get(type);
+    return codeset == null ? -1 : codeset;
+  }
+
+  public String getCodesetType(int codeset) {
+    return codesetList.get(codeset).getType();
+  }
+
+  public int getCodeCount() {
+    return codes.length;
+  }
+
+  /**
+   * @return the number of the code with exactly this value, or -1 if there is
+   *         none
+   */
+  public int findCode(int codeset, String value) {
+    if (codeset < 0 || value == null) {
+      return -1;
+    }
+    Integer code = valueIdMapList.get(codeset).get(value);
+    return code == null ? -1 : code;
+  }
+
+  public int findCode(String codesetType, String value) {
+    return findCode(findCodeset(codesetType), value);
+  }
+
+  /**
+   * @return the number of a code the graph was built from, or -1 for any
+   *         other code
+   */
+  public int getCodeId(Code code) {
+    Integer id = codeIdMap.get(code);
+    return id == null ? -1 : id;
+  }
+
+  public Code getCode(int code) {
+    return codes[code];
+  }
+
+  public int getCodesetOf(int code) {
+    return codesetOfCode[code];
+  }
+
+  /**
+   * @return the direct links from the source codeset to the target codeset,
+   *         empty if there are none
+   */
+  public Links links(int sourceCodeset, int targetCodeset) {
+    return links[sourceCodeset][targetCodeset];
+  }
+
+  /**
+   * @return the codes of the target codeset reached from the source codeset
+   *         by the paths given when the graph was built, or null if no path
+   *         between them was given
+   */
+  public Links closure(int sourceCodeset, int targetCodeset) {
+    return closures[sourceCodeset][targetCodeset];
+  }
+
+  public Links closure(String sourceType, String targetType) {
+    int source = findCodeset(sourceType);
+    int target = findCodeset(targetType);
+    return source < 0 || target < 0 ? null : closures[source][target];
+  }
+}
@@ -0,0 +1,136 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code.Reference;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code.Reference.LinkTo;
+
+/**
+ * Finds the links of one code by codeset and value without scanning its link
+ * list, so a link can be added only when it is not already there.
+ * <p>
+ * The index is built from the links the code has when it is created. From
+ * then on the links must be added and removed through it, and not changed
+ * in place, or the index no longer matches them. Get it from
+ * {@link IndexedCodeset#getLinkIndex(Code)} so every change to a code's links
+ * goes through the same index.
+ */
+public class LinkIndex
+{
+  private final Code code;
+  private final Map<List<String>, Integer> countMap = new HashMap<>();
+
+  public LinkIndex(Code code) {
+    this.code = code;
+    if (code.getReference() != null) {
+      for (LinkTo linkTo : code.getReference().getLinkTo()) {
+        increment(linkTo);
+      }
+    }
+  }
+
+  public Code getCode() {
+    return code;
+  }
+
+  public boolean contains(String codeset, String value) {
+    return countMap.containsKey(key(codeset, value));
+  }
+
+  /**
+   * Adds a link to the value in the codeset unless the code already has it,
+   * giving the code a reference first if it does not have one.
+   *
+   * @return true if the link was added
+   */
+  public boolean add(String codeset, String value) {
+    if (contains(codeset, value)) {
+      return false;
+    }
+    if (code.getReference() == null) {
+      code.setReference(new Reference());
+    }
+    LinkTo linkTo = new LinkTo();
+    linkTo.setCodeset(codeset);
+    linkTo.setValue(value);
+    code.getReference().getLinkTo().add(linkTo);
+    increment(linkTo);
+    return true;
+  }
+
+  /**
+   * Removes this link, the same object and not just an equal one.
+   *
+   * @return true if the code had the link
+   */
+  public boolean remove(LinkTo linkTo) {
+    if (code.getReference() == null) {
+      return false;
+    }
+    for (Iterator<LinkTo> it = code.getReference().getLinkTo().iterator(); it.hasNext();) {
+      if (it.next() == linkTo) {
+        it.remove();
+        decrement(linkTo);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return an iterator over the links of the code whose remove also removes
+   *         the link from the index
+   */
+  public Iterator<LinkTo> iterator() {
+    if (code.getReference() == null) {
+      return Collections.emptyIterator();
+    }
+    Iterator<LinkTo> it = code.getReference().getLinkTo().iterator();
+    return new Iterator<LinkTo>() {
+      private LinkTo current;
+
+      @Override
+      public boolean hasNext() {
+        return it.hasNext();
+      }
+
+      @Override
+      public LinkTo next() {
+        current = it.next();
+        return current;
+      }
+
+      @Override
+      public void remove() {
+        it.remove();
+        decrement(current);
+      }
+    };
+  }
+
+  private void increment(LinkTo linkTo) {
+    List<String> key = key(linkTo.getCodeset(), linkTo.getValue());
+    Integer count = countMap.get(key);
+    countMap.put(key, count == null ? 1 : count + 1);
+  }
+
+  private void decrement(LinkTo linkTo) {
+    List<String> key = key(linkTo.getCodeset(), linkTo.getValue());
+    Integer count = countMap.get(key);
+    if (count == null || count <= 1) {
+      countMap.remove(key);
+    } else {
+      countMap.put(key, count - 1);
+    }
+  }
+
+  private static List<String> key(String codeset, String value) {
+    return Arrays.asList(codeset, value);
+  }
+}
@@ -0,0 +1,250 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase.Codeset.Code;
+
+/**
+ * Finds every lot number pattern that matches a lot number. The patterns are
+ * the values of the lot number pattern codeset, regular expressions that are
+ * looked for in the lot number with {@link Matcher#find()}.
+ * <p>
+ * All the patterns are compiled once, when this is built. Most patterns are
+ * anchored to the start of the lot number and begin with a plain character
+ * or a simple character class, so they can only match lot numbers starting
+ * with one of a known set of characters. Those patterns are sorted into a
+ * table by that first character, and a lot number is only tried against the
+ * patterns for its first character plus the ones that could not be sorted.
+ * A combined alternation would be tried in one pass too, but it stops at the
+ * first alternative that matches, and every match is wanted here.
+ * <p>
+ * Matchers are reused, one set per thread, so one matcher can be shared
+ * between threads.
+ */
+public final class LotNumberMatcher
+{
+  private static final int TABLE_SIZE = 128;
+  private static final String SPECIAL = "\\[](){}.*+?^$|";
+
+  private final CodebaseIndex index;
+  private final List<Code> patternCodeList = new ArrayList<>();
+  private final List<String> invalidPatternList = new ArrayList<>();
+  private final Pattern[] patterns;
+  private final int[][] firstCharTable = new int[TABLE_SIZE][];
+  private final int[] anyFirstChar;
+  private final int sortedCount;
+  private final ThreadLocal<Matcher[]> matchersLocal = new ThreadLocal<>();
+
+  /**
+   * Builds the matcher from the lot number pattern codeset in the index,
+   * which is also used to find the codes the patterns link to. Patterns that
+   * do not compile are left out, see {@link #getInvalidPatternList()}.
+   */
+  public LotNumberMatcher(CodebaseIndex index) {
+    this.index = index;
+    List<Pattern> patternList = new ArrayList<>();
+    List<BitSet> firstCharList = new ArrayList<>();
+    Codebase.Codeset codeset = index.getCodeset(CodesetType.LOT_NUMBER_PATTERN);
+    if (codeset != null) {
+      for (Code code : codeset.getCode()) {
+        if (code.getValue() == null) {
+          continue;
+        }
+        try {
+          patternList.add(Pattern.compile(code.getValue()));
+          patternCodeList.add(code);
+          firstCharList.add(findFirstChars(code.getValue()));
+        } catch (PatternSyntaxException pse) {
+          invalidPatternList.add(code.getValue());
+        }
+      }
+    }
+    patterns = patternList.toArray(new Pattern[patternList.size()]);
+
+    List<Integer> anyList = new ArrayList<>();
+    for (int i = 0; i < patterns.length; i++) {
+      if (firstCharList.get(i) == null) {
+        anyList.add(i);
+      }
+    }
+    anyFirstChar = toArray(anyList);
+    sortedCount = patterns.length - anyFirstChar.length;
+    for (int c = 0; c < TABLE_SIZE; c++) {
+      List<Integer> candidateList = new ArrayList<>();
+      for (int i = 0; i < patterns.length; i++) {
+        BitSet firstChars = firstCharList.get(i);
+        if (firstChars == null || firstChars.get(c)) {
+          candidateList.add(i);
+        }
+      }
+      firstCharTable[c] = toArray(candidateList);
+    }
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
+  /**
+   * Works out which characters a lot number has to start with for the
+   * pattern to match. Only patterns that start with ^ followed by a plain
+   * character, \d or a character class of plain characters and ranges, that
+   * is not optional, are understood. Anything else could match more than it
+   * seems to, such as a pattern with an alternation in it, so it is left for
+   * trying against every lot number.
+   *
+   * @return the characters, or null if they could not be worked out
+   */
+  static BitSet findFirstChars(String pattern) {
+    if (!pattern.startsWith("^") || pattern.indexOf('|') >= 0) {
+      return null;
+    }
+    BitSet firstChars = new BitSet(TABLE_SIZE);
+    int position = 1;
+    if (position >= pattern.length()) {
+      return null;
+    }
+    char c = pattern.charAt(position);
+    if (c == '\\') {
+      if (!pattern.startsWith("\\d", position)) {
+        return null;
+      }
+      firstChars.set('0', '9' + 1);
+      position += 2;
+    } else if (c == '[') {
+      int end = pattern.indexOf(']', position + 1);
+      if (end < 0 || !addClass(pattern.substring(position + 1, end), firstChars)) {
+        return null;
+      }
+      position = end + 1;
+    } else if (SPECIAL.indexOf(c) < 0 && c < TABLE_SIZE) {
+      firstChars.set(c);
+      position++;
+    } else {
+      return null;
+    }
+    if (pattern.startsWith("?", position) || pattern.startsWith("*", position)
+        || pattern.startsWith("{0", position)) {
+      // the first character may be left out
+      return null;
+    }
+    return firstChars;
+  }
+
+  private static boolean addClass(String content, BitSet firstChars) {
+    if (content.isEmpty() || content.charAt(0) == '^') {
+      return false;
+    }
+    for (int i = 0; i < content.length(); i++) {
+      char from = content.charAt(i);
+      if (from == '\\' || from == '[' || from == '&' || from >= TABLE_SIZE) {
+        return false;
+      }
+      char to = from;
+      if (i + 2 < content.length() && content.charAt(i + 1) == '-') {
+        to = content.charAt(i + 2);
+        if (to == '\\' || to == '[' || to >= TABLE_SIZE || to < from) {
+          return false;
+        }
+        i += 2;
+      }
+      firstChars.set(from, to + 1);
+    }
+    return true;
+  }
+
+  /**
+   * @return the pattern codes that match the lot number, in codeset order
+   */
+  public List<Code> match(String lotNumber) {
+    if (lotNumber == null) {
+      return Collections.emptyList();
+    }
+    int[] candidates = anyFirstChar;
+    if (!lotNumber.isEmpty() && lotNumber.charAt(0) < TABLE_SIZE) {
+      candidates = firstCharTable[lotNumber.charAt(0)];
+    }
+    Matcher[] matchers = getMatchers();
+    List<Code> matchList = null;
+    for (int i : candidates) {
+      Matcher matcher = matchers[i].reset(lotNumber);
+      if (matcher.find()) {
+        if (matchList == null) {
+          matchList = new ArrayList<>(2);
+        }
+        matchList.add(patternCodeList.get(i));
+      }
+    }
+    return matchList == null ? Collections.<Code> emptyList() : matchList;
+  }
+
+  /**
+   * @return the codes in the target codeset that the patterns matching the lot
+   *         number link to, each once, in the order they are first found
+   */
+  public List<Code> matchLinked(String lotNumber, String targetCodesetType) {
+    Set<Code> linkedSet = new LinkedHashSet<>();
+    for (Code patternCode : match(lotNumber)) {
+      linkedSet.addAll(index.linksFrom(patternCode, targetCodesetType));
+    }
+    return new ArrayList<>(linkedSet);
+  }
+
+  private Matcher[] getMatchers() {
+    Matcher[] matchers = matchersLocal.get();
+    if (matchers == null) {
+      matchers = new Matcher[patterns.length];
+      for (int i = 0; i < patterns.length; i++) {
+        matchers[i] = patterns[i].matcher("");
+      }
+      matchersLocal.set(matchers);
+    }
+    return matchers;
+  }
+
+  /**
+   * @return how many patterns compiled
+   */
+  public int getPatternCount() {
+    return patterns.length;
+  }
+
+  /**
+   * @return how many patterns are only tried against lot numbers that start
+   *         with one of their first characters
+   */
+  public int getSortedCount() {
+    return sortedCount;
+  }
+
+  public List<String> getInvalidPatternList() {
+    return Collections.unmodifiableList(invalidPatternList);
+  }
+
+  /**
+   * Matches the lot number the simple way, by trying every pattern, which is
+   * what {@link #match(String)} has to agree with.
+   */
+  List<Code> matchEvery(String lotNumber) {
+    List<Code> matchList = new ArrayList<>();
+    for (int i = 0; i < patterns.length; i++) {
+      if (patterns[i].matcher(lotNumber).find()) {
+        matchList.add(patternCodeList.get(i));
+      }
+    }
+    return matchList;
+  }
+}
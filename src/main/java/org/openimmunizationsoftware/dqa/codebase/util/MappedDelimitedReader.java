@@ -0,0 +1,261 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Reads a large delimited file by memory mapping it, splitting it into chunks
+ * that end on a newline and parsing the chunks in parallel on a fork-join
+ * pool. Each chunk is decoded and indexed into line and field offsets on its
+ * own; the lines are then handed out in file order, so callers see exactly
+ * the same sequence of records as with a {@link DelimitedRecordReader}.
+ * <p>
+ * Chunks are split on the '\n' byte, so the file must use an ASCII compatible
+ * encoding such as UTF-8 or ISO-8859-1.
+ */
+public class MappedDelimitedReader implements DelimitedRecord
+{
+  private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+  private static final int BOUNDARY_SCAN_SIZE = 8 * 1024;
+
+  private final List<Chunk> chunkList;
+  private int chunkPosition = 0;
+  private Chunk chunk = null;
+
+  public MappedDelimitedReader(File file, char delimiter) throws IOException {
+    this(file, delimiter, Charset.defaultCharset(), ForkJoinPool.commonPool());
+  }
+
+  public MappedDelimitedReader(File file, char delimiter, Charset charset, ForkJoinPool pool) throws IOException {
+    this(file, delimiter, charset, pool, MIN_CHUNK_SIZE);
+  }
+
+  MappedDelimitedReader(File file, char delimiter, Charset charset, ForkJoinPool pool, int minChunkSize)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long[] boundaries = findChunkBoundaries(channel, pool.getParallelism(), minChunkSize);
+      List<ForkJoinTask<Chunk>> taskList = new ArrayList<>();
+      for (int i = 0; i + 1 < boundaries.length; i++) {
+        ChunkParser chunkParser = new ChunkParser(channel, boundaries[i], boundaries[i + 1], delimiter, charset);
+        taskList.add(pool.submit(StepScheduler.inStep(chunkParser)));
+      }
+      chunkList = new ArrayList<>(taskList.size());
+      for (ForkJoinTask<Chunk> task : taskList) {
+        chunkList.add(task.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while parsing " + file, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Unable to parse " + file, e.getCause());
+    }
+  }
+
+  /**
+   * Splits the file into roughly equal chunks, moving each split point forward
+   * to just after the next '\n'.
+   *
+   * @return the start of each chunk followed by the size of the file
+   */
+  private static long[] findChunkBoundaries(FileChannel channel, int parallelism, int minChunkSize)
+      throws IOException {
+    long size = channel.size();
+    long chunkCount = Math.max(1, Math.min(parallelism * 4L, size / minChunkSize));
+    long chunkSize = Math.min(Integer.MAX_VALUE / 2, Math.max(1, size / chunkCount));
+    List<Long> boundaryList = new ArrayList<>();
+    boundaryList.add(0L);
+    ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+    long position = chunkSize;
+    while (position < size) {
+      long boundary = -1;
+      while (boundary < 0 && position < size) {
+        scan.clear();
+        int read = channel.read(scan, position);
+        if (read <= 0) {
+          break;
+        }
+        for (int i = 0; i < read; i++) {
+          if (scan.get(i) == '\n') {
+            boundary = position + i + 1;
+            break;
+          }
+        }
+        if (boundary < 0) {
+          position += read;
+        }
+      }
+      if (boundary < 0 || boundary >= size) {
+        break;
+      }
+      boundaryList.add(boundary);
+      position = boundary + chunkSize;
+    }
+    boundaryList.add(size);
+    long[] boundaries = new long[boundaryList.size()];
+    for (int i = 0; i < boundaries.length; i++) {
+      boundaries[i] = boundaryList.get(i);
+    }
+    return boundaries;
+  }
+
+  public int getChunkCount() {
+    return chunkList.size();
+  }
+
+  @Override
+  public boolean next() {
+    while (chunk == null || !chunk.next()) {
+      if (chunkPosition >= chunkList.size()) {
+        chunk = null;
+        return false;
+      }
+      chunk = chunkList.get(chunkPosition);
+      chunkList.set(chunkPosition, null);
+      chunkPosition++;
+    }
+    return true;
+  }
+
+  @Override
+  public int getLineLength() {
+    return chunk.lineInfo[chunk.line * 3];
+  }
+
+  @Override
+  public int getFieldCount() {
+    return chunk.lineInfo[chunk.line * 3 + 1];
+  }
+
+  @Override
+  public String get(int field) {
+    int bound = chunk.bound(field);
+    return new String(chunk.text, chunk.bounds[bound], chunk.bounds[bound + 1] - chunk.bounds[bound]);
+  }
+
+  @Override
+  public int length(int field) {
+    int bound = chunk.bound(field);
+    return chunk.bounds[bound + 1] - chunk.bounds[bound];
+  }
+
+  @Override
+  public void close() {
+    chunkList.clear();
+    chunk = null;
+  }
+
+  /**
+   * The decoded text of one chunk with, for each line, its length, field count
+   * and the position of its trimmed field bounds.
+   */
+  private static class Chunk
+  {
+    private final char[] text;
+    private int[] lineInfo = new int[3 * 1024];
+    private int[] bounds = new int[2 * 16 * 1024];
+    private int lineCount = 0;
+    private int boundCount = 0;
+    private int line = -1;
+
+    private Chunk(char[] text) {
+      this.text = text;
+    }
+
+    private void add(DelimitedRecordReader reader) {
+      int fieldCount = reader.getFieldCount();
+      if ((lineCount + 1) * 3 > lineInfo.length) {
+        int[] larger = new int[lineInfo.length * 2];
+        System.arraycopy(lineInfo, 0, larger, 0, lineCount * 3);
+        lineInfo = larger;
+      }
+      if (boundCount + fieldCount * 2 > bounds.length) {
+        int[] larger = new int[Math.max(bounds.length * 2, boundCount + fieldCount * 2)];
+        System.arraycopy(bounds, 0, larger, 0, boundCount);
+        bounds = larger;
+      }
+      lineInfo[lineCount * 3] = reader.getLineLength();
+      lineInfo[lineCount * 3 + 1] = fieldCount;
+      lineInfo[lineCount * 3 + 2] = boundCount;
+      lineCount++;
+      for (int field = 0; field < fieldCount; field++) {
+        int start = reader.trimmedStart(field);
+        bounds[boundCount++] = start;
+        bounds[boundCount++] = reader.trimmedEnd(field, start);
+      }
+    }
+
+    private boolean next() {
+      line++;
+      return line < lineCount;
+    }
+
+    private int bound(int field) {
+      if (field < 0 || field >= lineInfo[line * 3 + 1]) {
+        throw new ArrayIndexOutOfBoundsException(field);
+      }
+      return lineInfo[line * 3 + 2] + field * 2;
+    }
+  }
+
+  private static class ChunkParser implements Callable<Chunk>
+  {
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+    private final char delimiter;
+    private final Charset charset;
+
+    private ChunkParser(FileChannel channel, long start, long end, char delimiter, Charset charset) {
+      this.channel = channel;
+      this.start = start;
+      this.end = end;
+      this.delimiter = delimiter;
+      this.charset = charset;
+    }
+
+    @Override
+    public Chunk call() throws IOException {
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+      CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      CharBuffer decoded;
+      try {
+        decoded = decoder.decode(mapped);
+      } catch (CharacterCodingException e) {
+        throw new IOException(e);
+      }
+      int length = decoded.remaining();
+      char[] text;
+      if (decoded.hasArray() && decoded.arrayOffset() == 0 && decoded.position() == 0) {
+        text = decoded.array();
+      } else {
+        text = new char[decoded.remaining()];
+        decoded.get(text);
+      }
+      Chunk chunk = new Chunk(text);
+      DelimitedRecordReader reader = new DelimitedRecordReader(text, length, delimiter);
+      while (reader.next()) {
+        chunk.add(reader);
+      }
+      return chunk;
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase.Codeset.Code;
+
+/**
+ * Finds the NDC code for an NDC however it is written, along with the CVX and
+ * MVX codes it links to. NDCs are turned into keys by {@link NdcKey} and kept
+ * in an open addressing hash table of longs, so looking one up creates no
+ * strings and boxes nothing.
+ * <p>
+ * A lookup gives a record number, or -1 if the NDC is not known, and the
+ * codes are read from the record. Deprecated NDC codes, which are the other
+ * ways of writing a current NDC, resolve to the code that replaced them, so
+ * every way of writing an NDC finds the same record. The index is not changed
+ * after it is built and can be shared between threads.
+ */
+public final class NdcIndex
+{
+  private static final long EMPTY = -1;
+  private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  private final long[] keys;
+  private final int[] slotRecords;
+  private final int shift;
+  private final int recordCount;
+  private final Code[] ndcCodes;
+  private final boolean[] unitOfUse;
+  private final Code[] cvxCodes;
+  private final Code[] mvxCodes;
+
+  public NdcIndex(CodebaseIndex index) {
+    List<Code> codeList = new ArrayList<>();
+    List<Boolean> unitOfUseList = new ArrayList<>();
+    List<Long> keyList = new ArrayList<>();
+    // current codes first, so the other ways of writing them can not take their key
+    for (boolean deprecated : new boolean[] { false, true }) {
+      for (String codesetType : new String[] { CodesetType.NDC_UNIT_OF_SALE, CodesetType.NDC_UNIT_OF_USE }) {
+        Codebase.Codeset codeset = index.getCodeset(codesetType);
+        if (codeset == null) {
+          continue;
+        }
+        for (Code code : codeset.getCode()) {
+          if (CodebaseIndex.isDeprecated(code) != deprecated) {
+            continue;
+          }
+          long key = NdcKey.parse(code.getValue());
+          if (key < 0) {
+            continue;
+          }
+          Code replacement = index.getReplacement(code);
+          codeList.add(replacement == null ? code : replacement);
+          unitOfUseList.add(codesetType.equals(CodesetType.NDC_UNIT_OF_USE));
+          keyList.add(key);
+        }
+      }
+    }
+
+    int capacity = Integer.highestOneBit(Math.max(16, keyList.size() * 2 - 1)) << 1;
+    keys = new long[capacity];
+    slotRecords = new int[capacity];
+    Arrays.fill(keys, EMPTY);
+    shift = 64 - Integer.numberOfTrailingZeros(capacity);
+
+    List<Integer> recordList = new ArrayList<>();
+    for (int i = 0; i < keyList.size(); i++) {
+      long key = keyList.get(i);
+      int slot = slot(key);
+      while (keys[slot] != EMPTY && keys[slot] != key) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      if (keys[slot] == EMPTY) {
+        keys[slot] = key;
+        slotRecords[slot] = recordList.size();
+        recordList.add(i);
+      }
+    }
+    recordCount = recordList.size();
+    ndcCodes = new Code[recordCount];
+    unitOfUse = new boolean[recordCount];
+    cvxCodes = new Code[recordCount];
+    mvxCodes = new Code[recordCount];
+    for (int record = 0; record < recordCount; record++) {
+      int i = recordList.get(record);
+      Code code = codeList.get(i);
+      ndcCodes[record] = code;
+      unitOfUse[record] = unitOfUseList.get(i);
+      cvxCodes[record] = first(index.linksFrom(code, CodesetType.CVX));
+      mvxCodes[record] = first(index.linksFrom(code, CodesetType.MVX));
+    }
+  }
+
+  private static Code first(List<Code> codeList) {
+    return codeList.isEmpty() ? null : codeList.get(0);
+  }
+
+  private int slot(long key) {
+    return (int) ((key * MULTIPLIER) >>> shift);
+  }
+
+  /**
+   * @return the record for the key, or -1 if there is none
+   */
+  public int find(long key) {
+    if (key < 0) {
+      return -1;
+    }
+    int mask = keys.length - 1;
+    int slot = slot(key);
+    while (keys[slot] != EMPTY) {
+      if (keys[slot] == key) {
+        return slotRecords[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the record for an NDC written any of the usual ways. A 10 digit NDC
+   * without dashes is tried in each layout, 4-4-2, 5-3-2 and then 5-4-1, and
+   * the first that is known is found.
+   *
+   * @return the record, or -1 if the NDC is not known
+   */
+  public int find(CharSequence ndc) {
+    long key = NdcKey.parse(ndc);
+    if (key != NdcKey.AMBIGUOUS) {
+      return find(key);
+    }
+    for (int layout = 0; layout < NdcKey.LAYOUT_COUNT; layout++) {
+      int record = find(NdcKey.parseTenDigit(ndc, layout));
+      if (record >= 0) {
+        return record;
+      }
+    }
+    return -1;
+  }
+
+  public int getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * @return the current NDC code of the record
+   */
+  public Code getNdcCode(int record) {
+    return ndcCodes[record];
+  }
+
+  /**
+   * @return true if the NDC is a unit of use, false if it is a unit of sale
+   */
+  public boolean isUnitOfUse(int record) {
+    return unitOfUse[record];
+  }
+
+  /**
+   * @return the CVX code the NDC links to, or null if it has none
+   */
+  public Code getCvxCode(int record) {
+    return cvxCodes[record];
+  }
+
+  /**
+   * @return the manufacturer code the NDC links to, or null if it has none
+   */
+  public Code getMvxCode(int record) {
+    return mvxCodes[record];
+  }
+}
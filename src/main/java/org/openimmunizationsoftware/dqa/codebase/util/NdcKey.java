@@ -0,0 +1,160 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+/**
+ * Turns the different ways an NDC is written into one long key, without
+ * creating any objects. The key is the 11 digit form read as a number, so
+ * 12345-6789-01, 12345678901 and the 10 digit 1234-5678-01 padded to
+ * 01234-5678-01 all have a key made the same way.
+ * <p>
+ * The 10 digit forms with dashes are padded the usual way: a 4-4-2 NDC gets a
+ * zero in front of the labeler, a 5-3-2 in front of the product and a 5-4-1
+ * in front of the package. A 10 digit NDC without dashes could be any of the
+ * three, so {@link #parse(CharSequence)} can not give it a key and returns
+ * {@link #AMBIGUOUS} instead, and {@link #parseTenDigit(CharSequence, int)}
+ * gives the key for each of the three layouts.
+ */
+public final class NdcKey
+{
+  /**
+   * The value is not an NDC.
+   */
+  public static final long NO_KEY = -1;
+
+  /**
+   * The value is a 10 digit NDC without dashes.
+   */
+  public static final long AMBIGUOUS = -2;
+
+  public static final int LAYOUT_4_4_2 = 0;
+  public static final int LAYOUT_5_3_2 = 1;
+  public static final int LAYOUT_5_4_1 = 2;
+  public static final int LAYOUT_COUNT = 3;
+
+  private NdcKey() {
+    // static only
+  }
+
+  /**
+   * @return the key, {@link #AMBIGUOUS} for 10 digits without dashes or
+   *         {@link #NO_KEY} if the value is not an NDC. Spaces around the value
+   *         are ignored.
+   */
+  public static long parse(CharSequence ndc) {
+    if (ndc == null) {
+      return NO_KEY;
+    }
+    int start = 0;
+    int end = ndc.length();
+    while (start < end && ndc.charAt(start) == ' ') {
+      start++;
+    }
+    while (end > start && ndc.charAt(end - 1) == ' ') {
+      end--;
+    }
+    long labeler = 0;
+    long product = 0;
+    long packageCode = 0;
+    int labelerLength = 0;
+    int productLength = 0;
+    int packageLength = 0;
+    int segment = 0;
+    for (int i = start; i < end; i++) {
+      char c = ndc.charAt(i);
+      if (c == '-') {
+        segment++;
+        if (segment > 2) {
+          return NO_KEY;
+        }
+      } else if (c >= '0' && c <= '9') {
+        int digit = c - '0';
+        if (segment == 0) {
+          labeler = labeler * 10 + digit;
+          labelerLength++;
+        } else if (segment == 1) {
+          product = product * 10 + digit;
+          productLength++;
+        } else {
+          packageCode = packageCode * 10 + digit;
+          packageLength++;
+        }
+        if (labelerLength + productLength + packageLength > 11) {
+          return NO_KEY;
+        }
+      } else {
+        return NO_KEY;
+      }
+    }
+    if (segment == 0) {
+      if (labelerLength == 11) {
+        return labeler;
+      }
+      return labelerLength == 10 ? AMBIGUOUS : NO_KEY;
+    }
+    if (segment == 2 && (isLayout(labelerLength, productLength, packageLength, 5, 4, 2)
+        || isLayout(labelerLength, productLength, packageLength, 4, 4, 2)
+        || isLayout(labelerLength, productLength, packageLength, 5, 3, 2)
+        || isLayout(labelerLength, productLength, packageLength, 5, 4, 1))) {
+      return toKey(labeler, product, packageCode);
+    }
+    return NO_KEY;
+  }
+
+  private static boolean isLayout(int labelerLength, int productLength, int packageLength, int labelerDigits,
+      int productDigits, int packageDigits) {
+    return labelerLength == labelerDigits && productLength == productDigits && packageLength == packageDigits;
+  }
+
+  /**
+   * Reads a 10 digit NDC without dashes as if it had been written with the
+   * dashes of the layout.
+   *
+   * @return the key, or {@link #NO_KEY} if the value is not 10 digits
+   */
+  public static long parseTenDigit(CharSequence ndc, int layout) {
+    if (ndc == null || ndc.length() != 10) {
+      return NO_KEY;
+    }
+    long number = 0;
+    for (int i = 0; i < 10; i++) {
+      char c = ndc.charAt(i);
+      if (c < '0' || c > '9') {
+        return NO_KEY;
+      }
+      number = number * 10 + (c - '0');
+    }
+    switch (layout) {
+    case LAYOUT_4_4_2:
+      return number;
+    case LAYOUT_5_3_2:
+      return toKey(number / 100000, number / 100 % 1000, number % 100);
+    case LAYOUT_5_4_1:
+      return toKey(number / 100000, number / 10 % 10000, number % 10);
+    default:
+      throw new IllegalArgumentException("Unknown NDC layout " + layout);
+    }
+  }
+
+  private static long toKey(long labeler, long product, long packageCode) {
+    return labeler * 1000000L + product * 100 + packageCode;
+  }
+
+  /**
+   * @return the key written the 5-4-2 way with dashes
+   */
+  public static String toString(long key) {
+    if (key < 0 || key > 99999999999L) {
+      throw new IllegalArgumentException("Not an NDC key: " + key);
+    }
+    char[] text = new char[13];
+    long rest = key;
+    for (int i = 12; i >= 0; i--) {
+      if (i == 5 || i == 10) {
+        text[i] = '-';
+      } else {
+        text[i] = (char) ('0' + rest % 10);
+        rest /= 10;
+      }
+    }
+    return new String(text);
+  }
+}
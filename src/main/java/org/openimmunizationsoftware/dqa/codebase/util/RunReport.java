@@ -0,0 +1,285 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The metrics of one update run, written as JSON so a scheduler can compare
+ * nightly runs and alert when one suddenly takes much longer or changes many
+ * more codes than usual.
+ * <p>
+ * The report has a phase for each step of the run with its wall time, CPU
+ * time and the counters the step added to through
+ * {@link StepScheduler#count(String, long)}. Every phase lists all of the
+ * standard counters, with 0 for those it did not touch, so each run produces
+ * the same fields. The totals add the counters up over all phases.
+ * <p>
+ * The CPU time of a phase includes the tasks its step hands to a pool through
+ * {@link StepScheduler#inStep(java.util.concurrent.Callable)}. The CPU time
+ * of the whole run is that of the process, which also counts the JVM's own
+ * compiler and garbage collector threads and the work done between phases,
+ * so the phases do not add up to it. A CPU time of -1 means the JVM does not
+ * measure it.
+ */
+public class RunReport
+{
+  public static final String RECORDS_PARSED = "recordsParsed";
+  public static final String BYTES_READ = "bytesRead";
+  public static final String BYTES_WRITTEN = "bytesWritten";
+  public static final String CODESETS_READ = "codesetsRead";
+  public static final String CODESETS_WRITTEN = "codesetsWritten";
+  public static final String CODES_ADDED = "codesAdded";
+  public static final String CODES_EXPIRED = "codesExpired";
+  public static final String LINKS_EXAMINED = "linksExamined";
+  public static final String LINKS_REMOVED = "linksRemoved";
+  public static final String LINKS_MADE = "linksMade";
+
+  private static final String[] COUNTERS = { RECORDS_PARSED, BYTES_READ, BYTES_WRITTEN, CODESETS_READ,
+      CODESETS_WRITTEN, CODES_ADDED, CODES_EXPIRED, LINKS_EXAMINED, LINKS_REMOVED, LINKS_MADE };
+
+  public static class Phase
+  {
+    private final String name;
+    private final String status;
+    private final long startMillis;
+    private final long wallMillis;
+    private final long cpuMillis;
+    private final Map<String, Long> counterMap = new LinkedHashMap<>();
+
+    private Phase(String name, String status, long startMillis, long wallMillis, long cpuMillis) {
+      this.name = name;
+      this.status = status;
+      this.startMillis = startMillis;
+      this.wallMillis = wallMillis;
+      this.cpuMillis = cpuMillis;
+      for (String counter : COUNTERS) {
+        counterMap.put(counter, 0L);
+      }
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getStatus() {
+      return status;
+    }
+
+    public long getWallMillis() {
+      return wallMillis;
+    }
+
+    public long getCpuMillis() {
+      return cpuMillis;
+    }
+
+    public long getCount(String counter) {
+      Long count = counterMap.get(counter);
+      return count == null ? 0 : count;
+    }
+
+    public Phase count(String counter, long amount) {
+      counterMap.put(counter, getCount(counter) + amount);
+      return this;
+    }
+  }
+
+  private final Date startDate = new Date();
+  private final long startNanos = System.nanoTime();
+  private final long startProcessCpuNanos = processCpuNanos();
+  private final Map<String, Object> attributeMap = new LinkedHashMap<>();
+  private final List<Phase> phaseList = new ArrayList<>();
+  private String status = null;
+  private String failure = null;
+  private long wallMillis = -1;
+  private long cpuMillis = -1;
+
+  /**
+   * Records a setting of the run, such as the codebase location or an option.
+   * The value is written as a JSON string, number or boolean.
+   */
+  public void setAttribute(String name, Object value) {
+    attributeMap.put(name, value);
+  }
+
+  public Phase addPhase(String name, String status, long startMillis, long wallMillis, long cpuMillis) {
+    Phase phase = new Phase(name, status, startMillis, wallMillis, cpuMillis);
+    phaseList.add(phase);
+    return phase;
+  }
+
+  /**
+   * Adds a phase for a step that was run by the scheduler.
+   */
+  public Phase addStep(StepScheduler scheduler, String name) {
+    Phase phase = addPhase(name, scheduler.getStatus(name), (scheduler.getStartNanos(name) - startNanos) / 1000000,
+        scheduler.getMillis(name), scheduler.getCpuMillis(name));
+    for (Map.Entry<String, Long> entry : scheduler.getCounters(name).entrySet()) {
+      phase.count(entry.getKey(), entry.getValue());
+    }
+    return phase;
+  }
+
+  /**
+   * @return how long ago the run started, which is where the start of each
+   *         phase is measured from
+   */
+  public long getElapsedMillis() {
+    return (System.nanoTime() - startNanos) / 1000000;
+  }
+
+  public List<Phase> getPhases() {
+    return Collections.unmodifiableList(phaseList);
+  }
+
+  public long getTotal(String counter) {
+    long total = 0;
+    for (Phase phase : phaseList) {
+      total += phase.getCount(counter);
+    }
+    return total;
+  }
+
+  /**
+   * Ends the run, taking its wall time and the CPU time of the whole process,
+   * which unlike the CPU time of the phases includes the work done on other
+   * threads.
+   *
+   * @param failure
+   *          what stopped the run, or null if it finished
+   */
+  public void finish(Throwable failure) {
+    wallMillis = getElapsedMillis();
+    long processCpuNanos = processCpuNanos();
+    cpuMillis = processCpuNanos < 0 || startProcessCpuNanos < 0 ? -1
+        : (processCpuNanos - startProcessCpuNanos) / 1000000;
+    if (failure == null) {
+      status = StepScheduler.STATUS_DONE;
+    } else {
+      status = StepScheduler.STATUS_FAILED;
+      this.failure = String.valueOf(failure);
+    }
+  }
+
+  /**
+   * @return the CPU time used by the process, or -1 if the JVM does not
+   *         report it
+   */
+  private static long processCpuNanos() {
+    OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+    try {
+      if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+        return ((com.sun.management.OperatingSystemMXBean) bean).getProcessCpuTime();
+      }
+    } catch (LinkageError e) {
+      // com.sun.management is not part of the Java API and a JVM without it
+      // fails here when the class is resolved, so the time is just not known
+    }
+    return -1;
+  }
+
+  public String toJson() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\n");
+    String started = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX").format(startDate);
+    sb.append("  \"started\": ").append(quote(started)).append(",\n");
+    sb.append("  \"status\": ").append(quote(status)).append(",\n");
+    if (failure != null) {
+      sb.append("  \"failure\": ").append(quote(failure)).append(",\n");
+    }
+    sb.append("  \"wallMillis\": ").append(wallMillis).append(",\n");
+    sb.append("  \"cpuMillis\": ").append(cpuMillis).append(",\n");
+    sb.append("  \"attributes\": {");
+    String separator = "\n";
+    for (Map.Entry<String, Object> entry : attributeMap.entrySet()) {
+      sb.append(separator).append("    ").append(quote(entry.getKey())).append(": ").append(value(entry.getValue()));
+      separator = ",\n";
+    }
+    sb.append(attributeMap.isEmpty() ? "},\n" : "\n  },\n");
+    sb.append("  \"phases\": [");
+    separator = "\n";
+    for (Phase phase : phaseList) {
+      sb.append(separator).append("    {\n");
+      sb.append("      \"name\": ").append(quote(phase.name)).append(",\n");
+      sb.append("      \"status\": ").append(quote(phase.status)).append(",\n");
+      sb.append("      \"startMillis\": ").append(phase.startMillis).append(",\n");
+      sb.append("      \"wallMillis\": ").append(phase.wallMillis).append(",\n");
+      sb.append("      \"cpuMillis\": ").append(phase.cpuMillis);
+      for (Map.Entry<String, Long> entry : phase.counterMap.entrySet()) {
+        sb.append(",\n      ").append(quote(entry.getKey())).append(": ").append(entry.getValue());
+      }
+      sb.append("\n    }");
+      separator = ",\n";
+    }
+    sb.append(phaseList.isEmpty() ? "],\n" : "\n  ],\n");
+    sb.append("  \"totals\": {");
+    separator = "\n";
+    for (String counter : COUNTERS) {
+      sb.append(separator).append("    ").append(quote(counter)).append(": ").append(getTotal(counter));
+      separator = ",\n";
+    }
+    sb.append("\n  }\n");
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  public void write(File file) throws IOException {
+    Files.write(file.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String value(Object value) {
+    if (value == null) {
+      return "null";
+    } else if (value instanceof Number || value instanceof Boolean) {
+      return value.toString();
+    }
+    return quote(value.toString());
+  }
+
+  static String quote(String s) {
+    if (s == null) {
+      return "null";
+    }
+    StringBuilder sb = new StringBuilder(s.length() + 2);
+    sb.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+      case '"':
+        sb.append("\\\"");
+        break;
+      case '\\':
+        sb.append("\\\\");
+        break;
+      case '\n':
+        sb.append("\\n");
+        break;
+      case '\r':
+        sb.append("\\r");
+        break;
+      case '\t':
+        sb.append("\\t");
+        break;
+      default:
+        if (c < 0x20) {
+          sb.append(String.format("\\u%04x", (int) c));
+        } else {
+          sb.append(c);
+        }
+      }
+    }
+    sb.append('"');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,389 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a set of named steps as a dependency graph. A step starts on the
+ * executor as soon as every step it depends on has finished, so steps that do
+ * not depend on each other run at the same time.
+ * <p>
+ * Anything a step prints through {@link #out()} and {@link #err()} is held
+ * until the step is done and then printed in the order the steps were added,
+ * so the console output reads the same as when the steps run one after
+ * another. Once all steps are done the time each one took is printed along
+ * with the critical path, the chain of dependent steps that took the longest.
+ * <p>
+ * A step can also add to named counters through {@link #count(String, long)},
+ * which are kept with the step along with the CPU time it used, so they can
+ * be reported once the run is over. Work a step hands to a pool is only
+ * counted in its CPU time when the task is wrapped with
+ * {@link #inStep(Callable)}.
+ */
+public class StepScheduler
+{
+  public interface Step
+  {
+    public void run() throws Exception;
+  }
+
+  public static final String STATUS_DONE = "done";
+  public static final String STATUS_FAILED = "failed";
+  public static final String STATUS_SKIPPED = "skipped";
+
+  private static final ThreadLocal<StepRun> currentRun = new ThreadLocal<>();
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+  /**
+   * @return where the step running on this thread should print, or System.out
+   *         when no step is running
+   */
+  public static PrintStream out() {
+    StepRun stepRun = currentRun.get();
+    return stepRun == null ? System.out : stepRun.out;
+  }
+
+  /**
+   * @return where the step running on this thread should print errors, or
+   *         System.err when no step is running
+   */
+  public static PrintStream err() {
+    StepRun stepRun = currentRun.get();
+    return stepRun == null ? System.err : stepRun.err;
+  }
+
+  /**
+   * Adds to a counter of the step running on this thread. Does nothing when no
+   * step is running.
+   */
+  public static void count(String name, long amount) {
+    StepRun stepRun = currentRun.get();
+    if (stepRun != null) {
+      Long count = stepRun.counterMap.get(name);
+      stepRun.counterMap.put(name, count == null ? amount : count + amount);
+    }
+  }
+
+  /**
+   * Wraps a task the step running on this thread hands to another thread, so
+   * the CPU time the task uses there is added to the step. Returns the task
+   * itself when no step is running.
+   */
+  public static <T> Callable<T> inStep(Callable<T> task) {
+    StepRun stepRun = currentRun.get();
+    if (stepRun == null) {
+      return task;
+    }
+    return () -> {
+      if (currentRun.get() == stepRun) {
+        // run on the step's own thread, which is measured already
+        return task.call();
+      }
+      long startCpuNanos = threadCpuNanos();
+      try {
+        return task.call();
+      } finally {
+        stepRun.addCpuNanos(startCpuNanos);
+      }
+    };
+  }
+
+  /**
+   * @return the CPU time used so far by this thread, or -1 if the JVM does not
+   *         measure it
+   */
+  static long threadCpuNanos() {
+    if (!THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() || !THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+      return -1;
+    }
+    return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+  }
+
+  /**
+   * @return the CPU time this thread used since it had used the given time,
+   *         or -1 if the JVM does not measure it
+   */
+  static long cpuMillisSince(long startCpuNanos) {
+    long cpuNanos = threadCpuNanos();
+    return cpuNanos < 0 || startCpuNanos < 0 ? -1 : (cpuNanos - startCpuNanos) / 1000000;
+  }
+
+  private final Map<String, StepRun> stepRunMap = new LinkedHashMap<>();
+  private long startNanos;
+  private long endNanos;
+  private int printedCount = 0;
+
+  /**
+   * Adds a step. The steps it depends on must already have been added.
+   */
+  public void add(String name, Step step, String... dependsOn) {
+    if (stepRunMap.containsKey(name)) {
+      throw new IllegalArgumentException("Step " + name + " has already been added");
+    }
+    List<StepRun> dependencyList = new ArrayList<>();
+    for (String dependency : dependsOn) {
+      StepRun dependencyRun = stepRunMap.get(dependency);
+      if (dependencyRun == null) {
+        throw new IllegalArgumentException("Step " + name + " depends on " + dependency + " which has not been added");
+      }
+      dependencyList.add(dependencyRun);
+    }
+    stepRunMap.put(name, new StepRun(name, step, dependencyList));
+  }
+
+  /**
+   * Runs every step and waits for them to finish. If a step fails the steps
+   * that depend on it are not run, and the first failure is thrown once the
+   * other steps are done.
+   */
+  public void run(Executor executor) throws IOException {
+    startNanos = System.nanoTime();
+    List<CompletableFuture<Void>> futureList = new ArrayList<>();
+    for (StepRun stepRun : stepRunMap.values()) {
+      CompletableFuture<?>[] dependencies = new CompletableFuture<?>[stepRun.dependencyList.size()];
+      for (int i = 0; i < dependencies.length; i++) {
+        dependencies[i] = stepRun.dependencyList.get(i).future;
+      }
+      stepRun.future = CompletableFuture.allOf(dependencies).thenRunAsync(stepRun, executor);
+      futureList.add(stepRun.future.whenComplete((result, throwable) -> stepDone(stepRun)));
+    }
+    Throwable failure = null;
+    for (CompletableFuture<Void> future : futureList) {
+      try {
+        future.join();
+      } catch (CompletionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      }
+    }
+    synchronized (this) {
+      printOutput(true);
+    }
+    endNanos = System.nanoTime();
+    printTiming();
+    if (failure instanceof IOException) {
+      throw (IOException) failure;
+    } else if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure != null) {
+      throw new IOException("Step failed", failure);
+    }
+  }
+
+  public long getMillis(String name) {
+    StepRun stepRun = stepRunMap.get(name);
+    return stepRun == null ? 0 : (stepRun.endNanos - stepRun.startNanos) / 1000000;
+  }
+
+  /**
+   * @return the CPU time of the thread the step ran on and of the tasks it
+   *         handed to other threads through {@link #inStep(Callable)}, or -1
+   *         if the JVM does not measure it
+   */
+  public long getCpuMillis(String name) {
+    StepRun stepRun = stepRunMap.get(name);
+    if (stepRun == null) {
+      return 0;
+    }
+    return stepRun.cpuMeasured ? stepRun.cpuNanos.get() / 1000000 : -1;
+  }
+
+  /**
+   * @return the {@link System#nanoTime()} the step started at
+   */
+  long getStartNanos(String name) {
+    StepRun stepRun = stepRunMap.get(name);
+    return stepRun == null ? 0 : stepRun.startNanos;
+  }
+
+  /**
+   * @return {@link #STATUS_DONE}, {@link #STATUS_FAILED}, or
+   *         {@link #STATUS_SKIPPED} when the step did not run because a step it
+   *         depends on failed
+   */
+  public String getStatus(String name) {
+    StepRun stepRun = stepRunMap.get(name);
+    if (stepRun == null || !stepRun.ran) {
+      return STATUS_SKIPPED;
+    }
+    return stepRun.failed ? STATUS_FAILED : STATUS_DONE;
+  }
+
+  /**
+   * @return the counters the step added to, in the order it first added to
+   *         them
+   */
+  public Map<String, Long> getCounters(String name) {
+    StepRun stepRun = stepRunMap.get(name);
+    if (stepRun == null) {
+      return Collections.emptyMap();
+    }
+    return Collections.unmodifiableMap(stepRun.counterMap);
+  }
+
+  /**
+   * @return the names of the steps on the critical path, in the order they ran
+   */
+  public List<String> getCriticalPath() {
+    StepRun last = null;
+    for (StepRun stepRun : stepRunMap.values()) {
+      if (last == null || pathNanos(stepRun) > pathNanos(last)) {
+        last = stepRun;
+      }
+    }
+    List<String> path = new ArrayList<>();
+    while (last != null) {
+      path.add(last.name);
+      StepRun longest = null;
+      for (StepRun dependency : last.dependencyList) {
+        if (longest == null || pathNanos(dependency) > pathNanos(longest)) {
+          longest = dependency;
+        }
+      }
+      last = longest;
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+  private long pathNanos(StepRun stepRun) {
+    if (stepRun.pathNanos < 0) {
+      long longest = 0;
+      for (StepRun dependency : stepRun.dependencyList) {
+        longest = Math.max(longest, pathNanos(dependency));
+      }
+      stepRun.pathNanos = longest + (stepRun.endNanos - stepRun.startNanos);
+    }
+    return stepRun.pathNanos;
+  }
+
+  private synchronized void stepDone(StepRun stepRun) {
+    stepRun.done = true;
+    if (stepRun.endNanos == 0) {
+      // skipped because a dependency failed
+      stepRun.startNanos = stepRun.endNanos = System.nanoTime();
+    }
+    printOutput(false);
+  }
+
+  /**
+   * Prints the output of finished steps in the order they were added, stopping
+   * at the first step that is still running unless everything is done.
+   */
+  private void printOutput(boolean all) {
+    int position = 0;
+    for (StepRun stepRun : stepRunMap.values()) {
+      if (position++ < printedCount) {
+        continue;
+      }
+      if (!stepRun.done && !all) {
+        break;
+      }
+      stepRun.out.flush();
+      stepRun.err.flush();
+      System.out.print(stepRun.outBuffer.toString());
+      System.out.flush();
+      System.err.print(stepRun.errBuffer.toString());
+      System.err.flush();
+      printedCount++;
+    }
+  }
+
+  private void printTiming() {
+    System.out.println("Step timing");
+    for (StepRun stepRun : stepRunMap.values()) {
+      System.out.println("  + " + stepRun.name + ": " + getMillis(stepRun.name) + " ms, started at "
+          + (stepRun.startNanos - startNanos) / 1000000 + " ms");
+    }
+    List<String> criticalPath = getCriticalPath();
+    long criticalMillis = 0;
+    for (String name : criticalPath) {
+      criticalMillis += getMillis(name);
+    }
+    System.out.println("  + Critical path: " + String.join(" -> ", criticalPath) + " (" + criticalMillis + " ms)");
+    System.out.println("  + Total: " + getTotalMillis() + " ms");
+  }
+
+  /**
+   * @return how long the whole run took
+   */
+  public long getTotalMillis() {
+    return (endNanos - startNanos) / 1000000;
+  }
+
+  private static class StepRun implements Runnable
+  {
+    private final String name;
+    private final Step step;
+    private final List<StepRun> dependencyList;
+    private final ByteArrayOutputStream outBuffer = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream errBuffer = new ByteArrayOutputStream();
+    private final PrintStream out = new PrintStream(outBuffer, true);
+    private final PrintStream err = new PrintStream(errBuffer, true);
+    private final Map<String, Long> counterMap = new LinkedHashMap<>();
+    private CompletableFuture<Void> future;
+    private volatile long startNanos = 0;
+    private volatile long endNanos = 0;
+    private final AtomicLong cpuNanos = new AtomicLong();
+    private volatile boolean cpuMeasured = true;
+    private long pathNanos = -1;
+    private boolean done = false;
+    private volatile boolean ran = false;
+    private volatile boolean failed = false;
+
+    private StepRun(String name, Step step, List<StepRun> dependencyList) {
+      this.name = name;
+      this.step = step;
+      this.dependencyList = dependencyList;
+    }
+
+    @Override
+    public void run() {
+      currentRun.set(this);
+      ran = true;
+      startNanos = System.nanoTime();
+      long startCpuNanos = threadCpuNanos();
+      try {
+        step.run();
+      } catch (Exception e) {
+        failed = true;
+        throw new CompletionException(e);
+      } catch (Error e) {
+        failed = true;
+        throw e;
+      } finally {
+        addCpuNanos(startCpuNanos);
+        endNanos = System.nanoTime();
+        currentRun.remove();
+      }
+    }
+
+    /**
+     * Adds the CPU time this thread used since it had used the given time.
+     */
+    private void addCpuNanos(long startCpuNanos) {
+      long endCpuNanos = threadCpuNanos();
+      if (startCpuNanos < 0 || endCpuNanos < 0) {
+        cpuMeasured = false;
+      } else {
+        cpuNanos.addAndGet(endCpuNanos - startCpuNanos);
+      }
+    }
+  }
+}
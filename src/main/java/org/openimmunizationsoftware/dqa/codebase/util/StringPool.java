@@ -0,0 +1,152 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.Unmarshaller;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+
+/**
+ * Keeps one copy of each of the strings that repeat across a codebase, such
+ * as codeset types, link values, statuses, concept types and deprecation
+ * reasons. Each is read as a new string every time it appears in a file, so
+ * without the pool the same text is held thousands of times over.
+ * <p>
+ * The pool is given to the unmarshaller by {@link #createListener()} and used
+ * when links are added. It counts the copies it replaced and estimates the
+ * memory they took, which is what was saved once they are collected. It can
+ * be shared between threads.
+ */
+public final class StringPool
+{
+  private static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version", "1.8")
+      .startsWith("1.");
+
+  private final ConcurrentMap<String, String> pool = new ConcurrentHashMap<>();
+  private final AtomicLong lookupCount = new AtomicLong();
+  private final AtomicLong duplicateCount = new AtomicLong();
+  private final AtomicLong bytesSaved = new AtomicLong();
+
+  /**
+   * @return the pooled copy of the string, the string itself the first time it
+   *         is seen, or null for null
+   */
+  public String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+    lookupCount.incrementAndGet();
+    String pooled = pool.putIfAbsent(value, value);
+    if (pooled == null) {
+      return value;
+    }
+    if (pooled != value) {
+      duplicateCount.incrementAndGet();
+      bytesSaved.addAndGet(estimateSize(value));
+    }
+    return pooled;
+  }
+
+  /**
+   * @return roughly how many bytes the string takes on the heap: the string
+   *         object and its array, each rounded up to 8 bytes
+   */
+  static long estimateSize(String value) {
+    long arrayBytes = 2L * value.length();
+    if (COMPACT_STRINGS) {
+      arrayBytes = value.length();
+      for (int i = 0; i < value.length(); i++) {
+        if (value.charAt(i) > 0xFF) {
+          arrayBytes = 2L * value.length();
+          break;
+        }
+      }
+    }
+    return 24 + ((16 + arrayBytes + 7) & ~7L);
+  }
+
+  /**
+   * @return how many different strings are pooled
+   */
+  public int size() {
+    return pool.size();
+  }
+
+  public long getLookupCount() {
+    return lookupCount.get();
+  }
+
+  /**
+   * @return how many copies were replaced by the pooled string
+   */
+  public long getDuplicateCount() {
+    return duplicateCount.get();
+  }
+
+  /**
+   * @return an estimate of the memory taken by the copies that were replaced
+   */
+  public long getBytesSaved() {
+    return bytesSaved.get();
+  }
+
+  /**
+   * @return a listener that pools the repeating strings of codesets and
+   *         codebases as they are unmarshalled
+   */
+  public Unmarshaller.Listener createListener() {
+    return new Unmarshaller.Listener() {
+      @Override
+      public void afterUnmarshal(Object target, Object parent) {
+        pool(target);
+      }
+    };
+  }
+
+  private void pool(Object target) {
+    if (target instanceof Codeset) {
+      Codeset codeset = (Codeset) target;
+      codeset.setType(intern(codeset.getType()));
+    } else if (target instanceof Codeset.Code) {
+      Codeset.Code code = (Codeset.Code) target;
+      code.setValue(intern(code.getValue()));
+      code.setConceptType(intern(code.getConceptType()));
+      code.setTestAge(intern(code.getTestAge()));
+    } else if (target instanceof Codeset.Code.CodeStatus) {
+      Codeset.Code.CodeStatus codeStatus = (Codeset.Code.CodeStatus) target;
+      codeStatus.setStatus(intern(codeStatus.getStatus()));
+    } else if (target instanceof Codeset.Code.CodeStatus.Deprecated) {
+      Codeset.Code.CodeStatus.Deprecated deprecated = (Codeset.Code.CodeStatus.Deprecated) target;
+      deprecated.setNewCodeValue(intern(deprecated.getNewCodeValue()));
+      deprecated.setReason(intern(deprecated.getReason()));
+      deprecated.setEffectiveDate(intern(deprecated.getEffectiveDate()));
+    } else if (target instanceof Codeset.Code.Reference.LinkTo) {
+      Codeset.Code.Reference.LinkTo linkTo = (Codeset.Code.Reference.LinkTo) target;
+      linkTo.setCodeset(intern(linkTo.getCodeset()));
+      linkTo.setValue(intern(linkTo.getValue()));
+    } else if (target instanceof Codebase.Codeset) {
+      Codebase.Codeset codeset = (Codebase.Codeset) target;
+      codeset.setType(intern(codeset.getType()));
+    } else if (target instanceof Codebase.Codeset.Code) {
+      Codebase.Codeset.Code code = (Codebase.Codeset.Code) target;
+      code.setValue(intern(code.getValue()));
+      code.setConceptType(intern(code.getConceptType()));
+      code.setTestAge(intern(code.getTestAge()));
+    } else if (target instanceof Codebase.Codeset.Code.CodeStatus) {
+      Codebase.Codeset.Code.CodeStatus codeStatus = (Codebase.Codeset.Code.CodeStatus) target;
+      codeStatus.setStatus(intern(codeStatus.getStatus()));
+    } else if (target instanceof Codebase.Codeset.Code.CodeStatus.Deprecated) {
+      Codebase.Codeset.Code.CodeStatus.Deprecated deprecated = (Codebase.Codeset.Code.CodeStatus.Deprecated) target;
+      deprecated.setNewCodeValue(intern(deprecated.getNewCodeValue()));
+      deprecated.setReason(intern(deprecated.getReason()));
+      deprecated.setEffectiveDate(intern(deprecated.getEffectiveDate()));
+    } else if (target instanceof Codebase.Codeset.Code.Reference.LinkTo) {
+      Codebase.Codeset.Code.Reference.LinkTo linkTo = (Codebase.Codeset.Code.Reference.LinkTo) target;
+      linkTo.setCodeset(intern(linkTo.getCodeset()));
+      linkTo.setValue(intern(linkTo.getValue()));
+    }
+  }
+}
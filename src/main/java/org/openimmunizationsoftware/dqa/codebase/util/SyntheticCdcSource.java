@@ -0,0 +1,572 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code.Reference;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code.Reference.LinkTo;
+
+/**
+ * Writes a made up codebase location for load testing {@link UpdateFromCDCSource}:
+ * every CDC source file in cdc-source, laid out the way the CDC writes them,
+ * and the set files in base/sets as a previous update would have left them.
+ * Most of the codes in the sources are already in the sets, a few are new
+ * and a few codes in the sets are no longer in the sources, so an update has
+ * something to add, something to expire and links to make.
+ * <p>
+ * At scale 1 there are about as many records as in the CDC files; every
+ * count is multiplied by the scale. The fan out is the most units of use an
+ * NDC is sold in and the most vaccine groups a CVX belongs to. The skew is
+ * how much more often the first CVX, MVX and VIS codes are linked to than the
+ * rest, 0 linking to all of them evenly. The same settings and seed always
+ * write the same files.
+ */
+public class SyntheticCdcSource
+{
+  public static final String DEFAULT_CODEBASE_LOCATION = "../codebase-synthetic";
+
+  /**
+   * How many times the volume of the CDC files to write, for example
+   * -scale=10.
+   */
+  public static final String OPTION_SCALE = "-scale=";
+  public static final String OPTION_SEED = "-seed=";
+  public static final String OPTION_FAN_OUT = "-fanOut=";
+  public static final String OPTION_SKEW = "-skew=";
+
+  static final int CVX_COUNT = 280;
+  static final int MVX_COUNT = 100;
+  static final int VACCINE_GROUP_COUNT = 40;
+  static final int TRADENAME_COUNT = 300;
+  static final int CPT_COUNT = 200;
+  static final int CVXVIS_COUNT = 250;
+  static final int NDC_COUNT = 1500;
+
+  /**
+   * One unit of use NDC package digit is left for each unit of use, so an NDC
+   * can not be sold in more than this.
+   */
+  public static final int MAX_FAN_OUT = 8;
+
+  private static final int KEEP_PERCENT = 90;
+  private static final int STALE_PERCENT = 2;
+  private static final int PRODUCTS_PER_LABELER = 90;
+
+  private static final String[] CVX_STATUSES = { "Active", "Active", "Active", "Inactive", "Inactive",
+      "Never Active", "Pending", "Non-US" };
+  private static final String[] SMALL_SETS = { "Injection Amount.xml", "INJECTION_AMOUNT",
+      "Injection Guidance.xml", "INJECTION_GUIDANCE", "Injection Guidance Site.xml", "INJECTION_GUIDANCE_SITE",
+      "Body Route.xml", "BODY_ROUTE", "Body Site.xml", "BODY_SITE" };
+
+  private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+  private final long seed;
+  private double scale = 1;
+  private int fanOut = 3;
+  private double skew = 1;
+  private Random random;
+
+  private int cvxCount;
+  private int mvxCount;
+  private int vaccineGroupCount;
+  private int recordCount = 0;
+
+  public SyntheticCdcSource(long seed) {
+    this.seed = seed;
+  }
+
+  public void setScale(double scale) {
+    if (scale <= 0) {
+      throw new IllegalArgumentException("Scale must be more than 0, not " + scale);
+    }
+    this.scale = scale;
+  }
+
+  public void setFanOut(int fanOut) {
+    if (fanOut < 1 || fanOut > MAX_FAN_OUT) {
+      throw new IllegalArgumentException("Fan out must be from 1 to " + MAX_FAN_OUT + ", not " + fanOut);
+    }
+    this.fanOut = fanOut;
+  }
+
+  public void setSkew(double skew) {
+    if (skew < 0) {
+      throw new IllegalArgumentException("Skew can not be less than 0, not " + skew);
+    }
+    this.skew = skew;
+  }
+
+  /**
+   * @return how many records were written to the source files
+   */
+  public int getRecordCount() {
+    return recordCount;
+  }
+
+  private int count(int countAtScaleOne) {
+    return Math.max(2, (int) Math.round(countAtScaleOne * scale));
+  }
+
+  /**
+   * @return an index below the count, the lower ones more often the higher
+   *         the skew
+   */
+  private int pick(int count) {
+    return Math.min(count - 1, (int) (count * Math.pow(random.nextDouble(), 1 + skew)));
+  }
+
+  private boolean percent(int percent) {
+    return random.nextInt(100) < percent;
+  }
+
+  private static String cvx(int i) {
+    return i < 99 ? String.format("%02d", i + 1) : String.valueOf(i + 1);
+  }
+
+  private static String mvx(int i) {
+    return "M" + String.format("%03d", i);
+  }
+
+  private static String vaccineGroup(int i) {
+    return "Group " + (i + 1);
+  }
+
+  private static String tradename(int i) {
+    return "PRODUCT " + (i + 1);
+  }
+
+  private static String cpt(int i) {
+    return String.valueOf(90000 + i);
+  }
+
+  private static String vis(int i) {
+    return "253088698" + String.format("%06d", 300000 + i);
+  }
+
+  private String date(String pattern) {
+    int year = 2005 + random.nextInt(20);
+    int month = 1 + random.nextInt(12);
+    int day = 1 + random.nextInt(28);
+    switch (pattern) {
+    case "M/d/yyyy":
+      return month + "/" + day + "/" + year;
+    case "yyyyMMdd":
+      return String.format("%04d%02d%02d", year, month, day);
+    default:
+      return String.format("%04d-%02d-%02d %02d:%02d:%02d", year, month, day, 1 + random.nextInt(12),
+          random.nextInt(60), random.nextInt(60));
+    }
+  }
+
+  /**
+   * Writes cdc-source and base/sets in the codebase location, replacing the
+   * files that are already there.
+   */
+  public void write(File baseLocationFile) throws IOException, JAXBException {
+    random = new Random(seed);
+    recordCount = 0;
+    cvxCount = count(CVX_COUNT);
+    mvxCount = count(MVX_COUNT);
+    vaccineGroupCount = Math.min(cvxCount, count(VACCINE_GROUP_COUNT));
+    File sourceLocationFile = new File(baseLocationFile, "cdc-source");
+    File setLocationFile = new File(baseLocationFile, "base/sets");
+    if (!sourceLocationFile.isDirectory() && !sourceLocationFile.mkdirs()) {
+      throw new IOException("Unable to create " + sourceLocationFile);
+    }
+    if (!setLocationFile.isDirectory() && !setLocationFile.mkdirs()) {
+      throw new IOException("Unable to create " + setLocationFile);
+    }
+    CodesetIO codesetIO = new CodesetIO();
+    try {
+      writeCvx(sourceLocationFile, setLocationFile, codesetIO);
+      writeMvx(sourceLocationFile, setLocationFile, codesetIO);
+      writeVac2vg(sourceLocationFile, setLocationFile, codesetIO);
+      writeCpt(sourceLocationFile, setLocationFile, codesetIO);
+      writeTradename(sourceLocationFile, setLocationFile, codesetIO);
+      writeCvxvis(sourceLocationFile, setLocationFile, codesetIO);
+      writeNdc(sourceLocationFile, setLocationFile, codesetIO);
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+    writeLotNumberPatterns(setLocationFile, codesetIO);
+    for (int i = 0; i < SMALL_SETS.length; i += 2) {
+      Codeset codeset = createCodeset(SMALL_SETS[i].substring(0, SMALL_SETS[i].length() - 4), SMALL_SETS[i + 1]);
+      addCode(codeset, "A", "Alpha");
+      addCode(codeset, "B", "Beta");
+      codesetIO.marshal(codeset, new File(setLocationFile, SMALL_SETS[i]));
+    }
+  }
+
+  private static Codeset createCodeset(String label, String type) {
+    Codeset codeset = new Codeset();
+    codeset.setLabel(label);
+    codeset.setType(type);
+    return codeset;
+  }
+
+  private static Code addCode(Codeset codeset, String value, String label) {
+    Code code = new Code();
+    code.setValue(value);
+    code.setLabel(label);
+    Code.CodeStatus codeStatus = new Code.CodeStatus();
+    codeStatus.setStatus("Valid");
+    code.setCodeStatus(codeStatus);
+    codeset.getCode().add(code);
+    return code;
+  }
+
+  private static void addLink(Code code, String codesetType, String value) {
+    if (code.getReference() == null) {
+      code.setReference(new Reference());
+    }
+    LinkTo linkTo = new LinkTo();
+    linkTo.setCodeset(codesetType);
+    linkTo.setValue(value);
+    code.getReference().getLinkTo().add(linkTo);
+  }
+
+  /**
+   * Adds the code to the set file most of the time, as an earlier update
+   * would have, and now and then adds a code that is no longer in the source.
+   */
+  private Code keep(Codeset codeset, String value, String label, String staleValue) {
+    if (percent(STALE_PERCENT)) {
+      addCode(codeset, staleValue, "No longer in the source");
+    }
+    return percent(KEEP_PERCENT) ? addCode(codeset, value, label) : null;
+  }
+
+  /**
+   * A CDC source file in XML, written record by record.
+   */
+  private final class SourceXml implements Closeable
+  {
+    private final OutputStream out;
+    private final XMLStreamWriter writer;
+
+    private SourceXml(File file, String rootElement) throws IOException, XMLStreamException {
+      out = new BufferedOutputStream(new FileOutputStream(file));
+      try {
+        writer = XML_OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeCharacters("\n");
+        writer.writeStartElement(rootElement);
+        writer.writeCharacters("\n");
+      } catch (XMLStreamException e) {
+        out.close();
+        throw e;
+      }
+    }
+
+    private void startRecord(String name) throws XMLStreamException {
+      writer.writeCharacters("  ");
+      writer.writeStartElement(name);
+      writer.writeCharacters("\n");
+    }
+
+    private void element(String name, String value) throws XMLStreamException {
+      writer.writeCharacters("    ");
+      writer.writeStartElement(name);
+      writer.writeCharacters(value);
+      writer.writeEndElement();
+      writer.writeCharacters("\n");
+    }
+
+    private void endRecord() throws XMLStreamException {
+      writer.writeCharacters("  ");
+      writer.writeEndElement();
+      writer.writeCharacters("\n");
+      recordCount++;
+    }
+
+    /**
+     * Writes the record as Name and Value pairs, the way the CDC writes the
+     * vaccine group, CPT and trade name files.
+     */
+    private void nameValueRecord(String name, String... namesAndValues) throws XMLStreamException {
+      startRecord(name);
+      for (int i = 0; i < namesAndValues.length; i += 2) {
+        element("Name", namesAndValues[i]);
+        element("Value", namesAndValues[i + 1]);
+      }
+      endRecord();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        writer.writeEndElement();
+        writer.writeCharacters("\n");
+        writer.writeEndDocument();
+        writer.close();
+      } catch (XMLStreamException e) {
+        throw new IOException(e);
+      } finally {
+        out.close();
+      }
+    }
+  }
+
+  private void writeCvx(File sourceLocationFile, File setLocationFile, CodesetIO codesetIO)
+      throws IOException, XMLStreamException, JAXBException {
+    Codeset codeset = createCodeset("Vaccination CVX Code", CodesetType.CVX);
+    try (SourceXml xml = new SourceXml(new File(sourceLocationFile, "cvx.xml"), "CVXCodes")) {
+      for (int i = 0; i < cvxCount; i++) {
+        String shortDescription = "Vaccine " + (i + 1) + (i % 4 == 0 ? "\n       preservative free" : "");
+        xml.startRecord("CVXInfo");
+        xml.element("ShortDescription", shortDescription);
+        xml.element("FullVaccinename", "Vaccine " + (i + 1) + " & full name");
+        xml.element("CVXCode", " " + cvx(i) + " ");
+        xml.element("Notes", i % 3 == 0 ? "Synthetic note " + i : "");
+        xml.element("Status", CVX_STATUSES[random.nextInt(CVX_STATUSES.length)]);
+        xml.element("LastUpdated", date("M/d/yyyy"));
+        xml.endRecord();
+        keep(codeset, cvx(i), "Vaccine " + (i + 1), cvx(cvxCount + i));
+      }
+    }
+    codesetIO.marshal(codeset, new File(setLocationFile, "Vaccination CVX Code.xml"));
+  }
+
+  private void writeMvx(File sourceLocationFile, File setLocationFile, CodesetIO codesetIO)
+      throws IOException, XMLStreamException, JAXBException {
+    Codeset codeset = createCodeset("Vaccination Manufacturer Code", CodesetType.MVX);
+    try (SourceXml xml = new SourceXml(new File(sourceLocationFile, "mvx.xml"), "MVXCodes")) {
+      for (int i = 0; i < mvxCount; i++) {
+        xml.startRecord("MVXInfo");
+        xml.element("MVX_CODE", mvx(i));
+        xml.element("ManufacturerName", "Manufacturer " + (i + 1));
+        xml.element("Notes", "");
+        xml.element("Status", percent(70) ? "Active" : "Inactive");
+        xml.element("LastUpdated", date("M/d/yyyy"));
+        xml.endRecord();
+        keep(codeset, mvx(i), "Manufacturer " + (i + 1), mvx(mvxCount + i));
+      }
+    }
+    codesetIO.marshal(codeset, new File(setLocationFile, "Vaccination Manufacturer Code.xml"));
+  }
+
+  private void writeVac2vg(File sourceLocationFile, File setLocationFile, CodesetIO codesetIO)
+      throws IOException, XMLStreamException, JAXBException {
+    Codeset codeset = createCodeset("Vaccine Group", CodesetType.VACCINE_GROUP);
+    try (SourceXml xml = new SourceXml(new File(sourceLocationFile, "vac2vg.xml"), "VGCodes")) {
+      for (int i = 0; i < cvxCount; i++) {
+        int groupCount = 1 + random.nextInt(Math.min(fanOut, vaccineGroupCount));
+        for (int g = 0; g < groupCount; g++) {
+          int group = pick(vaccineGroupCount);
+          xml.nameValueRecord("CVXVGInfo", "ShortDescription", "Vaccine " + (i + 1), "CVXCode", cvx(i),
+              "Status", "Active", "Vaccine Group Name", vaccineGroup(group), "CVX for Vaccine Group", cvx(group));
+        }
+      }
+      for (int group = 0; group < vaccineGroupCount; group++) {
+        keep(codeset, vaccineGroup(group), "Vaccine " + (group + 1), vaccineGroup(vaccineGroupCount + group));
+      }
+    }
+    codesetIO.marshal(codeset, new File(setLocationFile, "Vaccine Group.xml"));
+  }
+
+  private void writeCpt(File sourceLocationFile, File setLocationFile, CodesetIO codesetIO)
+      throws IOException, XMLStreamException, JAXBException {
+    Codeset codeset = createCodeset("Vaccination CPT Code", CodesetType.CPT);
+    int cptCount = count(CPT_COUNT);
+    try (SourceXml xml = new SourceXml(new File(sourceLocationFile, "cpt.xml"), "CPTCodes")) {
+      for (int i = 0; i < cptCount; i++) {
+        String cvx = cvx(pick(cvxCount));
+        xml.nameValueRecord("CPTInfo", "CPT Code", cpt(i), "CPT Desc", "Procedure " + (i + 1), "Status",
+            "Active", "Comments", i % 5 == 0 ? "Synthetic comment" : "", "Vaccine Name", "Vaccine", "CVX Code", cvx,
+            "LastUpdated", date("M/d/yyyy"));
+        Code code = keep(codeset, cpt(i), "Procedure " + (i + 1), cpt(cptCount + i));
+        if (code != null) {
+          addLink(code, CodesetType.CVX, cvx);
+        }
+      }
+    }
+    codesetIO.marshal(codeset, new File(setLocationFile, "Vaccination CPT Code.xml"));
+  }
+
+  private void writeTradename(File sourceLocationFile, File setLocationFile, CodesetIO codesetIO)
+      throws IOException, XMLStreamException, JAXBException {
+    Codeset codeset = createCodeset("Vaccination Trade Name", CodesetType.TRADE_NAME);
+    int tradenameCount = count(TRADENAME_COUNT);
+    try (SourceXml xml = new SourceXml(new File(sourceLocationFile, "tradename.xml"), "productnames")) {
+      for (int i = 0; i < tradenameCount; i++) {
+        xml.nameValueRecord("prodInfo", "CDC Product Name", tradename(i), "Short Description",
+            "Product " + (i + 1), "CVXCode", cvx(pick(cvxCount)), "Manufacturer", "Manufacturer", "MVX Code",
+            mvx(pick(mvxCount)), "MVX Status", "Active", "Product name Status", percent(80) ? "Active" : "Inactive",
+            "Last Updated", date("M/d/yyyy"));
+        keep(codeset, tradename(i), "Product " + (i + 1), tradename(tradenameCount + i));
+      }
+    }
+    codesetIO.marshal(codeset, new File(setLocationFile, "Vaccination Trade Name.xml"));
+  }
+
+  private void writeCvxvis(File sourceLocationFile, File setLocationFile, CodesetIO codesetIO)
+      throws IOException, XMLStreamException, JAXBException {
+    Codeset docCodeset = createCodeset("Vaccination VIS Doc Type", CodesetType.VIS_DOC_TYPE);
+    Codeset vaccineCodeset = createCodeset("Vaccination VIS Vaccines", CodesetType.VIS_VACCINES);
+    int mappingCount = count(CVXVIS_COUNT);
+    int visCount = Math.max(1, mappingCount / 4);
+    try (SourceXml xml = new SourceXml(new File(sourceLocationFile, "cvxvis.xml"), "CVXVIS")) {
+      for (int i = 0; i < mappingCount; i++) {
+        int vis = i < visCount ? i : pick(visCount);
+        xml.startRecord("CVXVISMapping");
+        xml.element("CVXCode", cvx(pick(cvxCount)));
+        xml.element("CVXVaccineDescription", "Vaccine");
+        xml.element("Fully-encodedString", vis(vis));
+        xml.element("VISDocumentName", "VIS " + (vis + 1));
+        xml.element("VISEditionDate", date("M/d/yyyy"));
+        xml.element("Status", "Current");
+        xml.endRecord();
+      }
+      for (int i = 0; i < visCount; i++) {
+        keep(docCodeset, vis(i), "VIS " + (i + 1), vis(visCount + i));
+      }
+    }
+    codesetIO.marshal(docCodeset, new File(setLocationFile, "Vaccination VIS Doc Type.xml"));
+    codesetIO.marshal(vaccineCodeset, new File(setLocationFile, "Vaccination VIS Vaccines.xml"));
+  }
+
+  private static Writer openText(File file) throws IOException {
+    return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+  }
+
+  private static void line(Writer writer, String... fields) throws IOException {
+    for (int i = 0; i < fields.length; i++) {
+      if (i > 0) {
+        writer.write('|');
+      }
+      writer.write(fields[i]);
+    }
+    writer.write("\r\n");
+  }
+
+  /**
+   * The parts of an NDC as the CDC files give them: labeler, product and
+   * package in the 10 digit layout the labeler uses, 4-4-2, 5-3-2 or 5-4-1,
+   * and the 11 digit 5-4-2 form.
+   */
+  private static String[] ndc(int sale, int packageNumber) {
+    int labelerNumber = sale / PRODUCTS_PER_LABELER;
+    int productNumber = sale % PRODUCTS_PER_LABELER;
+    int layout = labelerNumber < 9000 ? labelerNumber % 3 : 1 + labelerNumber % 2;
+    String labeler;
+    String product;
+    String packageCode;
+    switch (layout) {
+    case 0:
+      labeler = String.valueOf(1000 + labelerNumber);
+      product = String.valueOf(1000 + productNumber);
+      packageCode = String.valueOf(10 + packageNumber);
+      break;
+    case 1:
+      labeler = String.valueOf(10000 + labelerNumber);
+      product = String.valueOf(100 + productNumber);
+      packageCode = String.valueOf(10 + packageNumber);
+      break;
+    default:
+      labeler = String.valueOf(10000 + labelerNumber);
+      product = String.valueOf(1000 + productNumber);
+      packageCode = String.valueOf(1 + packageNumber);
+    }
+    String ndc11 = String.format("%05d-%04d-%02d", Integer.parseInt(labeler), Integer.parseInt(product),
+        Integer.parseInt(packageCode));
+    return new String[] { labeler, product, packageCode, ndc11 };
+  }
+
+  private void writeNdc(File sourceLocationFile, File setLocationFile, CodesetIO codesetIO)
+      throws IOException, JAXBException {
+    Codeset saleCodeset = createCodeset("Vaccination NDC for Unit-of-Sale", CodesetType.NDC_UNIT_OF_SALE);
+    Codeset useCodeset = createCodeset("Vaccination NDC for Unit-of-Use", CodesetType.NDC_UNIT_OF_USE);
+    int ndcCount = count(NDC_COUNT);
+    try (Writer saleWriter = openText(new File(sourceLocationFile, "NDC_Unit_sale.txt"));
+        Writer useWriter = openText(new File(sourceLocationFile, "NDC_Unit_use.txt"));
+        Writer linkWriter = openText(new File(sourceLocationFile, "NDC_Linker.txt"))) {
+      for (int i = 0; i < ndcCount; i++) {
+        String cvx = cvx(pick(cvxCount));
+        String mvx = percent(90) ? mvx(pick(mvxCount)) : "";
+        String[] sale = ndc(i, 0);
+        String labelerName = "Labeler " + (i / PRODUCTS_PER_LABELER + 1);
+        line(saleWriter, "S" + i, sale[0], sale[1], sale[2], " Product " + (i + 1) + " ", "Generic " + (i + 1),
+            labelerName, date("yyyyMMdd"), percent(15) ? date("yyyyMMdd") : "", "BOX", "IM",
+            date("yyyy-MM-dd hh:mm:ss"), cvx, "Vaccine", sale[3], "GTIN" + i);
+        recordCount++;
+        keep(saleCodeset, sale[3], "Product " + (i + 1), ndc(ndcCount + i, 0)[3]);
+        int useCount = 1 + random.nextInt(fanOut);
+        for (int u = 0; u < useCount; u++) {
+          String[] use = ndc(i, 1 + u);
+          String useId = "U" + i + "_" + u;
+          line(useWriter, useId, use[0], use[1], use[2], "Product " + (i + 1) + " unit", "Generic " + (i + 1),
+              labelerName, date("yyyyMMdd"), "", "VIAL", "GTIN" + i + "_" + u, cvx, "Vaccine", " ", use[3],
+              date("yyyy-MM-dd hh:mm:ss"), "GTIN" + i + "_" + u);
+          line(linkWriter, "L" + i + "_" + u, "S" + i, useId, mvx);
+          recordCount += 2;
+          keep(useCodeset, use[3], "Product " + (i + 1) + " unit", ndc(ndcCount + i, 1 + u)[3]);
+        }
+      }
+    }
+    codesetIO.marshal(saleCodeset, new File(setLocationFile, "Vaccination NDC Code Unit-of-Sale.xml"));
+    codesetIO.marshal(useCodeset, new File(setLocationFile, "Vaccination NDC Code Unit-of-Use.xml"));
+  }
+
+  private void writeLotNumberPatterns(File setLocationFile, CodesetIO codesetIO) throws JAXBException {
+    Codeset codeset = createCodeset("Vaccination Lot Number Pattern", CodesetType.LOT_NUMBER_PATTERN);
+    for (int i = 0; i < mvxCount; i += 2) {
+      char first = (char) ('A' + i % 26);
+      char second = (char) ('A' + i / 26 % 26);
+      Code code = addCode(codeset, "^" + first + second + "\\d{" + (4 + i % 3) + "}$", "Lots of " + mvx(i));
+      addLink(code, CodesetType.MVX, mvx(i));
+    }
+    codesetIO.marshal(codeset, new File(setLocationFile, "Vaccination Lot Number Pattern.xml"));
+  }
+
+  public static void main(String[] args) throws IOException, JAXBException {
+    String baseLocationString = DEFAULT_CODEBASE_LOCATION;
+    long seed = 1;
+    Double scale = null;
+    Integer fanOut = null;
+    Double skew = null;
+    for (String arg : args) {
+      if (arg.startsWith(OPTION_SCALE)) {
+        scale = Double.parseDouble(arg.substring(OPTION_SCALE.length()));
+      } else if (arg.startsWith(OPTION_SEED)) {
+        seed = Long.parseLong(arg.substring(OPTION_SEED.length()));
+      } else if (arg.startsWith(OPTION_FAN_OUT)) {
+        fanOut = Integer.parseInt(arg.substring(OPTION_FAN_OUT.length()));
+      } else if (arg.startsWith(OPTION_SKEW)) {
+        skew = Double.parseDouble(arg.substring(OPTION_SKEW.length()));
+      } else {
+        baseLocationString = arg;
+      }
+    }
+    SyntheticCdcSource source = new SyntheticCdcSource(seed);
+    if (scale != null) {
+      source.setScale(scale);
+    }
+    if (fanOut != null) {
+      source.setFanOut(fanOut);
+    }
+    if (skew != null) {
+      source.setSkew(skew);
+    }
+    File baseLocationFile = new File(baseLocationString);
+    long start = System.currentTimeMillis();
+    source.write(baseLocationFile);
+    System.out.println("Wrote " + source.getRecordCount() + " source records to " + baseLocationFile.getCanonicalPath()
+        + " in " + (System.currentTimeMillis() - start) + " ms");
+  }
+}
@@ -1,44 +1,36 @@
 package org.openimmunizationsoftware.dqa.codebase.util;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
 import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code;
-import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code.Reference;
-import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code.Reference.LinkTo;
 import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code.UseDate;
 import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.ObjectFactory;
-import org.w3c.dom.DOMException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 public class UpdateFromCDCSource
 {
@@ -66,17 +58,57 @@ public class UpdateFromCDCSource
 
   private static final String CODE_SET_UNIT_OF_USE_LABEL = "Vaccination NDC for Unit-of-Use";
   private static final String CODE_SET_UNIT_OF_SALE_LABEL = "Vaccination NDC for Unit-of-Sale";
-  private static final String CODE_SET_UNIT_OF_USE_TYPE = "VACCINATION_NDC_CODE_UNIT_OF_USE";
-  private static final String CODE_SET_UNIT_OF_SALE_TYPE = "VACCINATION_NDC_CODE_UNIT_OF_SALE";
-  private static final String CODE_SET_CVX = "VACCINATION_CVX_CODE";
-  private static final String CODE_SET_MVX = "VACCINATION_MANUFACTURER_CODE";
-  private static final String CODE_SET_VACCINE_GROUP = "VACCINE_GROUP";
-  private static final String CODE_SET_VACCINATION_VIS_DOC_TYPE = "VACCINATION_VIS_DOC_TYPE";
-  private static final String CODE_SET_VACCINATION_VIS_VACCINES = "VACCINATION_VIS_VACCINES";
-  private static final String CODE_SET_LOT_NUMBER_PATTERN = "VACCINATION_LOT_NUMBER_PATTERN";
 
   public static final String DEFAULT_CODEBASE_LOCATION = "../codebase";
 
+  /**
+   * Memory map the NDC files and parse them in parallel chunks instead of
+   * reading them line by line.
+   */
+  public static final String OPTION_MAPPED_NDC = "-mapped";
+
+  /**
+   * Run the update steps one at a time instead of running independent steps
+   * at the same time.
+   */
+  public static final String OPTION_SERIAL = "-serial";
+
+  /**
+   * Only rerun the steps whose source files or codesets have changed since the
+   * last run, going by the digests kept in the manifest, and only cross link
+   * out from the codesets that may have changed. The manifest is only read
+   * and written in this mode.
+   */
+  public static final String OPTION_INCREMENTAL = "-incremental";
+
+  /**
+   * Keep the incremental manifest in this file instead of
+   * update-manifest.properties in the cdc source location.
+   */
+  public static final String OPTION_MANIFEST = "-manifest=";
+
+  /**
+   * Write the JSON run report to this file. No report is written without
+   * this option.
+   */
+  public static final String OPTION_REPORT = "-report=";
+
+  private static final String MANIFEST_FILENAME = "update-manifest.properties";
+  private static final String SOURCE_KEY = "source.";
+  private static final String SET_KEY = "set.";
+
+  private static final String STEP_NDC = "NDC";
+  private static final String STEP_VACCINE_GROUP = "Vaccine Group";
+  private static final String STEP_CVX = "CVX";
+  private static final String STEP_CPT = "CPT";
+  private static final String STEP_VIS = "VIS";
+  private static final String STEP_MVX = "MVX";
+  private static final String STEP_TRADENAME = "Tradename";
+  private static final String STEP_LOT_NUMBER = "Lot Number";
+  private static final String STEP_CROSS_LINK = "Cross Link";
+  private static final String PHASE_WRITE = "Write";
+  private static final int STEP_THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
   private File baseLocationFile;
   private File setLocationFile;
   private File cdcSourceLocationFile;
@@ -89,11 +121,32 @@ public class UpdateFromCDCSource
   private File cvxvisFile;
   private File mvxFile;
   private File tradenameFile;
+  private boolean mappedNdc = false;
+  private boolean serial = false;
+  private boolean incremental = false;
+  private File manifestFile;
+  private File reportFile;
+  private CodesetIO codesetIO;
+  private CodesetWorkspace workspace;
 
   public UpdateFromCDCSource(String[] args) throws IOException {
     String baseLocationString = DEFAULT_CODEBASE_LOCATION;
-    if (args.length > 0) {
-      baseLocationString = args[0];
+    String reportString = null;
+    String manifestString = null;
+    for (String arg : args) {
+      if (arg.equals(OPTION_MAPPED_NDC)) {
+        mappedNdc = true;
+      } else if (arg.equals(OPTION_SERIAL)) {
+        serial = true;
+      } else if (arg.equals(OPTION_INCREMENTAL)) {
+        incremental = true;
+      } else if (arg.startsWith(OPTION_MANIFEST)) {
+        manifestString = arg.substring(OPTION_MANIFEST.length());
+      } else if (arg.startsWith(OPTION_REPORT)) {
+        reportString = arg.substring(OPTION_REPORT.length());
+      } else {
+        baseLocationString = arg;
+      }
     }
     baseLocationFile = new File(baseLocationString);
     if (!baseLocationFile.exists()) {
@@ -109,6 +162,10 @@ public class UpdateFromCDCSource
       throw new IllegalArgumentException("Can't open cdc source location: " + cdcSourceLocationFile.getCanonicalPath());
     }
 
+    manifestFile = manifestString == null ? new File(cdcSourceLocationFile, MANIFEST_FILENAME)
+        : new File(manifestString);
+    reportFile = reportString == null ? null : new File(reportString);
+
     linkerFile = new File(cdcSourceLocationFile, "NDC_Linker.txt");
     if (!linkerFile.exists()) {
       throw new IllegalArgumentException("Can't open linker file: " + cdcSourceLocationFile.getCanonicalPath());
@@ -124,35 +181,43 @@ public class UpdateFromCDCSource
       throw new IllegalArgumentException("Can't open Unit of Use file: " + unitUseFile.getCanonicalPath());
     }
 
-    cvxFile = new File(cdcSourceLocationFile, "cvx.xml");
+    cvxFile = new File(cdcSourceLocationFile, CVX_SOURCE.getFilename());
     if (!cvxFile.exists()) {
       throw new IllegalArgumentException("Can't open CVX file: " + cvxFile.getCanonicalPath());
     }
 
-    vac2vgFile = new File(cdcSourceLocationFile, "vac2vg.xml");
+    vac2vgFile = new File(cdcSourceLocationFile, VAC2VG_SOURCE.getFilename());
     if (!vac2vgFile.exists()) {
       throw new IllegalArgumentException("Can't open Vac 2 Vaccine Group file: " + vac2vgFile.getCanonicalPath());
     }
 
-    cptFile = new File(cdcSourceLocationFile, "cpt.xml");
+    cptFile = new File(cdcSourceLocationFile, CPT_SOURCE.getFilename());
     if (!cptFile.exists()) {
       throw new IllegalArgumentException("Can't open CPT file: " + cptFile.getCanonicalPath());
     }
 
-    cvxvisFile = new File(cdcSourceLocationFile, "cvxvis.xml");
+    cvxvisFile = new File(cdcSourceLocationFile, CVXVIS_SOURCE.getFilename());
     if (!cvxvisFile.exists()) {
       throw new IllegalArgumentException("Can't open CVX VIS file: " + cvxvisFile.getCanonicalPath());
     }
 
-    mvxFile = new File(cdcSourceLocationFile, "mvx.xml");
+    mvxFile = new File(cdcSourceLocationFile, MVX_SOURCE.getFilename());
     if (!mvxFile.exists()) {
       throw new IllegalArgumentException("Can't open MVX file: " + mvxFile.getCanonicalPath());
     }
 
-    tradenameFile = new File(cdcSourceLocationFile, "tradename.xml");
+    tradenameFile = new File(cdcSourceLocationFile, TRADENAME_SOURCE.getFilename());
     if (!tradenameFile.exists()) {
       throw new IllegalArgumentException("Can't open Tradename file: " + tradenameFile.getCanonicalPath());
     }
+
+    try {
+      codesetIO = new CodesetIO(new StringPool());
+    } catch (JAXBException e) {
+      throw new IllegalStateException("Unable to create JAXB context for codesets", e);
+    }
+    System.out.println("Created JAXB context in " + codesetIO.getContextCreationMillis() + " ms");
+    workspace = new CodesetWorkspace(setLocationFile, codesetIO);
   }
 
   public static void main(String[] args) throws IOException {
@@ -183,220 +248,325 @@ public class UpdateFromCDCSource
 
   private Map<String, List<Codeset.Code>> cvxToVaccineGroupListMap = new HashMap<>();
 
+  private static class UpdateStep
+  {
+    private final String name;
+    private final StepScheduler.Step step;
+    private final File[] sourceFiles;
+    private final String[] setFilenames;
+    private String[] dependsOn = {};
+
+    private UpdateStep(String name, StepScheduler.Step step, File[] sourceFiles, String... setFilenames) {
+      this.name = name;
+      this.step = step;
+      this.sourceFiles = sourceFiles;
+      this.setFilenames = setFilenames;
+    }
+
+    private UpdateStep dependsOn(String... dependsOn) {
+      this.dependsOn = dependsOn;
+      return this;
+    }
+  }
+
+  /**
+   * Runs the update and, if a report file was given, writes the run report
+   * whether or not the update succeeded.
+   */
   public void go() throws IOException {
-    {
-      readLinkFile();
+    RunReport report = new RunReport();
+    report.setAttribute("location", baseLocationFile.getCanonicalPath());
+    report.setAttribute("mapped", mappedNdc);
+    report.setAttribute("serial", serial);
+    report.setAttribute("incremental", incremental);
+    Throwable failure = null;
+    try {
+      update(report);
+    } catch (IOException | RuntimeException | Error e) {
+      failure = e;
+      throw e;
+    } finally {
+      report.finish(failure);
+      if (reportFile != null) {
+        try {
+          report.write(reportFile);
+          out().println("Wrote run report to " + reportFile.getPath());
+        } catch (IOException e) {
+          err().println("Unable to write run report to " + reportFile.getPath() + ": " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  private void update(RunReport report) throws IOException {
+    // each step only changes its own codesets, so only CVX, which links to
+    // the vaccine groups read before it, and the cross linking, which reads
+    // every codeset, have to wait for other steps
+    List<UpdateStep> updateStepList = new ArrayList<>();
+    updateStepList.add(new UpdateStep(STEP_NDC, this::updateNdc, new File[] { linkerFile, unitSaleFile, unitUseFile },
+        VACCINATION_NDC_CODE_UNIT_OF_SALE_XML, VACCINATION_NDC_CODE_UNIT_OF_USE_XML));
+    updateStepList.add(new UpdateStep(STEP_VACCINE_GROUP, this::updateVaccineGroup, new File[] { vac2vgFile },
+        VACCINE_GROUP_XML));
+    updateStepList.add(new UpdateStep(STEP_CVX, this::updateCvx, new File[] { cvxFile, vac2vgFile },
+        VACCINATION_CVX_CODE_XML).dependsOn(STEP_VACCINE_GROUP));
+    updateStepList.add(new UpdateStep(STEP_CPT, this::updateCpt, new File[] { cptFile }, VACCINATION_CPT_CODE_XML));
+    updateStepList.add(new UpdateStep(STEP_VIS, this::updateVis, new File[] { cvxvisFile },
+        VACCINATION_VIS_DOC_TYPE_XML, VACCINATION_VIS_VACCINES_XML));
+    updateStepList.add(new UpdateStep(STEP_MVX, this::updateMvx, new File[] { mvxFile },
+        VACCINATION_MANUFACTURER_CODE_XML));
+    updateStepList.add(new UpdateStep(STEP_TRADENAME, this::updateTradename, new File[] { tradenameFile },
+        VACCINATION_VACCINATION_TRADE_NAME_XML));
+    updateStepList.add(new UpdateStep(STEP_LOT_NUMBER, this::verifyLotNumberPatterns, new File[] {},
+        VACCINATION_LOT_NUMBER_PATTERN_XML));
+
+    ContentManifest manifest = incremental ? new ContentManifest(manifestFile) : null;
+    Set<String> runSet = new HashSet<>();
+    for (UpdateStep updateStep : updateStepList) {
+      if (!incremental || hasChanged(manifest, updateStep)) {
+        runSet.add(updateStep.name);
+      }
+    }
+    if (runSet.contains(STEP_CVX)) {
+      // CVX links to the vaccine groups as they are read
+      runSet.add(STEP_VACCINE_GROUP);
+    }
+
+    StepScheduler scheduler = new StepScheduler();
+    List<String> stepNameList = new ArrayList<>();
+    Set<String> changedSetFilenameSet = new LinkedHashSet<>();
+    for (UpdateStep updateStep : updateStepList) {
+      if (!runSet.contains(updateStep.name)) {
+        out().println("Skipping " + updateStep.name + ", nothing it reads has changed");
+        continue;
+      }
+      List<String> dependsOnList = new ArrayList<>();
+      for (String dependsOn : updateStep.dependsOn) {
+        if (runSet.contains(dependsOn)) {
+          dependsOnList.add(dependsOn);
+        }
+      }
+      scheduler.add(updateStep.name, updateStep.step, dependsOnList.toArray(new String[0]));
+      stepNameList.add(updateStep.name);
+      changedSetFilenameSet.addAll(Arrays.asList(updateStep.setFilenames));
+    }
+    if (incremental) {
+      for (String filename : ALL_XML) {
+        if (!manifest.isUnchanged(SET_KEY + filename, new File(setLocationFile, filename))) {
+          changedSetFilenameSet.add(filename);
+        }
+      }
+      if (changedSetFilenameSet.isEmpty()) {
+        out().println("Skipping " + STEP_CROSS_LINK + ", no codeset has changed");
+      } else {
+        scheduler.add(STEP_CROSS_LINK, () -> crossLink(changedSetFilenameSet), stepNameList.toArray(new String[0]));
+      }
+    } else {
+      scheduler.add(STEP_CROSS_LINK, () -> crossLink(null), stepNameList.toArray(new String[0]));
+    }
 
-      Codeset codesetUnitOfSale = readCodsetUnitOfSale(codeMapOuter);
-      Codeset codesetUnitOfUse = readCodsetUnitOfUse(codeMapInner);
+    ExecutorService executor = Executors.newFixedThreadPool(serial ? 1 : STEP_THREADS);
+    try {
+      scheduler.run(executor);
+    } finally {
+      executor.shutdown();
+      for (UpdateStep updateStep : updateStepList) {
+        addPhase(report, scheduler, updateStep.name, runSet.contains(updateStep.name));
+      }
+      addPhase(report, scheduler, STEP_CROSS_LINK, !incremental || !changedSetFilenameSet.isEmpty());
+    }
+    long writeStartMillis = report.getElapsedMillis();
+    long writeStartCpuNanos = StepScheduler.threadCpuNanos();
+    long bytesWritten = workspace.getBytesWritten();
+    int writeCount = workspace.getWriteCount();
+
+    out().println("Writing changed codesets");
+    for (String filename : workspace.flush()) {
+      out().println("  + Wrote " + filename);
+    }
+    out().println("  + Read " + workspace.getReadCount() + " and wrote " + workspace.getWriteCount()
+        + " codeset files, " + workspace.getUnchangedCount() + " were already up to date");
+    StringPool stringPool = codesetIO.getStringPool();
+    out().println("  + Pooled " + stringPool.size() + " strings, dropped " + stringPool.getDuplicateCount()
+        + " copies, saved about " + stringPool.getBytesSaved() / 1024 + " KB");
+
+    if (incremental) {
+      // only reached when every changed codeset was written, otherwise the
+      // next run would take a file that failed to write as up to date
+      for (UpdateStep updateStep : updateStepList) {
+        for (File sourceFile : updateStep.sourceFiles) {
+          manifest.record(SOURCE_KEY + sourceFile.getName(), sourceFile);
+        }
+      }
+      for (String filename : ALL_XML) {
+        manifest.record(SET_KEY + filename, new File(setLocationFile, filename));
+      }
+      manifest.save();
+    }
+    report.addPhase(PHASE_WRITE, StepScheduler.STATUS_DONE, writeStartMillis,
+        report.getElapsedMillis() - writeStartMillis, StepScheduler.cpuMillisSince(writeStartCpuNanos))
+        .count(RunReport.CODESETS_WRITTEN, workspace.getWriteCount() - writeCount)
+        .count(RunReport.BYTES_WRITTEN, workspace.getBytesWritten() - bytesWritten);
+  }
 
-      linkUnitOfSale();
-      linkUnitOfUse();
+  private static void addPhase(RunReport report, StepScheduler scheduler, String name, boolean scheduled) {
+    if (scheduled) {
+      report.addStep(scheduler, name);
+    } else {
+      report.addPhase(name, StepScheduler.STATUS_SKIPPED, 0, 0, 0);
+    }
+  }
 
-      saveCodeSet(codesetUnitOfSale, VACCINATION_NDC_CODE_UNIT_OF_SALE_XML);
-      saveCodeSet(codesetUnitOfUse, VACCINATION_NDC_CODE_UNIT_OF_USE_XML);
+  private boolean hasChanged(ContentManifest manifest, UpdateStep updateStep) throws IOException {
+    for (File sourceFile : updateStep.sourceFiles) {
+      if (!manifest.isUnchanged(SOURCE_KEY + sourceFile.getName(), sourceFile)) {
+        return true;
+      }
     }
+    for (String filename : updateStep.setFilenames) {
+      if (!manifest.isUnchanged(SET_KEY + filename, new File(setLocationFile, filename))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void updateNdc() throws IOException {
+    readLinkFile();
 
-    updateVaccineGroup();
-    updateCvx();
-    updateCpt();
-    updateVis();
-    updateMvx();
-    updateTradename();
-    verifyLotNumberPatterns();
+    IndexedCodeset codesetUnitOfSale = readCodsetUnitOfSale(codeMapOuter);
+    IndexedCodeset codesetUnitOfUse = readCodsetUnitOfUse(codeMapInner);
 
-    crossLink();
+    linkUnitOfSale(codesetUnitOfSale);
+    linkUnitOfUse(codesetUnitOfUse);
+
+    workspace.markChanged(VACCINATION_NDC_CODE_UNIT_OF_SALE_XML);
+    workspace.markChanged(VACCINATION_NDC_CODE_UNIT_OF_USE_XML);
   }
 
   private void updateCvx() throws IOException {
-    System.out.println("CVX");
+    out().println("CVX");
     ObjectFactory objectFactory = new ObjectFactory();
     String filename = VACCINATION_CVX_CODE_XML;
-    Codeset codeset = unmarshalCodeset(filename);
+    IndexedCodeset codeset = workspace.get(filename);
     int countTotal = codeset.getCode().size();
     int countAdded = 0;
     if (codeset != null) {
 
-      try {
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dbBuilder = dbFactory.newDocumentBuilder();
-        Document doc = dbBuilder.parse(cvxFile);
-        doc.getDocumentElement().normalize();
-        NodeList n0List = doc.getElementsByTagName("CVXCodes");
-        for (int level0 = 0; level0 < n0List.getLength(); level0++) {
-          Node n1Node = n0List.item(level0);
-          NodeList n1List = n1Node.getChildNodes();
-          for (int level1 = 0; level1 < n1List.getLength(); level1++) {
-            Node n2Node = n1List.item(level1);
-            if (n2Node.getNodeName().equals("CVXInfo")) {
-              NodeList n2List = n2Node.getChildNodes();
-              String shortDescription = "";
-              String fullVaccinename = "";
-              String cvxCode = "";
-              String notes = "";
-              String status = "";
-              Date lastUpdate = null;
-              for (int level2 = 0; level2 < n2List.getLength(); level2++) {
-                Node n3Node = n2List.item(level2);
-                if (n3Node.getNodeName().equals("ShortDescription")) {
-                  shortDescription = clean(n3Node.getTextContent().trim());
-                } else if (n3Node.getNodeName().equals("FullVaccinename")) {
-                  fullVaccinename = clean(n3Node.getTextContent().trim());
-                } else if (n3Node.getNodeName().equals("CVXCode")) {
-                  cvxCode = clean(n3Node.getTextContent().trim());
-                } else if (n3Node.getNodeName().equals("Notes")) {
-                  notes = clean(n3Node.getTextContent().trim());
-                } else if (n3Node.getNodeName().equals("Status")) {
-                  status = clean(n3Node.getTextContent().trim());
-                } else if (n3Node.getNodeName().equals("LastUpdated")) {
-                  lastUpdate = readDate(n3Node);
-                }
+      try (CdcRecordReader record = new CdcRecordReader(cvxFile, CVX_SOURCE)) {
+        while (record.next()) {
+          String shortDescription = record.get(CVX_SHORT_DESCRIPTION, "");
+          String fullVaccinename = record.get(CVX_FULL_VACCINE_NAME, "");
+          String cvxCode = record.get(CVX_CVX_CODE, "");
+          String notes = record.get(CVX_NOTES, "");
+          String status = record.get(CVX_STATUS, "");
+          Date lastUpdate = readDate(record.get(CVX_LAST_UPDATED));
+          if (!cvxCode.equals("")) {
+            Codeset.Code c = codeset.getOrCreate(cvxCode);
+            if (isEmpty(c.getLabel())) {
+              c.setLabel(shortDescription);
+            }
+            if (isEmpty(c.getDescription())) {
+              c.setDescription(fullVaccinename);
+              if (notes.length() > 0) {
+                c.setDescription(c.getDescription() + " Notes: " + notes);
               }
-              if (!cvxCode.equals("")) {
-                Codeset.Code c = getOrCreateCode(codeset, cvxCode);
-                if (isEmpty(c.getLabel())) {
-                  c.setLabel(shortDescription);
-                }
-                if (isEmpty(c.getDescription())) {
-                  c.setDescription(fullVaccinename);
-                  if (notes.length() > 0) {
-                    c.setDescription(c.getDescription() + " Notes: " + notes);
-                  }
-                }
-                if (c.getCodeStatus() == null) {
-                  c.setCodeStatus(new Codeset.Code.CodeStatus());
-                }
-                if (c.getCodeStatus().getStatus() == null) {
-                  c.getCodeStatus().setStatus("Valid");
-                }
-                if (c.getConceptType() == null) {
-                  if (status.equals("Never Active")) {
-                    c.setConceptType("never active");
-                  } else if (status.equals("Pending")) {
-                    c.setConceptType("pending");
-                  } else if (status.equals("Non-US")) {
-                    c.setConceptType("foreign vaccine");
-                  } else {
-                    c.setConceptType("vaccine");
-                  }
-                }
-
-                List<Codeset.Code> codeList = cvxToVaccineGroupListMap.get(cvxCode);
-                if (codeList != null && codeList.size() > 0) {
-                  Reference reference = getReference(objectFactory, c);
-                  for (Codeset.Code code : codeList) {
-                    boolean found = false;
-                    for (LinkTo linkTo : reference.getLinkTo()) {
-                      if (linkTo.getCodeset().equals(CODE_SET_VACCINE_GROUP)
-                          && linkTo.getValue().equals(code.getValue())) {
-                        found = true;
-                      }
-                    }
-                    if (!found) {
-                      LinkTo linkTo = objectFactory.createCodesetCodeReferenceLinkTo();
-                      reference.getLinkTo().add(linkTo);
-                      linkTo.setCodeset(CODE_SET_VACCINE_GROUP);
-                      linkTo.setValue(code.getValue());
-                    }
-                  }
-                }
-
-                setUseDateBasedOnStatus(objectFactory, status, lastUpdate, c);
+            }
+            if (c.getCodeStatus() == null) {
+              c.setCodeStatus(new Codeset.Code.CodeStatus());
+            }
+            if (c.getCodeStatus().getStatus() == null) {
+              c.getCodeStatus().setStatus("Valid");
+            }
+            if (c.getConceptType() == null) {
+              if (status.equals("Never Active")) {
+                c.setConceptType("never active");
+              } else if (status.equals("Pending")) {
+                c.setConceptType("pending");
+              } else if (status.equals("Non-US")) {
+                c.setConceptType("foreign vaccine");
+              } else {
+                c.setConceptType("vaccine");
               }
+            }
 
+            List<Codeset.Code> codeList = cvxToVaccineGroupListMap.get(cvxCode);
+            if (codeList != null && codeList.size() > 0) {
+              LinkIndex linkIndex = codeset.getLinkIndex(c);
+              for (Codeset.Code code : codeList) {
+                linkIndex.add(CodesetType.VACCINE_GROUP, code.getValue());
+              }
             }
+
+            setUseDateBasedOnStatus(objectFactory, status, lastUpdate, c);
           }
         }
-      } catch (ParserConfigurationException | SAXException e) {
+        countSource(cvxFile, record.getRecordCount());
+      } catch (XMLStreamException e) {
         e.printStackTrace();
       }
 
-      marshalCodeset(codeset, filename);
+      workspace.markChanged(filename);
     }
     countAdded = codeset.getCode().size() - countTotal;
+    count(RunReport.CODES_ADDED, countAdded);
     countTotal = codeset.getCode().size();
-    System.out.println("  + Added:   " + countAdded);
-    System.out.println("  + Total:   " + countTotal);
+    out().println("  + Added:   " + countAdded);
+    out().println("  + Total:   " + countTotal);
   }
 
   private void updateMvx() throws IOException {
-    System.out.println("MVX");
+    out().println("MVX");
     ObjectFactory objectFactory = new ObjectFactory();
     String filename = VACCINATION_MANUFACTURER_CODE_XML;
-    Codeset codeset = unmarshalCodeset(filename);
+    IndexedCodeset codeset = workspace.get(filename);
     int countTotal = codeset.getCode().size();
     int countAdded = 0;
     boolean updated = false;
     if (codeset != null) {
-      try {
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dbBuilder = dbFactory.newDocumentBuilder();
-        Document doc = dbBuilder.parse(mvxFile);
-        doc.getDocumentElement().normalize();
-        NodeList n0List = doc.getElementsByTagName("MVXCodes");
-        for (int level0 = 0; level0 < n0List.getLength(); level0++) {
-          Node n1Node = n0List.item(level0);
-          NodeList n1List = n1Node.getChildNodes();
-          for (int level1 = 0; level1 < n1List.getLength(); level1++) {
-            Node n2Node = n1List.item(level1);
-            if (n2Node.getNodeName().equals("MVXInfo")) {
-              NodeList n2List = n2Node.getChildNodes();
-              String mvxCode = "";
-              String manufacturerName = "";
-              String notes = "";
-              String status = "";
-              Date lastUpdate = null;
-              for (int level2 = 0; level2 < n2List.getLength(); level2++) {
-                Node n3Node = n2List.item(level2);
-                if (n3Node.getNodeName().equals("ManufacturerName")) {
-                  manufacturerName = clean(n3Node.getTextContent().trim());
-                } else if (n3Node.getNodeName().equals("MVX_CODE")) {
-                  mvxCode = clean(n3Node.getTextContent().trim());
-                } else if (n3Node.getNodeName().equals("Notes")) {
-                  notes = clean(n3Node.getTextContent().trim());
-                } else if (n3Node.getNodeName().equals("Status")) {
-                  status = clean(n3Node.getTextContent().trim());
-                } else if (n3Node.getNodeName().equals("LastUpdated")) {
-                  lastUpdate = readDate(n3Node);
-                }
-              }
-              if (!mvxCode.equals("")) {
-                Codeset.Code c = getOrCreateCode(codeset, mvxCode);
-                if (isEmpty(c.getLabel())) {
-                  c.setLabel(manufacturerName);
-                  updated = true;
-                }
-                if (isEmpty(c.getDescription())) {
-                  c.setDescription(notes);
-                  updated = true;
-                }
-                if (c.getCodeStatus() == null) {
-                  c.setCodeStatus(new Codeset.Code.CodeStatus());
-                }
-                if (c.getCodeStatus().getStatus() == null) {
-                  c.getCodeStatus().setStatus("Valid");
-                  updated = true;
-                }
-                if (setUseDateBasedOnStatus(objectFactory, status, lastUpdate, c)) {
-                  updated = true;
-                }
-              }
+      try (CdcRecordReader record = new CdcRecordReader(mvxFile, MVX_SOURCE)) {
+        while (record.next()) {
+          String mvxCode = record.get(MVX_MVX_CODE, "");
+          String manufacturerName = record.get(MVX_MANUFACTURER_NAME, "");
+          String notes = record.get(MVX_NOTES, "");
+          String status = record.get(MVX_STATUS, "");
+          Date lastUpdate = readDate(record.get(MVX_LAST_UPDATED));
+          if (!mvxCode.equals("")) {
+            Codeset.Code c = codeset.getOrCreate(mvxCode);
+            if (isEmpty(c.getLabel())) {
+              c.setLabel(manufacturerName);
+              updated = true;
+            }
+            if (isEmpty(c.getDescription())) {
+              c.setDescription(notes);
+              updated = true;
+            }
+            if (c.getCodeStatus() == null) {
+              c.setCodeStatus(new Codeset.Code.CodeStatus());
+            }
+            if (c.getCodeStatus().getStatus() == null) {
+              c.getCodeStatus().setStatus("Valid");
+              updated = true;
+            }
+            if (setUseDateBasedOnStatus(objectFactory, status, lastUpdate, c)) {
+              updated = true;
             }
           }
         }
-      } catch (ParserConfigurationException | SAXException e) {
+        countSource(mvxFile, record.getRecordCount());
+      } catch (XMLStreamException e) {
         e.printStackTrace();
       }
 
       if (updated || codeset.getCode().size() > countTotal) {
-        marshalCodeset(codeset, filename);
+        workspace.markChanged(filename);
       }
 
     }
     countAdded = codeset.getCode().size() - countTotal;
+    count(RunReport.CODES_ADDED, countAdded);
     countTotal = codeset.getCode().size();
-    System.out.println("  + Added:   " + countAdded);
-    System.out.println("  + Total:   " + countTotal);
+    out().println("  + Added:   " + countAdded);
+    out().println("  + Total:   " + countTotal);
   }
 
   private boolean setUseDateBasedOnStatus(ObjectFactory objectFactory, String status, Date lastUpdate, Codeset.Code c) {
@@ -418,10 +588,6 @@ public class UpdateFromCDCSource
     return false;
   }
 
-  private Date readDate(Node n3Node) {
-    return readDate(clean(n3Node.getTextContent().trim()));
-  }
-
   private Date readDate(String value) {
     if (isEmpty(value)) {
       return null;
@@ -430,334 +596,228 @@ public class UpdateFromCDCSource
     Date date = null;
     try {
       date = sdf.parse(value);
-    } catch (DOMException | ParseException e) {
+    } catch (ParseException e) {
       e.printStackTrace();
     }
     return date;
   }
 
   private void updateVaccineGroup() throws IOException {
-    System.out.println("Vaccine Group");
+    out().println("Vaccine Group");
     String filename = VACCINE_GROUP_XML;
-    Codeset codeset = unmarshalCodeset(filename);
+    IndexedCodeset codeset = workspace.get(filename);
     int countTotal = codeset.getCode().size();
     int countAdded = 0;
     boolean updated = false;
     if (codeset != null) {
-      try {
-        ObjectFactory objectFactory = new ObjectFactory();
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dbBuilder = dbFactory.newDocumentBuilder();
-        Document doc = dbBuilder.parse(vac2vgFile);
-        doc.getDocumentElement().normalize();
-        NodeList n0List = doc.getElementsByTagName("VGCodes");
-        for (int level0 = 0; level0 < n0List.getLength(); level0++) {
-          Node n1Node = n0List.item(level0);
-          NodeList n1List = n1Node.getChildNodes();
-          for (int level1 = 0; level1 < n1List.getLength(); level1++) {
-            Node n2Node = n1List.item(level1);
-            if (n2Node.getNodeName().equals("CVXVGInfo")) {
-              NodeList n2List = n2Node.getChildNodes();
-              Map<String, String> nameValueMap = readNameValueMap(n2List);
-              String shortDescription = nameValueMap.get("ShortDescription");
-              String cvxCode = nameValueMap.get("CVXCode");
-              // String status = nameValueMap.get("Status");
-              String vaccineGroupName = nameValueMap.get("Vaccine Group Name");
-              String cvxForVaccineGroup = nameValueMap.get("CVX for Vaccine Group");
-              Codeset.Code c = getOrCreateCode(codeset, vaccineGroupName);
-
-              if (isEmpty(c.getLabel())) {
-                c.setLabel(shortDescription);
-                updated = true;
-              }
+      try (CdcRecordReader record = new CdcRecordReader(vac2vgFile, VAC2VG_SOURCE)) {
+        while (record.next()) {
+          String shortDescription = record.get(VAC2VG_SHORT_DESCRIPTION);
+          String cvxCode = record.get(VAC2VG_CVX_CODE);
+          String vaccineGroupName = record.get(VAC2VG_VACCINE_GROUP_NAME);
+          String cvxForVaccineGroup = record.get(VAC2VG_CVX_FOR_VACCINE_GROUP);
+          Codeset.Code c = codeset.getOrCreate(vaccineGroupName);
+
+          if (isEmpty(c.getLabel())) {
+            c.setLabel(shortDescription);
+            updated = true;
+          }
 
-              Reference reference = getReference(objectFactory, c);
-              boolean found = false;
-              for (LinkTo linkTo : reference.getLinkTo()) {
-                if (linkTo.getCodeset().equals(CODE_SET_CVX) && linkTo.getValue().equals(cvxForVaccineGroup)) {
-                  found = true;
-                }
-              }
-              if (!found) {
-                LinkTo linkTo = objectFactory.createCodesetCodeReferenceLinkTo();
-                reference.getLinkTo().add(linkTo);
-                linkTo.setCodeset(CODE_SET_CVX);
-                linkTo.setValue(cvxForVaccineGroup);
-                updated = true;
-              }
+          if (codeset.getLinkIndex(c).add(CodesetType.CVX, intern(cvxForVaccineGroup))) {
+            updated = true;
+          }
 
-              List<Codeset.Code> codeList = cvxToVaccineGroupListMap.get(cvxCode);
-              if (codeList == null) {
-                codeList = new ArrayList<>();
-                cvxToVaccineGroupListMap.put(cvxCode, codeList);
-              }
-              codeList.add(c);
-            }
+          List<Codeset.Code> codeList = cvxToVaccineGroupListMap.get(cvxCode);
+          if (codeList == null) {
+            codeList = new ArrayList<>();
+            cvxToVaccineGroupListMap.put(cvxCode, codeList);
           }
+          codeList.add(c);
         }
 
-      } catch (ParserConfigurationException | SAXException e) {
+        countSource(vac2vgFile, record.getRecordCount());
+      } catch (XMLStreamException e) {
         e.printStackTrace();
       }
       if (updated || codeset.getCode().size() > countTotal) {
-        marshalCodeset(codeset, filename);
+        workspace.markChanged(filename);
       }
       countAdded = codeset.getCode().size() - countTotal;
+      count(RunReport.CODES_ADDED, countAdded);
       countTotal = codeset.getCode().size();
-      System.out.println("  + Added:   " + countAdded);
-      System.out.println("  + Total:   " + countTotal);
+      out().println("  + Added:   " + countAdded);
+      out().println("  + Total:   " + countTotal);
     }
   }
 
   private void updateCpt() throws IOException {
-    System.out.println("CPT");
+    out().println("CPT");
     String filename = VACCINATION_CPT_CODE_XML;
-    Codeset codeset = unmarshalCodeset(filename);
+    IndexedCodeset codeset = workspace.get(filename);
     int countTotal = codeset.getCode().size();
     int countAdded = 0;
     int countUpdated = 0;
     if (codeset != null) {
-      try {
-        ObjectFactory objectFactory = new ObjectFactory();
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dbBuilder = dbFactory.newDocumentBuilder();
-        Document doc = dbBuilder.parse(cptFile);
-        doc.getDocumentElement().normalize();
-        NodeList n0List = doc.getElementsByTagName("CPTCodes");
-        for (int level0 = 0; level0 < n0List.getLength(); level0++) {
-          Node n1Node = n0List.item(level0);
-          NodeList n1List = n1Node.getChildNodes();
-          for (int level1 = 0; level1 < n1List.getLength(); level1++) {
-            Node n2Node = n1List.item(level1);
-            if (n2Node.getNodeName().equals("CPTInfo")) {
-              boolean updated = false;
-              NodeList n2List = n2Node.getChildNodes();
-              Map<String, String> nameValueMap = readNameValueMap(n2List);
-              String cptCode = nameValueMap.get("CPT Code");
-              String cptDesc = nameValueMap.get("CPT Desc");
-              // String status = nameValueMap.get("Status");
-              String comments = nameValueMap.get("Comments");
-              // String vaccineName = nameValueMap.get("Vaccine
-              // Name");
-              String cvxCode = nameValueMap.get("CVX Code");
-              // String lastUpdated =
-              // nameValueMap.get("LastUpdated");
-              Codeset.Code c = getOrCreateCode(codeset, cptCode);
-
-              if (isEmpty(c.getLabel())) {
-                c.setLabel(cptDesc);
-              }
-              if (isEmpty(c.getDescription())) {
-                c.setDescription(comments);
-                updated = true;
-              }
-              if (c.getCodeStatus() == null) {
-                c.setCodeStatus(objectFactory.createCodesetCodeCodeStatus());
-                updated = true;
-              }
-              if (isEmpty(c.getCodeStatus().getStatus())) {
-                c.getCodeStatus().setStatus("Valid");
-                updated = true;
-              }
+      ObjectFactory objectFactory = new ObjectFactory();
+      try (CdcRecordReader record = new CdcRecordReader(cptFile, CPT_SOURCE)) {
+        while (record.next()) {
+          boolean updated = false;
+          String cptCode = record.get(CPT_CPT_CODE);
+          String cptDesc = record.get(CPT_CPT_DESC);
+          String comments = record.get(CPT_COMMENTS);
+          String cvxCode = record.get(CPT_CVX_CODE);
+          Codeset.Code c = codeset.getOrCreate(cptCode);
+
+          if (isEmpty(c.getLabel())) {
+            c.setLabel(cptDesc);
+          }
+          if (isEmpty(c.getDescription())) {
+            c.setDescription(comments);
+            updated = true;
+          }
+          if (c.getCodeStatus() == null) {
+            c.setCodeStatus(objectFactory.createCodesetCodeCodeStatus());
+            updated = true;
+          }
+          if (isEmpty(c.getCodeStatus().getStatus())) {
+            c.getCodeStatus().setStatus("Valid");
+            updated = true;
+          }
 
-              updated = updated || setUniqueLink(objectFactory, cvxCode, c, CODE_SET_CVX);
-              if (updated) {
-                countUpdated++;
-              }
-            }
+          if (setUniqueLink(codeset, cvxCode, c, CodesetType.CVX)) {
+            updated = true;
+          }
+          if (updated) {
+            countUpdated++;
           }
         }
 
-      } catch (ParserConfigurationException | SAXException e) {
+        countSource(cptFile, record.getRecordCount());
+      } catch (XMLStreamException e) {
         e.printStackTrace();
       }
 
       countAdded = codeset.getCode().size() - countTotal;
+      count(RunReport.CODES_ADDED, countAdded);
       countTotal = codeset.getCode().size();
       if (countAdded > 0 || countUpdated > 0) {
-        marshalCodeset(codeset, filename);
+        workspace.markChanged(filename);
       }
-      System.out.println("  + Added:   " + countAdded);
-      System.out.println("  + Updated: " + countUpdated);
-      System.out.println("  + Total:   " + countTotal);
+      out().println("  + Added:   " + countAdded);
+      out().println("  + Updated: " + countUpdated);
+      out().println("  + Total:   " + countTotal);
     }
   }
 
   private void updateTradename() throws IOException {
-    System.out.println("Tradename");
+    out().println("Tradename");
     String filename = VACCINATION_VACCINATION_TRADE_NAME_XML;
-    Codeset codeset = unmarshalCodeset(filename);
+    IndexedCodeset codeset = workspace.get(filename);
     int countTotal = codeset.getCode().size();
     int countAdded = 0;
     boolean updated = false;
     if (codeset != null) {
-      try {
-        ObjectFactory objectFactory = new ObjectFactory();
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dbBuilder = dbFactory.newDocumentBuilder();
-        Document doc = dbBuilder.parse(tradenameFile);
-        doc.getDocumentElement().normalize();
-        NodeList n0List = doc.getElementsByTagName("productnames");
-        for (int level0 = 0; level0 < n0List.getLength(); level0++) {
-          Node n1Node = n0List.item(level0);
-          NodeList n1List = n1Node.getChildNodes();
-          for (int level1 = 0; level1 < n1List.getLength(); level1++) {
-            Node n2Node = n1List.item(level1);
-            if (n2Node.getNodeName().equals("prodInfo")) {
-              NodeList n2List = n2Node.getChildNodes();
-              Map<String, String> nameValueMap = readNameValueMap(n2List);
-              String cdcProductName = nameValueMap.get("CDC Product Name");
-              String shortDescription = nameValueMap.get("Short Description");
-              String cvxCode = nameValueMap.get("CVXCode");
-              // String manufacturer =
-              // nameValueMap.get("Manufacturer");
-              String mvxCode = nameValueMap.get("MVX Code");
-              // String mvxStatus = nameValueMap.get("MVX
-              // Status");
-              String productNameStatus = nameValueMap.get("Product name Status");
-              Date lastUpdated = readDate(nameValueMap.get("Last Updated"));
-              Codeset.Code c = getOrCreateCode(codeset, cdcProductName);
-              if (isEmpty(c.getLabel())) {
-                c.setLabel(shortDescription);
-                updated = true;
-              }
-              if (c.getCodeStatus() == null) {
-                c.setCodeStatus(objectFactory.createCodesetCodeCodeStatus());
-              }
-              if (isEmpty(c.getCodeStatus().getStatus())) {
-                c.getCodeStatus().setStatus("Valid");
-                updated = true;
-              }
-              if (setUniqueLink(objectFactory, cvxCode, c, CODE_SET_CVX)) {
-                updated = true;
-              }
-              if (setUniqueLink(objectFactory, mvxCode, c, CODE_SET_MVX)) {
-                updated = true;
-              }
-              if (setUseDateBasedOnStatus(objectFactory, productNameStatus, lastUpdated, c)) {
-                updated = true;
-              }
-            }
+      ObjectFactory objectFactory = new ObjectFactory();
+      try (CdcRecordReader record = new CdcRecordReader(tradenameFile, TRADENAME_SOURCE)) {
+        while (record.next()) {
+          String cdcProductName = record.get(TRADENAME_CDC_PRODUCT_NAME);
+          String shortDescription = record.get(TRADENAME_SHORT_DESCRIPTION);
+          String cvxCode = record.get(TRADENAME_CVX_CODE);
+          String mvxCode = record.get(TRADENAME_MVX_CODE);
+          String productNameStatus = record.get(TRADENAME_PRODUCT_NAME_STATUS);
+          Date lastUpdated = readDate(record.get(TRADENAME_LAST_UPDATED));
+          Codeset.Code c = codeset.getOrCreate(cdcProductName);
+          if (isEmpty(c.getLabel())) {
+            c.setLabel(shortDescription);
+            updated = true;
+          }
+          if (c.getCodeStatus() == null) {
+            c.setCodeStatus(objectFactory.createCodesetCodeCodeStatus());
+          }
+          if (isEmpty(c.getCodeStatus().getStatus())) {
+            c.getCodeStatus().setStatus("Valid");
+            updated = true;
+          }
+          if (setUniqueLink(codeset, cvxCode, c, CodesetType.CVX)) {
+            updated = true;
+          }
+          if (setUniqueLink(codeset, mvxCode, c, CodesetType.MVX)) {
+            updated = true;
+          }
+          if (setUseDateBasedOnStatus(objectFactory, productNameStatus, lastUpdated, c)) {
+            updated = true;
           }
         }
 
-      } catch (ParserConfigurationException | SAXException e) {
+        countSource(tradenameFile, record.getRecordCount());
+      } catch (XMLStreamException e) {
         e.printStackTrace();
       }
       if (updated || codeset.getCode().size() > countTotal) {
-        marshalCodeset(codeset, filename);
+        workspace.markChanged(filename);
       }
       countAdded = codeset.getCode().size() - countTotal;
+      count(RunReport.CODES_ADDED, countAdded);
       countTotal = codeset.getCode().size();
-      System.out.println("  + Added:   " + countAdded);
-      System.out.println("  + Total:   " + countTotal);
+      out().println("  + Added:   " + countAdded);
+      out().println("  + Total:   " + countTotal);
     }
   }
 
-  private void crossLink() {
-    System.out.println("Cross Linking the following:");
+  /**
+   * @param walkFilenameSet
+   *          the codesets to link out from, or null to link out from all of
+   *          them
+   */
+  private void crossLink(Set<String> walkFilenameSet) {
+    out().println("Cross Linking the following:");
     Map<String, String> codesestFilenameMap = new HashMap<>();
-    Map<String, Codeset> codeSetMap = new HashMap<>();
-    Map<String, Map<String, Code>> codesetCodeMap = new HashMap<>();
-    List<Codeset> codesetList = new ArrayList<>();
-    Set<Codeset> codesetChanged = new HashSet<>();
+    List<IndexedCodeset> codesetList = new ArrayList<>();
     for (String filename : ALL_XML) {
-      Codeset codeset = unmarshalCodeset(filename);
-      codesetList.add(codeset);
-      Map<String, Code> codeMap = new HashMap<>();
-      codeSetMap.put(codeset.getType(), codeset);
-      codesetCodeMap.put(codeset.getType(), codeMap);
-      for (Code code : codeset.getCode()) {
-        codeMap.put(code.getValue(), code);
-      }
-      codesestFilenameMap.put(codeset.getType(), filename);
-      codeset.getType();
-      System.out.println("  + " + codeset.getType());
+      IndexedCodeset indexedCodeset = workspace.get(filename);
+      codesetList.add(indexedCodeset);
+      codesestFilenameMap.put(indexedCodeset.getType(), filename);
+      out().println("  + " + indexedCodeset.getType());
     }
-    for (Codeset codeset : codesetList) {
-      System.out.println("Linking out from: " + codeset.getType());
-      int linksExamined = 0;
-      int linksMade = 0;
-      int linksRemoved = 0;
-      for (Code code : codeset.getCode()) {
-        if (code.getReference() != null) {
-          Set<String> alreadySeen = new HashSet<>();
-          for (Iterator<LinkTo> linkToIt = code.getReference().getLinkTo().iterator(); linkToIt.hasNext();) {
-            LinkTo linkTo = linkToIt.next();
-            {
-              String alreadySeenKey = linkTo.getCodeset() + "." + linkTo.getValue();
-              if (alreadySeen.contains(alreadySeenKey)) {
-                System.err.println("  + Link " + alreadySeenKey + " is already mentioned, removing");
-                linkToIt.remove();
-                linksRemoved++;
-                continue;
-              }
-              alreadySeen.add(alreadySeenKey);
-            }
-            linksExamined++;
-            String otherCodesetType = linkTo.getCodeset();
-            Map<String, Code> otherCodeMap = codesetCodeMap.get(otherCodesetType);
-            Codeset otherCodeset = codeSetMap.get(otherCodesetType);
-            if (otherCodeMap == null) {
-              System.err.println("  + Unable to find link to codeset '" + otherCodesetType + "'");
-            } else {
-              if (linkTo.getValue() == null || linkTo.getValue().equals("")) {
-                System.err.println("  + Link has no value in '" + code.getValue() + "'");
-              } else {
-                Code otherCode = otherCodeMap.get(linkTo.getValue());
-                if (otherCode == null) {
-                  System.err
-                      .println("  + Unable to find link from '" + code.getValue() + "' in codeset '" + codeset.getType()
-                          + "' to code '" + linkTo.getValue() + "' in codeset '" + otherCodesetType + "'");
-                  linkToIt.remove();
-                  linksRemoved++;
-                  codesetChanged.add(codeset);
-                } else {
-                  if (otherCode.getReference() == null) {
-                    otherCode.setReference(new Reference());
-                  }
-                  boolean found = false;
-                  String type = codeset.getType();
-                  String value = code.getValue();
-                  for (LinkTo otherLinkTo : otherCode.getReference().getLinkTo()) {
-                    if (otherLinkTo.getCodeset().equals(type) && otherLinkTo.getValue().equals(value)) {
-                      found = true;
-                      break;
-                    }
-                  }
-                  if (!found) {
-                    LinkTo otherLinkTo = new LinkTo();
-                    otherLinkTo.setCodeset(type);
-                    otherLinkTo.setValue(value);
-                    otherCode.getReference().getLinkTo().add(otherLinkTo);
-                    linksMade++;
-                    codesetChanged.add(otherCodeset);
-                  }
-                }
-              }
-            }
-          }
-        }
+    CrossLinker crossLinker = new CrossLinker(codesetList, err());
+    if (walkFilenameSet != null) {
+      List<String> walkTypeList = new ArrayList<>();
+      for (String filename : walkFilenameSet) {
+        walkTypeList.add(workspace.get(filename).getType());
       }
-      System.out.println("  + Links examined: " + linksExamined);
-      System.out.println("  + Links removed:  " + linksRemoved);
-      System.out.println("  + Links made:     " + linksMade);
+      out().println("Only linking out from: " + String.join(", ", walkTypeList));
+      crossLinker.walkOnly(walkTypeList);
+    }
+    List<Codeset> codesetChanged;
+    if (serial) {
+      codesetChanged = crossLinker.linkSerial();
+    } else {
+      codesetChanged = crossLinker.link(ForkJoinPool.commonPool());
+    }
+    for (int i = 0; i < codesetList.size(); i++) {
+      out().println("Linking out from: " + codesetList.get(i).getType());
+      out().println("  + Links examined: " + crossLinker.getLinksExamined(i));
+      out().println("  + Links removed:  " + crossLinker.getLinksRemoved(i));
+      out().println("  + Links made:     " + crossLinker.getLinksMade(i));
+      count(RunReport.LINKS_EXAMINED, crossLinker.getLinksExamined(i));
+      count(RunReport.LINKS_REMOVED, crossLinker.getLinksRemoved(i));
+      count(RunReport.LINKS_MADE, crossLinker.getLinksMade(i));
 
     }
-    System.out.println("Saving codesets that have changed");
+    out().println("Saving codesets that have changed");
     for (Codeset codeset : codesetChanged) {
-      System.out.println("  + Saving " + codeset.getLabel());
-      marshalCodeset(codeset, codesestFilenameMap.get(codeset.getType()));
+      out().println("  + Saving " + codeset.getLabel());
+      workspace.markChanged(codesestFilenameMap.get(codeset.getType()));
     }
 
   }
 
   private void updateVis() throws IOException {
-    System.out.println("VIS");
+    out().println("VIS");
     String filenameDoc = VACCINATION_VIS_DOC_TYPE_XML;
     String filenameVac = VACCINATION_VIS_VACCINES_XML;
-    Codeset codesetDoc = unmarshalCodeset(filenameDoc);
-    Codeset codesetVac = unmarshalCodeset(filenameVac);
+    IndexedCodeset codesetDoc = workspace.get(filenameDoc);
+    IndexedCodeset codesetVac = workspace.get(filenameVac);
     int countTotalDoc = codesetDoc.getCode().size();
     int countTotalVac = codesetVac.getCode().size();
     int countAddedDoc = 0;
@@ -765,310 +825,144 @@ public class UpdateFromCDCSource
     boolean updatedDoc = false;
     boolean updatedVac = false;
     if (codesetDoc != null && codesetVac != null) {
-      try {
-        ObjectFactory objectFactory = new ObjectFactory();
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dbBuilder = dbFactory.newDocumentBuilder();
-        Document doc = dbBuilder.parse(cvxvisFile);
-        doc.getDocumentElement().normalize();
-        NodeList n0List = doc.getElementsByTagName("CVXVIS");
-        for (int level0 = 0; level0 < n0List.getLength(); level0++) {
-          Node n1Node = n0List.item(level0);
-          NodeList n1List = n1Node.getChildNodes();
-          for (int level1 = 0; level1 < n1List.getLength(); level1++) {
-            Node n2Node = n1List.item(level1);
-            if (n2Node.getNodeName().equals("CVXVISMapping")) {
-              NodeList n2List = n2Node.getChildNodes();
-              String cvxCode = "";
-              // String cvxVaccineDescription = "";
-              String fullyEncodedString = "";
-              String visDocumentName = "";
-              Date visEditionDate = null;
-              // String status = "";
-              for (int level2 = 0; level2 < n2List.getLength(); level2++) {
-                Node n3Node = n2List.item(level2);
-                if (n3Node.getNodeName().equals("CVXCode")) {
-                  cvxCode = clean(n3Node.getTextContent().trim());
-                } else if (n3Node.getNodeName().equals("CVXVaccineDescription")) {
-                  // cvxVaccineDescription =
-                  // clean(n3Node.getTextContent().trim());
-                } else if (n3Node.getNodeName().equals("Fully-encodedString")) {
-                  fullyEncodedString = clean(n3Node.getTextContent().trim());
-                } else if (n3Node.getNodeName().equals("VISDocumentName")) {
-                  visDocumentName = clean(n3Node.getTextContent().trim());
-                } else if (n3Node.getNodeName().equals("VISEditionDate")) {
-                  visEditionDate = readDate(n3Node);
-                } else if (n3Node.getNodeName().equals("Status")) {
-                  // status =
-                  // clean(n3Node.getTextContent().trim());
-                }
+      ObjectFactory objectFactory = new ObjectFactory();
+      try (CdcRecordReader record = new CdcRecordReader(cvxvisFile, CVXVIS_SOURCE)) {
+        while (record.next()) {
+          String cvxCode = record.get(CVXVIS_CVX_CODE, "");
+          String fullyEncodedString = record.get(CVXVIS_FULLY_ENCODED_STRING, "");
+          String visDocumentName = record.get(CVXVIS_VIS_DOCUMENT_NAME, "");
+          Date visEditionDate = readDate(record.get(CVXVIS_VIS_EDITION_DATE));
+          if (!isEmpty(fullyEncodedString)) {
+            Codeset.Code c = codesetDoc.getOrCreate(fullyEncodedString);
+            if (isEmpty(c.getLabel())) {
+              c.setLabel(visDocumentName);
+              updatedDoc = true;
+            }
+            if (c.getCodeStatus() == null) {
+              c.setCodeStatus(objectFactory.createCodesetCodeCodeStatus());
+            }
+            if (isEmpty(c.getCodeStatus().getStatus())) {
+              c.getCodeStatus().setStatus("Valid");
+              updatedDoc = true;
+            }
+            if (!isEmpty(cvxCode)) {
+              if (setUniqueLink(codesetDoc, cvxCode, c, CodesetType.VIS_VACCINES)) {
+                updatedDoc = true;
               }
-              if (!isEmpty(fullyEncodedString)) {
-                Codeset.Code c = getOrCreateCode(codesetDoc, fullyEncodedString);
-                if (isEmpty(c.getLabel())) {
-                  c.setLabel(visDocumentName);
-                  updatedDoc = true;
-                }
-                if (c.getCodeStatus() == null) {
-                  c.setCodeStatus(objectFactory.createCodesetCodeCodeStatus());
-                }
-                if (isEmpty(c.getCodeStatus().getStatus())) {
-                  c.getCodeStatus().setStatus("Valid");
-                  updatedDoc = true;
-                }
-                if (!isEmpty(cvxCode)) {
-                  if (setUniqueLink(objectFactory, cvxCode, c, CODE_SET_VACCINATION_VIS_VACCINES)) {
-                    updatedDoc = true;
-                  }
-                }
-                if (visEditionDate != null) {
-                  if (c.getUseDate() == null || isEmpty(c.getUseDate().getNotBefore())) {
-                    SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
-                    UseDate useDate = getUseDate(objectFactory, c);
-                    useDate.setNotBefore(sdf.format(visEditionDate));
-                    updatedDoc = true;
-                  }
-                }
+            }
+            if (visEditionDate != null) {
+              if (c.getUseDate() == null || isEmpty(c.getUseDate().getNotBefore())) {
+                SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
+                UseDate useDate = getUseDate(objectFactory, c);
+                useDate.setNotBefore(sdf.format(visEditionDate));
+                updatedDoc = true;
               }
-              if (!isEmpty(cvxCode)) {
-                Codeset.Code c = getOrCreateCode(codesetVac, cvxCode);
-                if (isEmpty(c.getLabel())) {
-                  c.setLabel(visDocumentName);
-                  updatedVac = true;
-                }
-                if (c.getCodeStatus() == null) {
-                  c.setCodeStatus(objectFactory.createCodesetCodeCodeStatus());
-                }
-                if (isEmpty(c.getCodeStatus().getStatus())) {
-                  c.getCodeStatus().setStatus("Valid");
-                  updatedVac = true;
-                }
-                if (!isEmpty(fullyEncodedString)) {
-                  if (setUniqueLink(objectFactory, fullyEncodedString, c, CODE_SET_VACCINATION_VIS_DOC_TYPE)) {
-                    updatedVac = true;
-                  }
-                }
-                if (visEditionDate != null) {
-                  if (c.getUseDate() == null || isEmpty(c.getUseDate().getNotBefore())) {
-                    SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
-                    UseDate useDate = getUseDate(objectFactory, c);
-                    useDate.setNotBefore(sdf.format(visEditionDate));
-                    updatedVac = true;
-                  }
-                }
+            }
+          }
+          if (!isEmpty(cvxCode)) {
+            Codeset.Code c = codesetVac.getOrCreate(cvxCode);
+            if (isEmpty(c.getLabel())) {
+              c.setLabel(visDocumentName);
+              updatedVac = true;
+            }
+            if (c.getCodeStatus() == null) {
+              c.setCodeStatus(objectFactory.createCodesetCodeCodeStatus());
+            }
+            if (isEmpty(c.getCodeStatus().getStatus())) {
+              c.getCodeStatus().setStatus("Valid");
+              updatedVac = true;
+            }
+            if (!isEmpty(fullyEncodedString)) {
+              if (setUniqueLink(codesetVac, fullyEncodedString, c, CodesetType.VIS_DOC_TYPE)) {
+                updatedVac = true;
+              }
+            }
+            if (visEditionDate != null) {
+              if (c.getUseDate() == null || isEmpty(c.getUseDate().getNotBefore())) {
+                SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
+                UseDate useDate = getUseDate(objectFactory, c);
+                useDate.setNotBefore(sdf.format(visEditionDate));
+                updatedVac = true;
               }
             }
           }
         }
 
-      } catch (ParserConfigurationException | SAXException e) {
+        countSource(cvxvisFile, record.getRecordCount());
+      } catch (XMLStreamException e) {
         e.printStackTrace();
       }
       if (updatedDoc || codesetDoc.getCode().size() > countTotalDoc) {
-        marshalCodeset(codesetDoc, filenameDoc);
+        workspace.markChanged(filenameDoc);
       }
 
       if (updatedVac || codesetVac.getCode().size() > countTotalVac) {
-        marshalCodeset(codesetVac, filenameVac);
+        workspace.markChanged(filenameVac);
       }
       countAddedDoc = codesetDoc.getCode().size() - countTotalDoc;
+      count(RunReport.CODES_ADDED, countAddedDoc);
       countTotalDoc = codesetDoc.getCode().size();
       countAddedVac = codesetVac.getCode().size() - countTotalVac;
+      count(RunReport.CODES_ADDED, countAddedVac);
       countTotalVac = codesetVac.getCode().size();
-      System.out.println("  + Added Doc:   " + countAddedDoc);
-      System.out.println("  + Total Doc:   " + countTotalDoc);
-      System.out.println("  + Added Vac:   " + countAddedVac);
-      System.out.println("  + Total Vac:   " + countTotalVac);
+      out().println("  + Added Doc:   " + countAddedDoc);
+      out().println("  + Total Doc:   " + countTotalDoc);
+      out().println("  + Added Vac:   " + countAddedVac);
+      out().println("  + Total Vac:   " + countTotalVac);
     }
   }
 
-  private boolean setUniqueLink(ObjectFactory objectFactory, String value, Codeset.Code c, String codeSetName) {
+  private boolean setUniqueLink(IndexedCodeset codeset, String value, Codeset.Code c, String codeSetName) {
     if (!isEmpty(value)) {
-      Reference reference = getReference(objectFactory, c);
-      boolean found = false;
-      for (LinkTo linkTo : reference.getLinkTo()) {
-        if (linkTo.getCodeset().equals(codeSetName) && linkTo.getValue().equals(value)) {
-          found = true;
-        }
-      }
-      if (!found) {
-        LinkTo linkTo = objectFactory.createCodesetCodeReferenceLinkTo();
-        reference.getLinkTo().add(linkTo);
-        linkTo.setCodeset(codeSetName);
-        linkTo.setValue(value);
-        return true;
-      }
+      return codeset.getLinkIndex(c).add(codeSetName, intern(value));
     }
     return false;
   }
 
-  private Map<String, String> readNameValueMap(NodeList n2List) {
-    Map<String, String> nameValueMap = new HashMap<>();
-    {
-      String name = null;
-      String value = null;
-      for (int level2 = 0; level2 < n2List.getLength(); level2++) {
-        Node n3Node = n2List.item(level2);
-        if (n3Node.getNodeName().equals("Name")) {
-          if (name != null && value != null) {
-            nameValueMap.put(name, value);
-            value = null;
-          }
-          name = clean(n3Node.getTextContent().trim());
-        } else if (n3Node.getNodeName().equals("Value")) {
-          value = clean(n3Node.getTextContent().trim());
-        }
-      }
-      if (name != null && value != null) {
-        nameValueMap.put(name, value);
-      }
-    }
-    return nameValueMap;
-  }
-
-  private Codeset.Code getOrCreateCode(Codeset codeset, String value) {
-    Codeset.Code c = null;
-    for (Codeset.Code code : codeset.getCode()) {
-      if (code.getValue().equalsIgnoreCase(value)) {
-        c = code;
-      }
-    }
-    if (c == null) {
-      c = new Codeset.Code();
-      c.setValue(value);
-      codeset.getCode().add(c);
-    }
-    return c;
-  }
-
-  private static String clean(String s) {
-    StringBuffer sb = new StringBuffer();
-    char[] c = s.trim().toCharArray();
-    boolean whitespace = false;
-    for (int i = 0; i < c.length; i++) {
-      if (c[i] <= 32) {
-        whitespace = true;
-      } else {
-        if (whitespace) {
-          sb.append(' ');
-        }
-        sb.append(c[i]);
-        whitespace = false;
-      }
-    }
-    return sb.toString();
-  }
-
-  private Codeset unmarshalCodeset(String filename) {
-    Codeset codeset = null;
-    try {
-      File file = new File(setLocationFile, filename);
-      JAXBContext jaxbContext = JAXBContext.newInstance(Codeset.class);
-      Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-      codeset = (Codeset) unmarshaller.unmarshal(file);
-    } catch (JAXBException e) {
-      e.printStackTrace();
-    }
-    return codeset;
-  }
-
-  private void marshalCodeset(Codeset codeset, String filename) {
-    Collections.sort(codeset.getCode());
-    try {
-      File file = new File(setLocationFile, filename);
-      JAXBContext jaxbContext = JAXBContext.newInstance(Codeset.class);
-      Marshaller marshaller = jaxbContext.createMarshaller();
-      marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-      marshaller.marshal(codeset, file);
-    } catch (JAXBException e) {
-      e.printStackTrace();
-    }
-  }
-
-  private void linkUnitOfSale() {
-    ObjectFactory objectFactory = new ObjectFactory();
+  private void linkUnitOfSale(IndexedCodeset codeset) {
     for (String outerId : linkMapSetByOuterId.keySet()) {
       Code outerCode = codeMapOuter.get(outerId);
       if (outerCode != null) {
         List<Link> linkList = new ArrayList<>(linkMapSetByOuterId.get(outerId));
         Collections.sort(linkList);
         for (Link link : linkList) {
-          addMvx(objectFactory, link, outerCode);
+          addMvx(codeset, link, outerCode);
           Code innerCode = codeMapInner.get(link.innerId);
           if (innerCode != null) {
-            Reference reference = getReference(objectFactory, outerCode);
-            boolean needToAdd = true;
-            for (LinkTo linkTo : reference.getLinkTo()) {
-              if (linkTo.getCodeset().equals(CODE_SET_UNIT_OF_USE_TYPE)
-                  && linkTo.getValue().equals(innerCode.getValue())) {
-                // don't need to add
-                needToAdd = false;
-              }
-            }
-            if (needToAdd) {
-              LinkTo linkTo = objectFactory.createCodesetCodeReferenceLinkTo();
-              reference.getLinkTo().add(linkTo);
-              linkTo.setCodeset(CODE_SET_UNIT_OF_USE_TYPE);
-              linkTo.setValue(innerCode.getValue());
-            }
+            codeset.getLinkIndex(outerCode).add(CodesetType.NDC_UNIT_OF_USE, innerCode.getValue());
           }
         }
       }
     }
   }
 
-  private void linkUnitOfUse() {
-    ObjectFactory objectFactory = new ObjectFactory();
+  private void linkUnitOfUse(IndexedCodeset codeset) {
     for (String innerId : linkMapSetByInnerId.keySet()) {
       Code innerCode = codeMapInner.get(innerId);
       if (innerCode != null) {
         List<Link> linkList = new ArrayList<>(linkMapSetByInnerId.get(innerId));
         Collections.sort(linkList);
         for (Link link : linkList) {
-          addMvx(objectFactory, link, innerCode);
+          addMvx(codeset, link, innerCode);
           Code outerCode = codeMapOuter.get(link.outerId);
           if (outerCode != null) {
-            Reference reference = getReference(objectFactory, innerCode);
-            boolean needToAdd = true;
-            for (LinkTo linkTo : reference.getLinkTo()) {
-              if (linkTo.getCodeset().equals(CODE_SET_UNIT_OF_SALE_TYPE)
-                  && linkTo.getValue().equals(outerCode.getValue())) {
-                // don't need to add
-                needToAdd = false;
-              }
-            }
-            if (needToAdd) {
-              LinkTo linkTo = objectFactory.createCodesetCodeReferenceLinkTo();
-              reference.getLinkTo().add(linkTo);
-              linkTo.setCodeset(CODE_SET_UNIT_OF_SALE_TYPE);
-              linkTo.setValue(outerCode.getValue());
-            }
+            codeset.getLinkIndex(innerCode).add(CodesetType.NDC_UNIT_OF_SALE, outerCode.getValue());
           }
         }
       }
     }
   }
 
-  private void addMvx(ObjectFactory objectFactory, Link link, Code code) {
+  private void addMvx(IndexedCodeset codeset, Link link, Code code) {
     if (link.mvx.length() > 0) {
-      Reference reference = getReference(objectFactory, code);
-      for (LinkTo linkTo : reference.getLinkTo()) {
-        if (linkTo.getCodeset().equals(CODE_SET_MVX) && linkTo.getValue().equals(link.mvx)) {
-          // don't need to add
-          return;
-        }
-      }
-      LinkTo linkTo = objectFactory.createCodesetCodeReferenceLinkTo();
-      reference.getLinkTo().add(linkTo);
-      linkTo.setCodeset(CODE_SET_MVX);
-      linkTo.setValue(link.mvx);
+      codeset.getLinkIndex(code).add(CodesetType.MVX, intern(link.mvx));
     }
   }
 
   private void verifyLotNumberPatterns() throws IOException {
-    System.out.println("Lot Number: checking reg expressions");
+    out().println("Lot Number: checking reg expressions");
     String filename = VACCINATION_LOT_NUMBER_PATTERN_XML;
-    Codeset codeset = unmarshalCodeset(filename);
+    IndexedCodeset codeset = workspace.get(filename);
     int countOkay = 0;
     for (Code code : codeset.getCode()) {
       try {
@@ -1076,73 +970,56 @@ public class UpdateFromCDCSource
         countOkay++;
       } catch (PatternSyntaxException pse) {
         pse.printStackTrace();
-        System.err.println("Lot number regular expression was not recognized: " + code.getValue());
+        err().println("Lot number regular expression was not recognized: " + code.getValue());
       }
     }
-    System.out.println("  + Verified: " + countOkay);
-    System.out.println("  + Total:    " + codeset.getCode().size());
+    out().println("  + Verified: " + countOkay);
+    out().println("  + Total:    " + codeset.getCode().size());
   }
 
-  private Reference getReference(ObjectFactory objectFactory, Code code) {
-    Reference reference = code.getReference();
-    if (reference == null) {
-      reference = objectFactory.createCodesetCodeReference();
-      code.setReference(reference);
-    }
-    return reference;
-  }
-
-  private void saveCodeSet(Codeset codeset, String filename) {
-    Collections.sort(codeset.getCode());
-    try {
-      File file = new File(setLocationFile, filename);
-      JAXBContext jaxbContext = JAXBContext.newInstance(Codeset.class);
-      Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-      jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-      jaxbMarshaller.marshal(codeset, file);
-    } catch (JAXBException e) {
-      e.printStackTrace();
-    }
-  }
-
-  private Codeset readCodsetUnitOfSale(Map<String, Code> codeMap) throws FileNotFoundException, IOException {
-    System.out.println("Reading Unit of Sale file");
+  private IndexedCodeset readCodsetUnitOfSale(Map<String, Code> codeMap) throws FileNotFoundException, IOException {
+    out().println("Reading Unit of Sale file");
     ObjectFactory objectFactory = new ObjectFactory();
-    Codeset codeset = unmarshalCodeset(VACCINATION_NDC_CODE_UNIT_OF_SALE_XML);
+    IndexedCodeset codeset = workspace.get(VACCINATION_NDC_CODE_UNIT_OF_SALE_XML);
     int countTotal = codeset.getCode().size();
     Set<String> codeValuesAlreadyDefined = setupCodeValuesAlreadyDefined(codeset);
-    BufferedReader in = new BufferedReader(new FileReader(unitSaleFile));
-    String line;
-    while ((line = in.readLine()) != null) {
-      if (line.length() > UNIT_OF_SALE_NDC11) {
-        String[] parts = readAndTrim(line);
-        String outerId = parts[UNIT_OF_SALE_NDCOUTERID];
-        if (parts.length > UNIT_OF_SALE_NDC11 && !codeMap.containsKey(outerId)) {
-          String ndc = parts[UNIT_OF_SALE_NDC11];
-          checkNDC(parts, ndc);
+    DelimitedRecord in = openNdcFile(unitSaleFile);
+    int recordCount = 0;
+    while (in.next()) {
+      recordCount++;
+      if (in.getLineLength() > UNIT_OF_SALE_NDC11) {
+        String outerId = in.get(UNIT_OF_SALE_NDCOUTERID);
+        if (in.getFieldCount() > UNIT_OF_SALE_NDC11 && !codeMap.containsKey(outerId)) {
+          String ndc = in.get(UNIT_OF_SALE_NDC11);
+          checkNDC(outerId, ndc);
           boolean justCreated = false;
-          Code code = getOrCreateCode(codeset, ndc);
+          Code code = codeset.getOrCreate(ndc);
           if (isEmpty(code.getLabel())) {
-            code.setLabel(parts[UNIT_OF_SALE_OUTERPROPNAME]);
+            code.setLabel(in.get(UNIT_OF_SALE_OUTERPROPNAME));
             justCreated = true;
           }
           if (isEmpty(code.getDescription())) {
-            code.setDescription(parts[UNIT_OF_SALE_OUTERLABELERNAME] + " - " + parts[UNIT_OF_SALE_OUTERGENERICNAME]);
+            code.setDescription(in.get(UNIT_OF_SALE_OUTERLABELERNAME) + " - " + in.get(UNIT_OF_SALE_OUTERGENERICNAME));
           }
           setCodeStatusAsValid(objectFactory, code);
-          String cvxCode = parts[UNIT_OF_SALE_CVX_CODE];
-          linkToCvx(objectFactory, code, cvxCode);
+          if (in.length(UNIT_OF_SALE_CVX_CODE) > 0) {
+            linkToCvx(codeset, code, in.get(UNIT_OF_SALE_CVX_CODE));
+          }
           codeMap.put(outerId, code);
-          setUseDateNotBefore(parts[UNIT_OF_SALE_OUTERSTARTDATE], code, objectFactory);
-          setUseDateNotAfter(parts[UNIT_OF_SALE_OUTERENDDATE], code, objectFactory);
+          if (in.length(UNIT_OF_SALE_OUTERSTARTDATE) == 8) {
+            setUseDateNotBefore(in.get(UNIT_OF_SALE_OUTERSTARTDATE), code, objectFactory);
+          }
+          if (in.length(UNIT_OF_SALE_OUTERENDDATE) == 8) {
+            setUseDateNotAfter(in.get(UNIT_OF_SALE_OUTERENDDATE), code, objectFactory);
+          }
           if (justCreated) {
-            String label = parts[UNIT_OF_SALE_OUTERPROPNAME];
-            String lastUpdate = parts[UNIT_OF_SALE_LAST_UPDATED_DATE];
-            String labeler = parts[UNIT_OF_SALE_OUTERLABELERNAME];
-            String generic = parts[UNIT_OF_SALE_OUTERGENERICNAME];
-            String ndc11 = parts[UNIT_OF_SALE_NDC11];
-            String ndcAlt = parts[UNIT_OF_SALE_OUTERLABELER] + "-" + parts[UNIT_OF_SALE_OUTERPRODUCT] + "-"
-                + parts[UNIT_OF_SALE_OUTERPACKAGE];
+            String label = in.get(UNIT_OF_SALE_OUTERPROPNAME);
+            String lastUpdate = in.get(UNIT_OF_SALE_LAST_UPDATED_DATE);
+            String labeler = in.get(UNIT_OF_SALE_OUTERLABELERNAME);
+            String generic = in.get(UNIT_OF_SALE_OUTERGENERICNAME);
+            String ndc11 = ndc;
+            String ndcAlt = in.get(UNIT_OF_SALE_OUTERLABELER) + "-" + in.get(UNIT_OF_SALE_OUTERPRODUCT) + "-"
+                + in.get(UNIT_OF_SALE_OUTERPACKAGE);
             addDeprecatedNdc(objectFactory, codeset, labeler, generic, ndc11, ndcAlt, label, lastUpdate,
                 "Use full 11-digit format instead of 10-digit format");
             ndcAlt = ndc11.replaceAll("\\-", "");
@@ -1153,20 +1030,24 @@ public class UpdateFromCDCSource
         }
       }
     }
+    countSource(unitSaleFile, recordCount);
     finishNdc(objectFactory, codeset, countTotal, codeValuesAlreadyDefined, in);
     return codeset;
   }
 
-  private void finishNdc(ObjectFactory objectFactory, Codeset codeset, int countTotal,
-      Set<String> codeValuesAlreadyDefined, BufferedReader in) throws IOException {
-    System.out.println("  + added:   " + (codeset.getCode().size() - countTotal));
-    System.out.println("  + expired: " + codeValuesAlreadyDefined.size());
+  private void finishNdc(ObjectFactory objectFactory, IndexedCodeset codeset, int countTotal,
+      Set<String> codeValuesAlreadyDefined, DelimitedRecord in) throws IOException {
+    out().println("  + added:   " + (codeset.getCode().size() - countTotal));
+    out().println("  + expired: " + codeValuesAlreadyDefined.size());
+    count(RunReport.CODES_ADDED, codeset.getCode().size() - countTotal);
+    count(RunReport.CODES_EXPIRED, codeValuesAlreadyDefined.size());
     setUseDateAfter(objectFactory, codeset, codeValuesAlreadyDefined);
-    System.out.println("  + total:   " + codeset.getCode().size());
+    out().println("  + total:   " + codeset.getCode().size());
     in.close();
   }
 
-  private void setUseDateAfter(ObjectFactory objectFactory, Codeset codeset, Set<String> codeValuesAlreadyDefined) {
+  private void setUseDateAfter(ObjectFactory objectFactory, IndexedCodeset codeset,
+      Set<String> codeValuesAlreadyDefined) {
     SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
     Calendar calendar = Calendar.getInstance();
     calendar.add(Calendar.MONTH, 6);
@@ -1175,29 +1056,16 @@ public class UpdateFromCDCSource
     String yearFromNow = sdf.format(calendar.getTime());
     for (Codeset.Code code : codeset.getCode()) {
       if (codeValuesAlreadyDefined.contains(code.getValue())) {
-        System.err.println("  + NDC " + code.getValue() + " was dropped from CDC list! Setting to expire in 1 year. ");
+        err().println("  + NDC " + code.getValue() + " was dropped from CDC list! Setting to expire in 1 year. ");
         setUseDateNotExpectedAfter(sixMonthsFromNow, code, objectFactory);
         setUseDateNotAfter(yearFromNow, code, objectFactory);
       }
     }
   }
 
-  private void linkToCvx(ObjectFactory objectFactory, Code code, String cvxCode) {
+  private void linkToCvx(IndexedCodeset codeset, Code code, String cvxCode) {
     if (cvxCode.length() > 0) {
-      Reference reference = getReference(objectFactory, code);
-      boolean found = false;
-      for (LinkTo linkTo : reference.getLinkTo()) {
-        if (linkTo.getCodeset().equals(CODE_SET_CVX) && linkTo.getValue().equals(cvxCode)) {
-          found = true;
-          break;
-        }
-      }
-      if (!found) {
-        LinkTo linkTo = objectFactory.createCodesetCodeReferenceLinkTo();
-        reference.getLinkTo().add(linkTo);
-        linkTo.setCodeset(CODE_SET_CVX);
-        linkTo.setValue(cvxCode);
-      }
+      codeset.getLinkIndex(code).add(CodesetType.CVX, intern(cvxCode));
     }
   }
 
@@ -1236,13 +1104,13 @@ public class UpdateFromCDCSource
     }
   }
 
-  private void addDeprecatedNdc(ObjectFactory objectFactory, Codeset codeset, String labeler, String generic,
+  private void addDeprecatedNdc(ObjectFactory objectFactory, IndexedCodeset codeset, String labeler, String generic,
       String ndc11, String ndcAlt, String label, String lastUpdate, String reason) {
     if (ndcAlt.length() > 3 && !ndcAlt.equals(ndc11)) {
       Code code10 = objectFactory.createCodesetCode();
-      codeset.getCode().add(code10);
       code10.setLabel(label);
       code10.setValue(ndcAlt);
+      codeset.add(code10);
       code10.setDescription(labeler + " - " + generic);
       Code.CodeStatus codeStatus10 = objectFactory.createCodesetCodeCodeStatus();
       code10.setCodeStatus(codeStatus10);
@@ -1270,52 +1138,49 @@ public class UpdateFromCDCSource
     return useDate;
   }
 
-  private String[] readAndTrim(String line) {
-    String[] parts = line.split("\\|");
-    for (int i = 0; i < parts.length; i++) {
-      parts[i] = parts[i].trim();
-    }
-    return parts;
-  }
-
-  private Codeset readCodsetUnitOfUse(Map<String, Code> codeMap) throws FileNotFoundException, IOException {
-    System.out.println("Reading Unit of Use file");
+  private IndexedCodeset readCodsetUnitOfUse(Map<String, Code> codeMap) throws FileNotFoundException, IOException {
+    out().println("Reading Unit of Use file");
     ObjectFactory objectFactory = new ObjectFactory();
-    Codeset codeset = unmarshalCodeset(VACCINATION_NDC_CODE_UNIT_OF_USE_XML);
+    IndexedCodeset codeset = workspace.get(VACCINATION_NDC_CODE_UNIT_OF_USE_XML);
     int countTotal = codeset.getCode().size();
     Set<String> codeValuesAlreadyDefined = setupCodeValuesAlreadyDefined(codeset);
-    BufferedReader in = new BufferedReader(new FileReader(unitUseFile));
-    String line;
-    while ((line = in.readLine()) != null) {
-      if (line.length() > UNIT_OF_USE_NDC11) {
-        String[] parts = readAndTrim(line);
-        String innerId = parts[UNIT_OF_USE_NDCINNERID];
-        if (parts.length > UNIT_OF_USE_NDC11 && !codeMap.containsKey(innerId)) {
-          String ndc = parts[UNIT_OF_USE_NDC11];
-          checkNDC(parts, ndc);
+    DelimitedRecord in = openNdcFile(unitUseFile);
+    int recordCount = 0;
+    while (in.next()) {
+      recordCount++;
+      if (in.getLineLength() > UNIT_OF_USE_NDC11) {
+        String innerId = in.get(UNIT_OF_USE_NDCINNERID);
+        if (in.getFieldCount() > UNIT_OF_USE_NDC11 && !codeMap.containsKey(innerId)) {
+          String ndc = in.get(UNIT_OF_USE_NDC11);
+          checkNDC(innerId, ndc);
           boolean justCreated = false;
-          Code code = getOrCreateCode(codeset, ndc);
+          Code code = codeset.getOrCreate(ndc);
           if (isEmpty(code.getLabel())) {
-            code.setLabel(parts[UNIT_OF_USE_USEUNITPROPNAME]);
+            code.setLabel(in.get(UNIT_OF_USE_USEUNITPROPNAME));
             justCreated = true;
           }
           if (isEmpty(code.getDescription())) {
-            code.setDescription(parts[UNIT_OF_USE_USEUNITLABELERNAME] + " - " + parts[UNIT_OF_USE_USEUNITGENERICNAME]);
+            code.setDescription(in.get(UNIT_OF_USE_USEUNITLABELERNAME) + " - " + in.get(UNIT_OF_USE_USEUNITGENERICNAME));
           }
           setCodeStatusAsValid(objectFactory, code);
-          String cvxCode = parts[UNIT_OF_USE_CVX_CODE];
-          linkToCvx(objectFactory, code, cvxCode);
+          if (in.length(UNIT_OF_USE_CVX_CODE) > 0) {
+            linkToCvx(codeset, code, in.get(UNIT_OF_USE_CVX_CODE));
+          }
           codeMap.put(innerId, code);
-          setUseDateNotBefore(parts[UNIT_OF_USE_USEUNITSTARTDATE], code, objectFactory);
-          setUseDateNotAfter(parts[UNIT_OF_USE_USEUNITENDDATE], code, objectFactory);
+          if (in.length(UNIT_OF_USE_USEUNITSTARTDATE) == 8) {
+            setUseDateNotBefore(in.get(UNIT_OF_USE_USEUNITSTARTDATE), code, objectFactory);
+          }
+          if (in.length(UNIT_OF_USE_USEUNITENDDATE) == 8) {
+            setUseDateNotAfter(in.get(UNIT_OF_USE_USEUNITENDDATE), code, objectFactory);
+          }
           if (justCreated) {
-            String label = parts[UNIT_OF_USE_USEUNITPROPNAME];
-            String lastUpdate = parts[UNIT_OF_USE_LAST_UPDATED_DATE];
-            String labeler = parts[UNIT_OF_USE_USEUNITLABELERNAME];
-            String generic = parts[UNIT_OF_USE_USEUNITGENERICNAME];
-            String ndc11 = parts[UNIT_OF_USE_NDC11];
-            String ndcAlt = parts[UNIT_OF_USE_USEUNITLABELER] + "-" + parts[UNIT_OF_USE_USEUNITPRODUCT] + "-"
-                + parts[UNIT_OF_USE_USEUNITPACKAGE];
+            String label = in.get(UNIT_OF_USE_USEUNITPROPNAME);
+            String lastUpdate = in.get(UNIT_OF_USE_LAST_UPDATED_DATE);
+            String labeler = in.get(UNIT_OF_USE_USEUNITLABELERNAME);
+            String generic = in.get(UNIT_OF_USE_USEUNITGENERICNAME);
+            String ndc11 = ndc;
+            String ndcAlt = in.get(UNIT_OF_USE_USEUNITLABELER) + "-" + in.get(UNIT_OF_USE_USEUNITPRODUCT) + "-"
+                + in.get(UNIT_OF_USE_USEUNITPACKAGE);
             addDeprecatedNdc(objectFactory, codeset, labeler, generic, ndc11, ndcAlt, label, lastUpdate,
                 "Use full 11-digit format instead of 10-digit format");
             ndcAlt = ndc11.replaceAll("\\-", "");
@@ -1326,11 +1191,19 @@ public class UpdateFromCDCSource
         }
       }
     }
+    countSource(unitUseFile, recordCount);
     finishNdc(objectFactory, codeset, countTotal, codeValuesAlreadyDefined, in);
     return codeset;
   }
 
-  private Set<String> setupCodeValuesAlreadyDefined(Codeset codeset) {
+  private DelimitedRecord openNdcFile(File file) throws IOException {
+    if (mappedNdc) {
+      return new MappedDelimitedReader(file, '|');
+    }
+    return new DelimitedRecordReader(new FileReader(file), '|');
+  }
+
+  private Set<String> setupCodeValuesAlreadyDefined(IndexedCodeset codeset) {
     Set<String> codeValuesAlreadyDefined = new HashSet<>();
     for (Codeset.Code code : codeset.getCode()) {
       if ((code.getUseDate() == null || isEmpty(code.getUseDate().getNotAfter()))
@@ -1341,10 +1214,10 @@ public class UpdateFromCDCSource
     return codeValuesAlreadyDefined;
   }
 
-  private void checkNDC(String[] parts, String ndc) {
+  private void checkNDC(String id, String ndc) {
     if (ndc.length() != 13) {
-      throw new IllegalArgumentException("NDC is not the expected length, found \"" + ndc + "\" for inner id "
-          + parts[0] + " but it does not look like an NDC");
+      throw new IllegalArgumentException("NDC is not the expected length, found \"" + ndc + "\" for inner id " + id
+          + " but it does not look like an NDC");
     }
   }
 
@@ -1388,25 +1261,67 @@ public class UpdateFromCDCSource
   private static final int LINKER_INNER_ID = 2;
   private static final int LINKER_MVX = 3;
 
+  private static final CdcSource CVX_SOURCE = new CdcSource("cvx.xml", "CVXInfo");
+  private static final int CVX_SHORT_DESCRIPTION = CVX_SOURCE.bind("ShortDescription");
+  private static final int CVX_FULL_VACCINE_NAME = CVX_SOURCE.bind("FullVaccinename");
+  private static final int CVX_CVX_CODE = CVX_SOURCE.bind("CVXCode");
+  private static final int CVX_NOTES = CVX_SOURCE.bind("Notes");
+  private static final int CVX_STATUS = CVX_SOURCE.bind("Status");
+  private static final int CVX_LAST_UPDATED = CVX_SOURCE.bind("LastUpdated");
+
+  private static final CdcSource MVX_SOURCE = new CdcSource("mvx.xml", "MVXInfo");
+  private static final int MVX_MVX_CODE = MVX_SOURCE.bind("MVX_CODE");
+  private static final int MVX_MANUFACTURER_NAME = MVX_SOURCE.bind("ManufacturerName");
+  private static final int MVX_NOTES = MVX_SOURCE.bind("Notes");
+  private static final int MVX_STATUS = MVX_SOURCE.bind("Status");
+  private static final int MVX_LAST_UPDATED = MVX_SOURCE.bind("LastUpdated");
+
+  private static final CdcSource VAC2VG_SOURCE = new CdcSource("vac2vg.xml", "CVXVGInfo");
+  private static final int VAC2VG_SHORT_DESCRIPTION = VAC2VG_SOURCE.bind("ShortDescription");
+  private static final int VAC2VG_CVX_CODE = VAC2VG_SOURCE.bind("CVXCode");
+  private static final int VAC2VG_VACCINE_GROUP_NAME = VAC2VG_SOURCE.bind("Vaccine Group Name");
+  private static final int VAC2VG_CVX_FOR_VACCINE_GROUP = VAC2VG_SOURCE.bind("CVX for Vaccine Group");
+
+  private static final CdcSource CPT_SOURCE = new CdcSource("cpt.xml", "CPTInfo");
+  private static final int CPT_CPT_CODE = CPT_SOURCE.bind("CPT Code");
+  private static final int CPT_CPT_DESC = CPT_SOURCE.bind("CPT Desc");
+  private static final int CPT_COMMENTS = CPT_SOURCE.bind("Comments");
+  private static final int CPT_CVX_CODE = CPT_SOURCE.bind("CVX Code");
+
+  private static final CdcSource TRADENAME_SOURCE = new CdcSource("tradename.xml", "prodInfo");
+  private static final int TRADENAME_CDC_PRODUCT_NAME = TRADENAME_SOURCE.bind("CDC Product Name");
+  private static final int TRADENAME_SHORT_DESCRIPTION = TRADENAME_SOURCE.bind("Short Description");
+  private static final int TRADENAME_CVX_CODE = TRADENAME_SOURCE.bind("CVXCode");
+  private static final int TRADENAME_MVX_CODE = TRADENAME_SOURCE.bind("MVX Code");
+  private static final int TRADENAME_PRODUCT_NAME_STATUS = TRADENAME_SOURCE.bind("Product name Status");
+  private static final int TRADENAME_LAST_UPDATED = TRADENAME_SOURCE.bind("Last Updated");
+
+  private static final CdcSource CVXVIS_SOURCE = new CdcSource("cvxvis.xml", "CVXVISMapping");
+  private static final int CVXVIS_CVX_CODE = CVXVIS_SOURCE.bind("CVXCode");
+  private static final int CVXVIS_FULLY_ENCODED_STRING = CVXVIS_SOURCE.bind("Fully-encodedString");
+  private static final int CVXVIS_VIS_DOCUMENT_NAME = CVXVIS_SOURCE.bind("VISDocumentName");
+  private static final int CVXVIS_VIS_EDITION_DATE = CVXVIS_SOURCE.bind("VISEditionDate");
+
   private void readLinkFile() throws FileNotFoundException, IOException {
-    System.out.println("Reading link file");
-    BufferedReader in = new BufferedReader(new FileReader(linkerFile));
-    String line;
-    while ((line = in.readLine()) != null) {
-      if (line.length() > 3) {
-        String[] parts = readAndTrim(line);
-        if (parts.length > LINKER_MVX && parts[LINKER_OUTER_ID].length() > 0 && parts[LINKER_INNER_ID].length() > 0) {
+    out().println("Reading link file");
+    DelimitedRecord in = openNdcFile(linkerFile);
+    int recordCount = 0;
+    while (in.next()) {
+      recordCount++;
+      if (in.getLineLength() > 3) {
+        if (in.getFieldCount() > LINKER_MVX && in.length(LINKER_OUTER_ID) > 0 && in.length(LINKER_INNER_ID) > 0) {
           Link link = new Link();
-          link.outerId = parts[LINKER_OUTER_ID];
-          link.innerId = parts[LINKER_INNER_ID];
-          link.mvx = parts[LINKER_MVX];
+          link.outerId = in.get(LINKER_OUTER_ID);
+          link.innerId = in.get(LINKER_INNER_ID);
+          link.mvx = in.get(LINKER_MVX);
           getOuterLinkSet(link).add(link);
           getInnerLinkSet(link).add(link);
         }
       }
     }
-    System.out.println("  + found " + linkMapSetByOuterId.size() + " outer id links");
-    System.out.println("  + found " + linkMapSetByInnerId.size() + " inner id links");
+    out().println("  + found " + linkMapSetByOuterId.size() + " outer id links");
+    out().println("  + found " + linkMapSetByInnerId.size() + " inner id links");
+    countSource(linkerFile, recordCount);
     in.close();
   }
 
@@ -1428,8 +1343,29 @@ public class UpdateFromCDCSource
     return linkSet;
   }
 
+  private static PrintStream out() {
+    return StepScheduler.out();
+  }
+
+  private static PrintStream err() {
+    return StepScheduler.err();
+  }
+
+  private static void count(String name, long amount) {
+    StepScheduler.count(name, amount);
+  }
+
+  private static void countSource(File sourceFile, int recordCount) {
+    count(RunReport.RECORDS_PARSED, recordCount);
+    count(RunReport.BYTES_READ, sourceFile.length());
+  }
+
   private static boolean isEmpty(String s) {
     return s == null || s.trim().equals("");
   }
 
+  private String intern(String value) {
+    return codesetIO.getStringPool().intern(value);
+  }
+
 }
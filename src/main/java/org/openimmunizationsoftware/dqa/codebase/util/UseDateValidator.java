@@ -0,0 +1,214 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase.Codeset.Code;
+
+/**
+ * Decides whether a code may be used on a given date from its use dates. The
+ * use dates are parsed once, when this is built, into ints holding the
+ * yyyyMMdd number, so that checking a date is nothing more than comparing
+ * ints. Dates passed in are packed the same way, see {@link #pack(int, int,
+ * int)}.
+ * <p>
+ * All four use dates are inclusive: a code is valid on its not before date
+ * and on its not after date. A use date that is missing, or that is not
+ * written as yyyyMMdd, does not limit the code. Nothing is changed after
+ * construction, so one validator can be shared between threads.
+ */
+public final class UseDateValidator
+{
+  public enum Validity {
+    /**
+     * The code is expected to be used on this date.
+     */
+    VALID,
+    /**
+     * The code was not in use yet.
+     */
+    NOT_YET,
+    /**
+     * The code was in use but was not expected to be used yet.
+     */
+    NOT_EXPECTED_YET,
+    /**
+     * The code could still be used but was no longer expected to be.
+     */
+    EXPECTED_EXPIRED,
+    /**
+     * The code was no longer in use.
+     */
+    EXPIRED
+  }
+
+  private static final int NOT_BEFORE = 0;
+  private static final int NOT_EXPECTED_BEFORE = 1;
+  private static final int NOT_EXPECTED_AFTER = 2;
+  private static final int NOT_AFTER = 3;
+  private static final int DATE_INTS = 4;
+
+  private static final int NO_LIMIT_BEFORE = Integer.MIN_VALUE;
+  private static final int NO_LIMIT_AFTER = Integer.MAX_VALUE;
+
+  /**
+   * The packed use dates of every code in one codeset, four ints per code.
+   */
+  private static final class CodesetDates
+  {
+    private final Map<String, Integer> rowMap;
+    private final int[] dates;
+
+    private CodesetDates(Map<String, Integer> rowMap, int[] dates) {
+      this.rowMap = rowMap;
+      this.dates = dates;
+    }
+  }
+
+  private final Map<String, CodesetDates> codesetMap;
+
+  public UseDateValidator(Codebase codebase) {
+    Map<String, CodesetDates> codesetMap = new HashMap<>();
+    for (Codebase.Codeset codeset : codebase.getCodeset()) {
+      if (codeset.getType() == null) {
+        continue;
+      }
+      Map<String, Integer> rowMap = new HashMap<>(Math.max(16, codeset.getCode().size() * 2));
+      int[] dates = new int[codeset.getCode().size() * DATE_INTS];
+      int row = 0;
+      for (Code code : codeset.getCode()) {
+        Code.UseDate useDate = code.getUseDate();
+        if (useDate == null) {
+          setDates(dates, row, CompiledCodebase.NO_DATE, CompiledCodebase.NO_DATE, CompiledCodebase.NO_DATE,
+              CompiledCodebase.NO_DATE);
+        } else {
+          setDates(dates, row, CompiledCodebase.parseDate(useDate.getNotBefore()),
+              CompiledCodebase.parseDate(useDate.getNotExpectedBefore()),
+              CompiledCodebase.parseDate(useDate.getNotExpectedAfter()),
+              CompiledCodebase.parseDate(useDate.getNotAfter()));
+        }
+        if (code.getValue() != null) {
+          rowMap.put(code.getValue(), row);
+        }
+        row++;
+      }
+      codesetMap.put(codeset.getType(), new CodesetDates(rowMap, dates));
+    }
+    this.codesetMap = Collections.unmodifiableMap(codesetMap);
+  }
+
+  /**
+   * Builds the validator from the binary codebase, where the use dates are
+   * already packed, so nothing has to be parsed.
+   */
+  public UseDateValidator(CompiledCodebase compiled) {
+    Map<String, CodesetDates> codesetMap = new HashMap<>();
+    for (int codeset = 0; codeset < compiled.getCodesetCount(); codeset++) {
+      String type = compiled.getCodesetType(codeset);
+      if (type == null) {
+        continue;
+      }
+      int codeCount = compiled.getCodeCount(codeset);
+      int firstCode = compiled.getFirstCode(codeset);
+      Map<String, Integer> rowMap = new HashMap<>(Math.max(16, codeCount * 2));
+      int[] dates = new int[codeCount * DATE_INTS];
+      for (int row = 0; row < codeCount; row++) {
+        int code = firstCode + row;
+        setDates(dates, row, compiled.getNotBefore(code), compiled.getNotExpectedBefore(code),
+            compiled.getNotExpectedAfter(code), compiled.getNotAfter(code));
+        String value = compiled.getValue(code);
+        if (value != null) {
+          rowMap.put(value, row);
+        }
+      }
+      codesetMap.put(type, new CodesetDates(rowMap, dates));
+    }
+    this.codesetMap = Collections.unmodifiableMap(codesetMap);
+  }
+
+  /**
+   * Stores the dates with missing ones, and ones that were not written as
+   * yyyyMMdd, replaced by a limit no date can pass, so that classifying needs
+   * no special cases.
+   */
+  private static void setDates(int[] dates, int row, int notBefore, int notExpectedBefore, int notExpectedAfter,
+      int notAfter) {
+    int base = row * DATE_INTS;
+    dates[base + NOT_BEFORE] = CompiledCodebase.isPackedDate(notBefore) ? notBefore : NO_LIMIT_BEFORE;
+    dates[base + NOT_EXPECTED_BEFORE] = CompiledCodebase.isPackedDate(notExpectedBefore) ? notExpectedBefore
+        : NO_LIMIT_BEFORE;
+    dates[base + NOT_EXPECTED_AFTER] = CompiledCodebase.isPackedDate(notExpectedAfter) ? notExpectedAfter
+        : NO_LIMIT_AFTER;
+    dates[base + NOT_AFTER] = CompiledCodebase.isPackedDate(notAfter) ? notAfter : NO_LIMIT_AFTER;
+  }
+
+  /**
+   * @return the date as an int holding the yyyyMMdd number, month counting
+   *         from 1
+   */
+  public static int pack(int year, int month, int day) {
+    return year * 10000 + month * 100 + day;
+  }
+
+  public static int pack(Date date) {
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTime(date);
+    return pack(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+  }
+
+  /**
+   * @return how the code may be used on the packed date, or null if the
+   *         codeset does not exist or has no code with the value
+   */
+  public Validity classify(String codesetType, String value, int date) {
+    CodesetDates codesetDates = codesetMap.get(codesetType);
+    if (codesetDates == null || value == null) {
+      return null;
+    }
+    Integer row = codesetDates.rowMap.get(value);
+    return row == null ? null : classify(codesetDates.dates, row, date);
+  }
+
+  /**
+   * Classifies a whole batch of codes from the same codeset, looking the
+   * codeset up only once. The results are written into the array given, which
+   * must be at least as long as the values.
+   */
+  public void classify(String codesetType, String[] values, int[] dates, Validity[] results) {
+    if (dates.length < values.length || results.length < values.length) {
+      throw new IllegalArgumentException("Need a date and a result for each of the " + values.length + " values");
+    }
+    CodesetDates codesetDates = codesetMap.get(codesetType);
+    for (int i = 0; i < values.length; i++) {
+      Integer row = codesetDates == null || values[i] == null ? null : codesetDates.rowMap.get(values[i]);
+      results[i] = row == null ? null : classify(codesetDates.dates, row, dates[i]);
+    }
+  }
+
+  public Validity[] classify(String codesetType, String[] values, int[] dates) {
+    Validity[] results = new Validity[values.length];
+    classify(codesetType, values, dates, results);
+    return results;
+  }
+
+  private static Validity classify(int[] dates, int row, int date) {
+    int base = row * DATE_INTS;
+    if (date < dates[base + NOT_BEFORE]) {
+      return Validity.NOT_YET;
+    }
+    if (date > dates[base + NOT_AFTER]) {
+      return Validity.EXPIRED;
+    }
+    if (date < dates[base + NOT_EXPECTED_BEFORE]) {
+      return Validity.NOT_EXPECTED_YET;
+    }
+    if (date > dates[base + NOT_EXPECTED_AFTER]) {
+      return Validity.EXPECTED_EXPIRED;
+    }
+    return Validity.VALID;
+  }
+}
@@ -0,0 +1,61 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.xml.stream.XMLStreamException;
+
+import junit.framework.TestCase;
+
+public class CdcRecordReaderTest extends TestCase
+{
+  private File writeXml(String xml) throws IOException {
+    File file = File.createTempFile("cdc", ".xml");
+    file.deleteOnExit();
+    PrintWriter out = new PrintWriter(new FileWriter(file));
+    out.print(xml);
+    out.close();
+    return file;
+  }
+
+  public void testChildElements() throws IOException, XMLStreamException {
+    CdcSource source = new CdcSource("cvx.xml", "CVXInfo");
+    int shortDescription = source.bind("ShortDescription");
+    int cvxCode = source.bind("CVXCode");
+    int notes = source.bind("Notes");
+    File file = writeXml("<?xml version=\"1.0\"?><CVXCodes>"
+        + "<CVXInfo><ShortDescription>  DTaP\n   vaccine </ShortDescription><CVXCode> 20 </CVXCode></CVXInfo>"
+        + "<CVXInfo><CVXCode>03</CVXCode><Notes>a &amp; b</Notes></CVXInfo>" + "</CVXCodes>");
+    try (CdcRecordReader record = new CdcRecordReader(file, source)) {
+      assertTrue(record.next());
+      assertEquals("DTaP vaccine", record.get(shortDescription));
+      assertEquals("20", record.get(cvxCode));
+      assertNull(record.get(notes));
+      assertEquals("", record.get(notes, ""));
+      assertTrue(record.next());
+      assertEquals("03", record.get(cvxCode));
+      assertEquals("a & b", record.get(notes));
+      assertNull(record.get(shortDescription));
+      assertFalse(record.next());
+      assertEquals(2, record.getRecordCount());
+    }
+  }
+
+  public void testNameValuePairs() throws IOException, XMLStreamException {
+    CdcSource source = new CdcSource("tradename.xml", "prodInfo");
+    int productName = source.bind("CDC Product Name");
+    int mvxCode = source.bind("MVX Code");
+    int orphan = source.bind("Orphan");
+    File file = writeXml("<productnames><prodInfo>" + "<Name>CDC Product Name</Name><Value>ACEL-IMUNE</Value>"
+        + "<Name>MVX Code</Name><Value> PMC </Value>" + "<Name>Orphan</Name>" + "</prodInfo></productnames>");
+    try (CdcRecordReader record = new CdcRecordReader(file, source)) {
+      assertTrue(record.next());
+      assertEquals("ACEL-IMUNE", record.get(productName));
+      assertEquals("PMC", record.get(mvxCode));
+      assertNull(record.get(orphan));
+      assertFalse(record.next());
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase.Codeset.Code;
+
+import junit.framework.TestCase;
+
+public class CodebaseIndexTest extends TestCase
+{
+  private static final String CVX_SET = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+      + "<codeset>\n" + "  <label>Vaccination CVX Code</label>\n" + "  <type>VACCINATION_CVX_CODE</type>\n"
+      + "  <code>\n" + "    <value>08</value>\n" + "    <label>Hep B, adolescent or pediatric</label>\n"
+      + "    <code-status><status>Valid</status></code-status>\n" + "    <reference>\n"
+      + "      <link-to codeset=\"VACCINE_GROUP\">HepB</link-to>\n"
+      + "      <link-to codeset=\"VACCINE_GROUP\">Missing</link-to>\n"
+      + "      <link-to codeset=\"VACCINATION_CPT_CODE\">90744</link-to>\n" + "    </reference>\n" + "  </code>\n"
+      + "  <code>\n" + "    <value>31</value>\n" + "    <code-status>\n" + "      <status>Deprecated</status>\n"
+      + "      <deprecated><new-code-value>08</new-code-value></deprecated>\n" + "    </code-status>\n"
+      + "  </code>\n" + "</codeset>\n";
+  private static final String GROUP_SET = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+      + "<codeset>\n" + "  <type>VACCINE_GROUP</type>\n" + "  <code><value>HepB</value></code>\n" + "</codeset>\n";
+
+  private final TempFiles tempFiles = new TempFiles();
+
+  @Override
+  protected void tearDown() throws Exception {
+    tempFiles.deleteAll();
+    super.tearDown();
+  }
+
+  private File createSetLocation() throws Exception {
+    File setDir = tempFiles.createDirectory("sets");
+    Files.write(new File(setDir, "Vaccination CVX Code.xml").toPath(), CVX_SET.getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(setDir, "Vaccine Group.xml").toPath(), GROUP_SET.getBytes(StandardCharsets.UTF_8));
+    return setDir;
+  }
+
+  private static void assertIndex(CodebaseIndex index) {
+    assertTrue(index.hasCodeset("VACCINE_GROUP"));
+    assertNull(index.getCodeset("MISSING"));
+    assertNull(index.lookup("MISSING", "08"));
+    assertNull(index.lookup("VACCINATION_CVX_CODE", "99"));
+    assertNull(index.lookup("VACCINE_GROUP", "hepb"));
+
+    Code hepB = index.lookup("VACCINATION_CVX_CODE", "08");
+    assertEquals("Hep B, adolescent or pediatric", hepB.getLabel());
+    assertTrue(CodebaseIndex.isValid(hepB));
+    assertFalse(CodebaseIndex.isDeprecated(hepB));
+    List<Code> groupList = index.linksFrom(hepB, "VACCINE_GROUP");
+    assertEquals(1, groupList.size());
+    assertSame(index.lookup("VACCINE_GROUP", "HepB"), groupList.get(0));
+    assertTrue(index.linksFrom(hepB, "VACCINATION_CPT_CODE").isEmpty());
+    assertTrue(index.linksFrom("VACCINE_GROUP", "HepB", "VACCINATION_CVX_CODE").isEmpty());
+    assertTrue(index.linksFrom(null, "VACCINE_GROUP").isEmpty());
+
+    Code old = index.lookup("VACCINATION_CVX_CODE", "31");
+    assertEquals("Deprecated", index.getStatus("VACCINATION_CVX_CODE", "31"));
+    assertTrue(CodebaseIndex.isDeprecated(old));
+    assertSame(hepB, index.getReplacement(old));
+    assertNull(index.getReplacement(hepB));
+    assertNull(index.getStatus("VACCINE_GROUP", "HepB"));
+  }
+
+  public void testLoadSets() throws Exception {
+    assertIndex(CodebaseIndex.loadSets(createSetLocation()));
+  }
+
+  public void testLoadCompiled() throws Exception {
+    File setDir = createSetLocation();
+    File compiledFile = new File(tempFiles.createDirectory("compiled"), "Compiled.xml");
+    CodesetCompiler compiler = new CodesetCompiler(setDir);
+    compiler.setOut(new PrintStream(new ByteArrayOutputStream()));
+    compiler.compile(compiledFile);
+    assertIndex(CodebaseIndex.load(compiledFile));
+  }
+
+  public void testLinksFromCodeOutsideIndex() throws Exception {
+    CodebaseIndex index = new CodebaseIndex(new Codebase());
+    assertTrue(index.linksFrom(new Code(), "VACCINE_GROUP").isEmpty());
+    assertNull(index.getReplacement(new Code()));
+  }
+}
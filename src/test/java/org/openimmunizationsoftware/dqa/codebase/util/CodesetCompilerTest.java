@@ -0,0 +1,90 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class CodesetCompilerTest extends TestCase
+{
+  private static final String NL = System.lineSeparator();
+
+  private final TempFiles tempFiles = new TempFiles();
+
+  @Override
+  protected void tearDown() throws Exception {
+    tempFiles.deleteAll();
+    super.tearDown();
+  }
+
+  private static String indent(String content) {
+    return new String(CodesetCompiler.indent(content.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+  }
+
+  public void testIndentSplitsLinesLikeReadLine() {
+    assertEquals("", indent(""));
+    assertEquals("    " + NL, indent("\n"));
+    assertEquals("    a" + NL + "    b" + NL + "    c" + NL + "    d" + NL, indent("a\nb\r\nc\rd"));
+    assertEquals("    <codeset/>" + NL, indent("<?xml version=\"1.0\"?>\r\n<codeset/>\r\n"));
+    assertEquals("    a" + NL + "    <?xml?>" + NL, indent("a\n<?xml?>"));
+  }
+
+  public void testCompilesInFilenameOrder() throws Exception {
+    File dir = tempFiles.createDirectory("compile");
+    File setDir = new File(dir, "sets");
+    setDir.mkdir();
+    Files.write(new File(setDir, "b.xml").toPath(), "<?xml?>\n<b/>\n".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(setDir, "a.xml").toPath(), "<a/>".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(setDir, "notes.txt").toPath(), "skip".getBytes(StandardCharsets.UTF_8));
+    File compiledFile = new File(dir, "Compiled.xml");
+
+    CodesetCompiler compiler = new CodesetCompiler(setDir);
+    compiler.setOut(new PrintStream(new ByteArrayOutputStream()));
+    assertEquals(2, compiler.compile(compiledFile));
+    String compiled = new String(Files.readAllBytes(compiledFile.toPath()), StandardCharsets.UTF_8);
+    assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>" + NL + "<codebase>" + NL
+        + "    <a/>" + NL + "    <b/>" + NL + "</codebase>" + NL, compiled);
+  }
+
+  public void testRecompilesOnlyChangedSetFiles() throws Exception {
+    File dir = tempFiles.createDirectory("compile");
+    File setDir = new File(dir, "sets");
+    setDir.mkdir();
+    File setA = new File(setDir, "a.xml");
+    File setB = new File(setDir, "b.xml");
+    Files.write(setA.toPath(), "<codeset>\n<type>A</type>\n</codeset>\n".getBytes(StandardCharsets.UTF_8));
+    Files.write(setB.toPath(), "<codeset>\n<type>B</type>\n</codeset>\n".getBytes(StandardCharsets.UTF_8));
+    File compiledFile = new File(dir, "Compiled.xml");
+    CodesetCompiler compiler = new CodesetCompiler(setDir);
+    compiler.setOut(new PrintStream(new ByteArrayOutputStream()));
+    compiler.compile(compiledFile);
+    assertEquals(2, compiler.getRecompiledCount());
+
+    compiler.compile(compiledFile);
+    assertEquals(0, compiler.getRecompiledCount());
+    assertEquals(2, compiler.getReusedCount());
+
+    Files.write(setB.toPath(),
+        "<codeset>\n<type>B</type>\n<code/>\n</codeset>\n".getBytes(StandardCharsets.UTF_8));
+    compiler.compile(compiledFile);
+    assertEquals(1, compiler.getRecompiledCount());
+    assertEquals(1, compiler.getReusedCount());
+    byte[] incremental = Files.readAllBytes(compiledFile.toPath());
+
+    CompiledIndex index = CompiledIndex.load(CompiledIndex.getIndexFile(compiledFile));
+    assertTrue(index.describes(compiledFile));
+    byte[] block = CompiledIndex.readBlock(compiledFile, index.getEntryByType("B"));
+    String blockB = new String(block, StandardCharsets.UTF_8);
+    assertEquals("    <codeset>" + NL + "    <type>B</type>" + NL + "    <code/>" + NL + "    </codeset>" + NL, blockB);
+    assertEquals("a.xml", index.getEntryByType("A").getFilename());
+
+    compiler.setRebuild(true);
+    compiler.compile(compiledFile);
+    assertEquals(2, compiler.getRecompiledCount());
+    assertTrue(Arrays.equals(incremental, Files.readAllBytes(compiledFile.toPath())));
+  }
+}
@@ -0,0 +1,169 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code;
+
+import junit.framework.TestCase;
+
+public class CodesetWorkspaceTest extends TestCase
+{
+  private final TempFiles tempFiles = new TempFiles();
+
+  @Override
+  protected void tearDown() throws Exception {
+    tempFiles.deleteAll();
+    super.tearDown();
+  }
+
+  private static Codeset createCodeset(String type, String... values) {
+    Codeset codeset = new Codeset();
+    codeset.setType(type);
+    codeset.setLabel(type);
+    for (String value : values) {
+      Code code = new Code();
+      code.setValue(value);
+      code.setLabel(value);
+      codeset.getCode().add(code);
+    }
+    return codeset;
+  }
+
+  public void testReadsOnceAndWritesOnlyChanged() throws Exception {
+    File dir = tempFiles.createDirectory("workspace");
+    CodesetIO codesetIO = new CodesetIO();
+    File fileA = new File(dir, "A.xml");
+    File fileB = new File(dir, "B.xml");
+    codesetIO.marshal(createCodeset("A", "2", "1"), fileA);
+    codesetIO.marshal(createCodeset("B", "1"), fileB);
+    long modifiedB = fileB.lastModified();
+
+    CodesetWorkspace workspace = new CodesetWorkspace(dir, codesetIO);
+    IndexedCodeset codesetA = workspace.get("A.xml");
+    assertSame(codesetA, workspace.get("A.xml"));
+    workspace.get("B.xml");
+    assertEquals(2, workspace.getReadCount());
+
+    codesetA.getOrCreate("0").setLabel("0");
+    workspace.markChanged("A.xml");
+    assertTrue(workspace.isChanged("A.xml"));
+    assertFalse(workspace.isChanged("B.xml"));
+    assertEquals("0", codesetA.getCode().get(0).getValue());
+
+    assertEquals(Arrays.asList("A.xml"), workspace.flush());
+    assertEquals(1, workspace.getWriteCount());
+    assertFalse(workspace.isChanged("A.xml"));
+    assertEquals(3, codesetIO.unmarshal(fileA).getCode().size());
+    assertEquals(modifiedB, fileB.lastModified());
+  }
+
+  public void testUnchangedCodesetIsNotRewritten() throws Exception {
+    File dir = tempFiles.createDirectory("workspace");
+    CodesetIO codesetIO = new CodesetIO();
+    File file = new File(dir, "A.xml");
+    Codeset codeset = createCodeset("A", "1", "2");
+    codesetIO.marshal(codeset, file);
+    assertFalse(codesetIO.writeIfChanged(codeset, file));
+
+    CodesetWorkspace workspace = new CodesetWorkspace(dir, codesetIO);
+    workspace.get("A.xml");
+    workspace.markChanged("A.xml");
+    assertTrue(workspace.flush().isEmpty());
+    assertEquals(1, workspace.getUnchangedCount());
+
+    workspace.get("A.xml").getOrCreate("3").setLabel("3");
+    workspace.markChanged("A.xml");
+    assertEquals(Arrays.asList("A.xml"), workspace.flush());
+    assertEquals(3, codesetIO.unmarshal(file).getCode().size());
+    assertEquals(1, dir.list().length);
+  }
+
+  public void testRewriteKeepsPermissions() throws Exception {
+    File dir = tempFiles.createDirectory("workspace");
+    CodesetIO codesetIO = new CodesetIO();
+    File file = new File(dir, "A.xml");
+    codesetIO.marshal(createCodeset("A", "1"), file);
+    if (Files.getFileAttributeView(file.toPath(), PosixFileAttributeView.class) == null) {
+      return;
+    }
+    Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-rw-r--");
+    Files.setPosixFilePermissions(file.toPath(), permissions);
+    assertTrue(codesetIO.writeIfChanged(createCodeset("A", "1", "2"), file));
+    assertEquals(permissions, Files.getPosixFilePermissions(file.toPath()));
+    assertEquals(1, dir.list().length);
+  }
+
+  public void testSameFileIsReadOnceAcrossThreads() throws Exception {
+    File dir = tempFiles.createDirectory("workspace");
+    CodesetIO codesetIO = new CodesetIO();
+    codesetIO.marshal(createCodeset("A", "1"), new File(dir, "A.xml"));
+    codesetIO.marshal(createCodeset("B", "1"), new File(dir, "B.xml"));
+    CodesetWorkspace workspace = new CodesetWorkspace(dir, codesetIO);
+    List<Callable<IndexedCodeset>> taskList = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      String filename = i % 2 == 0 ? "A.xml" : "B.xml";
+      taskList.add(() -> workspace.get(filename));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<IndexedCodeset>> futureList = executor.invokeAll(taskList);
+      for (int i = 0; i < futureList.size(); i++) {
+        assertSame(futureList.get(i % 2).get(), futureList.get(i).get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(2, workspace.getReadCount());
+    assertEquals("B", workspace.get("B.xml").getType());
+  }
+
+  public void testFailedWriteIsReportedAndStaysChanged() throws Exception {
+    File dir = tempFiles.createDirectory("workspace");
+    CodesetIO codesetIO = new CodesetIO();
+    File fileA = new File(dir, "A.xml");
+    codesetIO.marshal(createCodeset("A", "1"), fileA);
+    codesetIO.marshal(createCodeset("B", "1"), new File(dir, "B.xml"));
+    CodesetWorkspace workspace = new CodesetWorkspace(dir, codesetIO);
+    workspace.get("A.xml").getOrCreate("2").setLabel("2");
+    workspace.get("B.xml").getOrCreate("2").setLabel("2");
+    workspace.markChanged("A.xml");
+    workspace.markChanged("B.xml");
+
+    // a directory that is not empty can not be replaced by the new file
+    assertTrue(fileA.delete());
+    assertTrue(new File(fileA, "blocked").mkdirs());
+    try {
+      workspace.flush();
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertEquals("Unable to write A.xml", e.getMessage());
+    }
+    assertTrue(workspace.isChanged("A.xml"));
+    assertFalse(workspace.isChanged("B.xml"));
+    assertEquals(1, workspace.getWriteCount());
+  }
+
+  public void testMarkChangedRequiresLoadedCodeset() throws Exception {
+    CodesetWorkspace workspace = new CodesetWorkspace(new File("."), new CodesetIO());
+    try {
+      workspace.markChanged("Missing.xml");
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.List;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+
+import junit.framework.TestCase;
+
+public class CompactCodebaseTest extends TestCase
+{
+  private static void assertSameCode(Codebase.Codeset.Code expected, CompactCodebase.Code actual) {
+    assertEquals(expected.getValue(), actual.getValue());
+    assertEquals(expected.getLabel(), actual.getLabel());
+    assertEquals(expected.getDescription(), actual.getDescription());
+    assertEquals(expected.getConceptType(), actual.getConceptType());
+    assertEquals(expected.getTestAge(), actual.getTestAge());
+    if (expected.getCodeStatus() == null) {
+      assertNull(actual.getCodeStatus());
+    } else {
+      assertEquals(expected.getCodeStatus().getStatus(), actual.getCodeStatus().getStatus());
+      Codebase.Codeset.Code.CodeStatus.Deprecated deprecated = expected.getCodeStatus().getDeprecated();
+      if (deprecated == null) {
+        assertNull(actual.getCodeStatus().getDeprecated());
+      } else {
+        assertEquals(deprecated.getNewCodeValue(), actual.getCodeStatus().getDeprecated().getNewCodeValue());
+        assertEquals(deprecated.getReason(), actual.getCodeStatus().getDeprecated().getReason());
+        assertEquals(deprecated.getEffectiveDate(), actual.getCodeStatus().getDeprecated().getEffectiveDate());
+      }
+    }
+    if (expected.getReference() == null) {
+      assertNull(actual.getReference());
+    } else {
+      List<Codebase.Codeset.Code.Reference.LinkTo> linkToList = expected.getReference().getLinkTo();
+      assertEquals(linkToList.size(), actual.getReference().getLinkTo().size());
+      for (int i = 0; i < linkToList.size(); i++) {
+        assertEquals(linkToList.get(i).getCodeset(), actual.getReference().getLinkTo().get(i).getCodeset());
+        assertEquals(linkToList.get(i).getValue(), actual.getReference().getLinkTo().get(i).getValue());
+      }
+    }
+    if (expected.getUseDate() == null) {
+      assertNull(actual.getUseDate());
+    } else {
+      assertEquals(expected.getUseDate().getNotBefore(), actual.getUseDate().getNotBefore());
+      assertEquals(expected.getUseDate().getNotExpectedBefore(), actual.getUseDate().getNotExpectedBefore());
+      assertEquals(expected.getUseDate().getNotExpectedAfter(), actual.getUseDate().getNotExpectedAfter());
+      assertEquals(expected.getUseDate().getNotAfter(), actual.getUseDate().getNotAfter());
+    }
+    if (expected.getUseAge() == null) {
+      assertNull(actual.getUseAge());
+    } else {
+      assertEquals(expected.getUseAge().getNotBeforeMonth(), actual.getUseAge().getNotBeforeMonth());
+      assertEquals(expected.getUseAge().getNotAfterMonth(), actual.getUseAge().getNotAfterMonth());
+    }
+  }
+
+  public void testViewsMatchBeans() {
+    Codebase codebase = CompiledCodebaseTest.createCodebase();
+    CompactCodebase compact = new CompactCodebase(codebase);
+    assertEquals(codebase.getCodeset().size(), compact.getCodesets().size());
+    for (int codeset = 0; codeset < codebase.getCodeset().size(); codeset++) {
+      Codebase.Codeset expected = codebase.getCodeset().get(codeset);
+      CompactCodebase.Codeset actual = compact.getCodesets().get(codeset);
+      assertEquals(expected.getLabel(), actual.getLabel());
+      assertEquals(expected.getType(), actual.getType());
+      assertEquals(expected.getCode().size(), actual.getCode().size());
+      for (int code = 0; code < expected.getCode().size(); code++) {
+        assertSameCode(expected.getCode().get(code), actual.getCode().get(code));
+      }
+    }
+    assertEquals(5, compact.getCodeCount());
+  }
+
+  public void testFindCode() {
+    CompactCodebase compact = new CompactCodebase(CompiledCodebaseTest.createCodebase());
+    CompactCodebase.Codeset vaccines = compact.getCodeset("VACCINATION_CVX_CODE");
+    assertEquals("Hep B, adolescent or pediatric", vaccines.getCode("08").getLabel());
+    assertEquals("\u00e9", vaccines.getCode("\u00e9").getValue());
+    assertNull(vaccines.getCode("85"));
+    assertNull(vaccines.getCode(null));
+    assertNull(compact.getCodeset("MISSING"));
+    assertEquals(-1, compact.findCode("MISSING", "08"));
+    int hepB = compact.findCode("VACCINATION_CVX_CODE", "08");
+    assertEquals(vaccines.getCode("08"), compact.getCode(hepB));
+    assertEquals(19810101, compact.getNotBefore(hepB));
+    assertFalse(CompiledCodebase.isPackedDate(compact.getNotExpectedAfter(hepB)));
+    assertEquals(CompiledCodebase.NO_DATE, compact.getNotAfter(hepB));
+    assertEquals(0, compact.getCodeCount(compact.findCodeset("EMPTY")));
+  }
+
+  public void testDuplicateValues() {
+    Codebase codebase = CompiledCodebaseTest.createCodebase();
+    Codebase.Codeset.Code duplicate = new Codebase.Codeset.Code();
+    duplicate.setValue("08");
+    duplicate.setLabel("Second");
+    codebase.getCodeset().get(0).getCode().add(duplicate);
+    CompactCodebase compact = new CompactCodebase(codebase);
+    assertEquals("Hep B, adolescent or pediatric", compact.getCodeset(0).getCode("08").getLabel());
+  }
+}
@@ -0,0 +1,139 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+
+import junit.framework.TestCase;
+
+public class CompiledCodebaseTest extends TestCase
+{
+  private final TempFiles tempFiles = new TempFiles();
+
+  @Override
+  protected void tearDown() throws Exception {
+    tempFiles.deleteAll();
+    super.tearDown();
+  }
+
+  private static Codebase.Codeset.Code createCode(String value, String label) {
+    Codebase.Codeset.Code code = new Codebase.Codeset.Code();
+    code.setValue(value);
+    code.setLabel(label);
+    return code;
+  }
+
+  static Codebase createCodebase() {
+    Codebase codebase = new Codebase();
+    Codebase.Codeset vaccines = new Codebase.Codeset();
+    vaccines.setLabel("Vaccination CVX Code");
+    vaccines.setType("VACCINATION_CVX_CODE");
+    Codebase.Codeset.Code hepB = createCode("08", "Hep B, adolescent or pediatric");
+    hepB.setConceptType("Vaccine");
+    Codebase.Codeset.Code.UseDate useDate = new Codebase.Codeset.Code.UseDate();
+    useDate.setNotBefore("19810101");
+    useDate.setNotExpectedAfter("sometime");
+    hepB.setUseDate(useDate);
+    Codebase.Codeset.Code.UseAge useAge = new Codebase.Codeset.Code.UseAge();
+    useAge.setNotBeforeMonth((byte) 0);
+    useAge.setNotAfterMonth((byte) -1);
+    hepB.setUseAge(useAge);
+    Codebase.Codeset.Code.Reference reference = new Codebase.Codeset.Code.Reference();
+    Codebase.Codeset.Code.Reference.LinkTo linkTo = new Codebase.Codeset.Code.Reference.LinkTo();
+    linkTo.setCodeset("VACCINE_GROUP");
+    linkTo.setValue("HepB");
+    reference.getLinkTo().add(linkTo);
+    hepB.setReference(reference);
+    Codebase.Codeset.Code old = createCode("31", "Hep A, pediatric, unspecified formulation");
+    Codebase.Codeset.Code.CodeStatus codeStatus = new Codebase.Codeset.Code.CodeStatus();
+    codeStatus.setStatus("Deprecated");
+    Codebase.Codeset.Code.CodeStatus.Deprecated deprecated = new Codebase.Codeset.Code.CodeStatus.Deprecated();
+    deprecated.setNewCodeValue("85");
+    deprecated.setEffectiveDate("20100101");
+    codeStatus.setDeprecated(deprecated);
+    old.setCodeStatus(codeStatus);
+    vaccines.getCode().add(old);
+    vaccines.getCode().add(hepB);
+    vaccines.getCode().add(createCode("\u00e9", "Accented"));
+    vaccines.getCode().add(createCode(null, "No value"));
+    codebase.getCodeset().add(vaccines);
+
+    Codebase.Codeset groups = new Codebase.Codeset();
+    groups.setLabel("Vaccine Group");
+    groups.setType("VACCINE_GROUP");
+    groups.getCode().add(createCode("HepB", "Hep B"));
+    codebase.getCodeset().add(groups);
+    Codebase.Codeset empty = new Codebase.Codeset();
+    empty.setType("EMPTY");
+    codebase.getCodeset().add(empty);
+    return codebase;
+  }
+
+  private static String marshal(Codebase codebase) throws Exception {
+    Marshaller marshaller = JAXBContext.newInstance(Codebase.class).createMarshaller();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    marshaller.marshal(codebase, out);
+    return out.toString("UTF-8");
+  }
+
+  private CompiledCodebase writeAndOpen(Codebase codebase) throws Exception {
+    File binaryFile = tempFiles.createFile("Compiled", ".bin");
+    new CompiledCodebaseWriter().write(codebase, 0, 0, binaryFile);
+    return CompiledCodebase.open(binaryFile);
+  }
+
+  public void testRoundTrip() throws Exception {
+    Codebase codebase = createCodebase();
+    CompiledCodebase compiled = writeAndOpen(codebase);
+    assertEquals(3, compiled.getCodesetCount());
+    assertEquals(5, compiled.getCodeCount());
+    assertEquals(1, compiled.getLinkCount());
+    assertEquals(marshal(codebase), marshal(compiled.toCodebase()));
+  }
+
+  public void testLookupsInPlace() throws Exception {
+    CompiledCodebase compiled = writeAndOpen(createCodebase());
+    int vaccines = compiled.findCodeset("VACCINATION_CVX_CODE");
+    assertEquals(0, vaccines);
+    assertEquals(-1, compiled.findCodeset("MISSING"));
+    assertEquals(-1, compiled.findCode("EMPTY", "08"));
+
+    int hepB = compiled.findCode(vaccines, "08");
+    assertEquals("Hep B, adolescent or pediatric", compiled.getLabel(hepB));
+    assertEquals(19810101, compiled.getNotBefore(hepB));
+    assertEquals(CompiledCodebase.NO_DATE, compiled.getNotAfter(hepB));
+    assertFalse(CompiledCodebase.isPackedDate(compiled.getNotExpectedAfter(hepB)));
+    assertEquals("sometime", compiled.getDateText(compiled.getNotExpectedAfter(hepB)));
+    assertEquals(-1, compiled.getNotAfterMonth(hepB));
+    assertEquals("VACCINE_GROUP", compiled.getLinkCodeset(hepB, 0));
+    assertEquals(compiled.findCode("VACCINE_GROUP", "HepB"),
+        compiled.findCode(compiled.getLinkCodeset(hepB, 0), compiled.getLinkValue(hepB, 0)));
+
+    int old = compiled.findCode(vaccines, "31");
+    assertTrue(compiled.isDeprecated(old));
+    assertEquals("85", compiled.getNewCodeValue(old));
+    assertEquals("20100101", compiled.getDateText(compiled.getEffectiveDate(old)));
+    assertEquals("Accented", compiled.getLabel(compiled.findCode(vaccines, "\u00e9")));
+    assertEquals(-1, compiled.findCode(vaccines, "0"));
+    assertEquals(-1, compiled.findCode(vaccines, "99"));
+  }
+
+  public void testDescribesCompiledFile() throws Exception {
+    File dir = tempFiles.createDirectory("binary");
+    File compiledFile = new File(dir, "Compiled.xml");
+    File binaryFile = new File(dir, CompileCodesets.BINARY_FILENAME);
+    Files.write(compiledFile.toPath(), marshal(createCodebase()).getBytes("UTF-8"));
+    assertFalse(CompiledCodebase.describes(binaryFile, compiledFile));
+    CompiledCodebaseWriter.write(compiledFile, binaryFile);
+    assertTrue(CompiledCodebase.describes(binaryFile, compiledFile));
+    assertEquals("Hep B", CompiledCodebase.open(binaryFile).getLabel(4));
+
+    Files.write(compiledFile.toPath(), "<codebase/>".getBytes("UTF-8"));
+    assertFalse(CompiledCodebase.describes(binaryFile, compiledFile));
+  }
+}
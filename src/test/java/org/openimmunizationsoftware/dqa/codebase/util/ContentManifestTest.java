@@ -0,0 +1,71 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ContentManifestTest extends TestCase
+{
+  private final TempFiles tempFiles = new TempFiles();
+
+  @Override
+  protected void tearDown() throws Exception {
+    tempFiles.deleteAll();
+    super.tearDown();
+  }
+
+  public void testDetectsChangedContent() throws Exception {
+    File dir = tempFiles.createDirectory("manifest");
+    File manifestFile = new File(dir, "manifest.properties");
+    File source = new File(dir, "mvx.xml");
+    Files.write(source.toPath(), "<MVXCodes/>".getBytes(StandardCharsets.UTF_8));
+
+    ContentManifest manifest = new ContentManifest(manifestFile);
+    assertFalse(manifest.isUnchanged("source.mvx.xml", source));
+    manifest.record("source.mvx.xml", source);
+    manifest.save();
+
+    manifest = new ContentManifest(manifestFile);
+    assertTrue(manifest.isUnchanged("source.mvx.xml", source));
+    assertFalse(manifest.isUnchanged("source.cvx.xml", source));
+
+    Files.write(source.toPath(), "<MVXCodes></MVXCodes>".getBytes(StandardCharsets.UTF_8));
+    manifest = new ContentManifest(manifestFile);
+    assertFalse(manifest.isUnchanged("source.mvx.xml", source));
+  }
+
+  public void testSavedInKeyOrderWithoutDate() throws Exception {
+    File dir = tempFiles.createDirectory("manifest");
+    File manifestFile = new File(dir, "manifest.properties");
+    File source = new File(dir, "mvx.xml");
+    Files.write(source.toPath(), "<MVXCodes/>".getBytes(StandardCharsets.UTF_8));
+
+    ContentManifest manifest = new ContentManifest(manifestFile);
+    manifest.record("source.mvx.xml", source);
+    manifest.record("set.Vaccination Manufacturer Code.xml", source);
+    manifest.save();
+    List<String> lineList = Files.readAllLines(manifestFile.toPath(), StandardCharsets.ISO_8859_1);
+    assertEquals(3, lineList.size());
+    assertTrue(lineList.get(0).startsWith("#"));
+    assertTrue(lineList.get(1).startsWith("set.Vaccination\\ Manufacturer\\ Code.xml="));
+    assertTrue(lineList.get(2).startsWith("source.mvx.xml="));
+
+    byte[] content = Files.readAllBytes(manifestFile.toPath());
+    manifest = new ContentManifest(manifestFile);
+    assertTrue(manifest.isUnchanged("set.Vaccination Manufacturer Code.xml", source));
+    manifest.record("source.mvx.xml", source);
+    manifest.save();
+    assertTrue(Arrays.equals(content, Files.readAllBytes(manifestFile.toPath())));
+  }
+
+  public void testDigest() throws Exception {
+    File file = tempFiles.createFile("digest", ".txt");
+    Files.write(file.toPath(), "abc".getBytes(StandardCharsets.UTF_8));
+    assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", ContentManifest.digest(file));
+    assertEquals("", ContentManifest.digest(new File(file.getPath() + ".missing")));
+  }
+}
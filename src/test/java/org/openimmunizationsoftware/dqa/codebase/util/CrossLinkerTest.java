@@ -0,0 +1,139 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code.Reference;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code.Reference.LinkTo;
+
+import junit.framework.TestCase;
+
+public class CrossLinkerTest extends TestCase
+{
+  private static final String[] TYPES = { "A", "B", "C", "D" };
+
+  /**
+   * Builds codesets with repeated links, links to missing codes and codesets,
+   * empty values, codes that repeat a value and codes linking to their own
+   * codeset.
+   */
+  private static List<IndexedCodeset> createCodesets(long seed) {
+    Random random = new Random(seed);
+    List<IndexedCodeset> codesetList = new ArrayList<>();
+    for (String type : TYPES) {
+      Codeset codeset = new Codeset();
+      codeset.setType(type);
+      int codeCount = 5 + random.nextInt(20);
+      for (int i = 0; i < codeCount; i++) {
+        Code code = new Code();
+        code.setValue(type + random.nextInt(codeCount));
+        code.setLabel(code.getValue());
+        codeset.getCode().add(code);
+      }
+      codesetList.add(new IndexedCodeset(codeset));
+    }
+    for (IndexedCodeset indexedCodeset : codesetList) {
+      for (Code code : indexedCodeset.getCode()) {
+        if (random.nextInt(4) == 0) {
+          continue;
+        }
+        Reference reference = new Reference();
+        int linkCount = random.nextInt(6);
+        for (int i = 0; i < linkCount; i++) {
+          LinkTo linkTo = new LinkTo();
+          int pick = random.nextInt(TYPES.length + 1);
+          String type = pick == TYPES.length ? "X" : TYPES[pick];
+          linkTo.setCodeset(type);
+          linkTo.setValue(random.nextInt(15) == 0 ? "" : type + random.nextInt(30));
+          reference.getLinkTo().add(linkTo);
+        }
+        code.setReference(reference);
+      }
+    }
+    return codesetList;
+  }
+
+  private static String describe(List<IndexedCodeset> codesetList) {
+    StringBuilder sb = new StringBuilder();
+    for (IndexedCodeset indexedCodeset : codesetList) {
+      for (Code code : indexedCodeset.getCode()) {
+        sb.append(code.getValue()).append(':');
+        if (code.getReference() != null) {
+          for (LinkTo linkTo : code.getReference().getLinkTo()) {
+            sb.append(' ').append(linkTo.getCodeset()).append('.').append(linkTo.getValue());
+          }
+        }
+        sb.append('\n');
+      }
+    }
+    return sb.toString();
+  }
+
+  public void testParallelMatchesSerial() {
+    PrintStream err = new PrintStream(new ByteArrayOutputStream());
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (long seed = 0; seed < 200; seed++) {
+        List<IndexedCodeset> serialList = createCodesets(seed);
+        List<IndexedCodeset> parallelList = createCodesets(seed);
+        CrossLinker serial = new CrossLinker(serialList, err);
+        CrossLinker parallel = new CrossLinker(parallelList, err);
+        if (seed % 3 == 0) {
+          serial.walkOnly(Arrays.asList("A", "C"));
+          parallel.walkOnly(Arrays.asList("A", "C"));
+        }
+        List<Codeset> serialChanged = serial.linkSerial();
+        List<Codeset> parallelChanged = parallel.link(pool);
+
+        for (int i = 0; i < TYPES.length; i++) {
+          assertEquals("examined, seed " + seed, serial.getLinksExamined(i), parallel.getLinksExamined(i));
+          assertEquals("removed, seed " + seed, serial.getLinksRemoved(i), parallel.getLinksRemoved(i));
+          assertEquals("made, seed " + seed, serial.getLinksMade(i), parallel.getLinksMade(i));
+        }
+        assertEquals("changed, seed " + seed, serialChanged.size(), parallelChanged.size());
+        for (int i = 0; i < serialChanged.size(); i++) {
+          assertEquals(serialChanged.get(i).getType(), parallelChanged.get(i).getType());
+        }
+        assertEquals("links, seed " + seed, describe(serialList), describe(parallelList));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  public void testLinksBackAndRemovesMissing() {
+    Codeset codesetA = new Codeset();
+    codesetA.setType("A");
+    Code a1 = new Code();
+    a1.setValue("a1");
+    new LinkIndex(a1).add("B", "b1");
+    new LinkIndex(a1).add("B", "missing");
+    codesetA.getCode().add(a1);
+    Codeset codesetB = new Codeset();
+    codesetB.setType("B");
+    Code b1 = new Code();
+    b1.setValue("b1");
+    codesetB.getCode().add(b1);
+    List<IndexedCodeset> codesetList = new ArrayList<>();
+    codesetList.add(new IndexedCodeset(codesetA));
+    codesetList.add(new IndexedCodeset(codesetB));
+
+    CrossLinker crossLinker = new CrossLinker(codesetList, new PrintStream(new ByteArrayOutputStream()));
+    List<Codeset> changedList = crossLinker.link(ForkJoinPool.commonPool());
+    assertTrue(new LinkIndex(b1).contains("A", "a1"));
+    assertEquals(1, a1.getReference().getLinkTo().size());
+    assertEquals(2, crossLinker.getLinksExamined(0));
+    assertEquals(1, crossLinker.getLinksRemoved(0));
+    assertEquals(1, crossLinker.getLinksMade(0));
+    assertEquals(1, crossLinker.getLinksExamined(1));
+    assertEquals(0, crossLinker.getLinksMade(1));
+    assertEquals(2, changedList.size());
+  }
+}
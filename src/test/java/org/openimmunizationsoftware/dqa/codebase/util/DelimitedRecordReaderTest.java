@@ -0,0 +1,52 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+public class DelimitedRecordReaderTest extends TestCase
+{
+  private static final String[] LINES = { "S1| 49281 |0400| 10 |Adacel|Tdap| 20190101|", "",
+      "||", "a|b||", " | x", "only one field", "trailing| " };
+
+  public void testMatchesSplitAndTrim() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < LINES.length; i++) {
+      sb.append(LINES[i]);
+      sb.append(i % 3 == 0 ? "\r\n" : (i % 3 == 1 ? "\n" : "\r"));
+    }
+    // a tiny buffer forces lines to straddle refills and the buffer to grow
+    DelimitedRecordReader in = new DelimitedRecordReader(new StringReader(sb.toString()), '|', 4);
+    for (String line : LINES) {
+      assertTrue(in.next());
+      String[] parts = line.split("\\|");
+      assertEquals(line, line.length(), in.getLineLength());
+      assertEquals(line, parts.length, in.getFieldCount());
+      for (int i = 0; i < parts.length; i++) {
+        assertEquals(parts[i].trim(), in.get(i));
+        assertEquals(parts[i].trim().length(), in.length(i));
+      }
+    }
+    assertFalse(in.next());
+    assertEquals(LINES.length, in.getLineCount());
+    in.close();
+  }
+
+  public void testLastLineWithoutNewline() throws IOException {
+    DelimitedRecordReader in = new DelimitedRecordReader(new StringReader("a|b\nc|d"), '|');
+    assertTrue(in.next());
+    assertEquals("b", in.get(1));
+    assertTrue(in.next());
+    assertEquals("c", in.get(0));
+    assertEquals("d", in.get(1));
+    assertFalse(in.next());
+    try {
+      in.get(2);
+      fail("Expected missing field to be rejected");
+    } catch (ArrayIndexOutOfBoundsException e) {
+      // expected
+    }
+    in.close();
+  }
+}
@@ -0,0 +1,45 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code;
+
+import junit.framework.TestCase;
+
+public class IndexedCodesetTest extends TestCase
+{
+  private static Code createCode(String value) {
+    Code code = new Code();
+    code.setValue(value);
+    code.setLabel(value);
+    return code;
+  }
+
+  public void testLookupIgnoresCaseAndFindsLastMatch() {
+    Codeset codeset = new Codeset();
+    Code first = createCode("abc");
+    Code second = createCode("ABC");
+    codeset.getCode().add(first);
+    codeset.getCode().add(second);
+    IndexedCodeset indexedCodeset = new IndexedCodeset(codeset);
+
+    assertSame(second, indexedCodeset.get("aBc"));
+    assertSame(first, indexedCodeset.getExact("abc"));
+    assertSame(second, indexedCodeset.getExact("ABC"));
+    assertNull(indexedCodeset.getExact("Abc"));
+    assertNull(indexedCodeset.get(null));
+  }
+
+  public void testGetOrCreateKeepsIndexInSync() {
+    Codeset codeset = new Codeset();
+    IndexedCodeset indexedCodeset = new IndexedCodeset(codeset);
+    Code created = indexedCodeset.getOrCreate("49281-0400-10");
+    assertEquals(1, codeset.getCode().size());
+    assertSame(created, indexedCodeset.getOrCreate("49281-0400-10"));
+    assertEquals(1, codeset.getCode().size());
+
+    Code added = createCode("4928104001");
+    indexedCodeset.add(added);
+    assertSame(added, indexedCodeset.get("4928104001"));
+    assertEquals(2, indexedCodeset.size());
+  }
+}
@@ -0,0 +1,120 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase.Codeset.Code;
+
+import junit.framework.TestCase;
+
+public class LinkGraphTest extends TestCase
+{
+  private static Codebase.Codeset createCodeset(Codebase codebase, String type, String... values) {
+    Codebase.Codeset codeset = new Codebase.Codeset();
+    codeset.setType(type);
+    for (String value : values) {
+      Code code = new Code();
+      code.setValue(value);
+      codeset.getCode().add(code);
+    }
+    codebase.getCodeset().add(codeset);
+    return codeset;
+  }
+
+  private static void link(Codebase.Codeset codeset, String value, String targetType, String targetValue) {
+    for (Code code : codeset.getCode()) {
+      if (code.getValue().equals(value)) {
+        if (code.getReference() == null) {
+          code.setReference(new Code.Reference());
+        }
+        Code.Reference.LinkTo linkTo = new Code.Reference.LinkTo();
+        linkTo.setCodeset(targetType);
+        linkTo.setValue(targetValue);
+        code.getReference().getLinkTo().add(linkTo);
+      }
+    }
+  }
+
+  private static List<String> values(LinkGraph graph, LinkGraph.Links links, int code) {
+    List<String> valueList = new ArrayList<>();
+    for (int i = 0; i < links.count(code); i++) {
+      valueList.add(graph.getCode(links.get(code, i)).getValue());
+    }
+    return valueList;
+  }
+
+  private static Codebase createCodebase() {
+    Codebase codebase = new Codebase();
+    Codebase.Codeset ndc = createCodeset(codebase, CodesetType.NDC_UNIT_OF_SALE, "00006-4981-00", "58160-0820-52",
+        "99999-9999-99");
+    Codebase.Codeset cvx = createCodeset(codebase, CodesetType.CVX, "08", "110", "43");
+    createCodeset(codebase, CodesetType.VACCINE_GROUP, "HepB", "DTaP", "Polio");
+    Codebase.Codeset tradeName = createCodeset(codebase, CodesetType.TRADE_NAME, "PEDIARIX");
+    createCodeset(codebase, CodesetType.MVX, "SKB");
+    link(ndc, "00006-4981-00", CodesetType.CVX, "08");
+    link(ndc, "58160-0820-52", CodesetType.CVX, "110");
+    link(ndc, "58160-0820-52", CodesetType.CVX, "43");
+    link(ndc, "58160-0820-52", CodesetType.CVX, "missing");
+    link(cvx, "08", CodesetType.VACCINE_GROUP, "HepB");
+    link(cvx, "43", CodesetType.VACCINE_GROUP, "HepB");
+    link(cvx, "110", CodesetType.VACCINE_GROUP, "DTaP");
+    link(cvx, "110", CodesetType.VACCINE_GROUP, "HepB");
+    link(cvx, "110", CodesetType.VACCINE_GROUP, "Polio");
+    link(cvx, "110", CodesetType.VACCINE_GROUP, "Polio");
+    link(tradeName, "PEDIARIX", CodesetType.MVX, "SKB");
+    link(tradeName, "PEDIARIX", CodesetType.CVX, "110");
+    return codebase;
+  }
+
+  public void testDirectLinks() {
+    LinkGraph graph = new LinkGraph(createCodebase());
+    assertEquals(11, graph.getCodeCount());
+    int ndc = graph.findCodeset(CodesetType.NDC_UNIT_OF_SALE);
+    int cvx = graph.findCodeset(CodesetType.CVX);
+    int group = graph.findCodeset(CodesetType.VACCINE_GROUP);
+    int pediarix = graph.findCode(ndc, "58160-0820-52");
+    assertEquals(1, pediarix);
+    assertEquals(ndc, graph.getCodesetOf(pediarix));
+    assertEquals(Arrays.asList("110", "43"), values(graph, graph.links(ndc, cvx), pediarix));
+    assertEquals(Arrays.asList("DTaP", "HepB", "Polio"),
+        values(graph, graph.links(cvx, group), graph.findCode(CodesetType.CVX, "110")));
+    assertEquals(0, graph.links(ndc, group).count(pediarix));
+    assertEquals(0, graph.links(ndc, cvx).count(graph.findCode(cvx, "08")));
+    assertEquals(-1, graph.findCode(CodesetType.CVX, "missing"));
+    assertEquals(-1, graph.findCode("MISSING", "08"));
+    assertEquals(3, graph.getCodeId(graph.getCode(3)));
+    assertEquals(-1, graph.getCodeId(new Code()));
+  }
+
+  public void testClosures() {
+    LinkGraph graph = new LinkGraph(createCodebase());
+    LinkGraph.Links ndcGroups = graph.closure(CodesetType.NDC_UNIT_OF_SALE, CodesetType.VACCINE_GROUP);
+    assertEquals(Arrays.asList("HepB"), values(graph, ndcGroups, graph.findCode(CodesetType.NDC_UNIT_OF_SALE,
+        "00006-4981-00")));
+    assertEquals(Arrays.asList("DTaP", "HepB", "Polio"), values(graph, ndcGroups,
+        graph.findCode(CodesetType.NDC_UNIT_OF_SALE, "58160-0820-52")));
+    assertEquals(Collections.emptyList(), values(graph, ndcGroups, graph.findCode(CodesetType.NDC_UNIT_OF_SALE,
+        "99999-9999-99")));
+    LinkGraph.Links tradeNameMvx = graph.closure(CodesetType.TRADE_NAME, CodesetType.MVX);
+    assertEquals(Arrays.asList("SKB"), values(graph, tradeNameMvx, graph.findCode(CodesetType.TRADE_NAME,
+        "PEDIARIX")));
+    assertEquals(3, graph.closure(CodesetType.TRADE_NAME, CodesetType.VACCINE_GROUP).size());
+    assertNull(graph.closure(CodesetType.NDC_UNIT_OF_USE, CodesetType.VACCINE_GROUP));
+    assertNull(graph.closure(CodesetType.CVX, CodesetType.MVX));
+  }
+
+  public void testPathsToTheSameCodesetAreMerged() {
+    List<String[]> pathList = new ArrayList<>();
+    pathList.add(new String[] { CodesetType.TRADE_NAME, CodesetType.CVX });
+    pathList.add(new String[] { CodesetType.TRADE_NAME, CodesetType.CVX, CodesetType.VACCINE_GROUP, CodesetType.CVX });
+    Codebase codebase = createCodebase();
+    link(codebase.getCodeset().get(2), "HepB", CodesetType.CVX, "08");
+    LinkGraph graph = new LinkGraph(codebase, pathList);
+    LinkGraph.Links tradeNameCvx = graph.closure(CodesetType.TRADE_NAME, CodesetType.CVX);
+    assertEquals(Arrays.asList("110", "08"), values(graph, tradeNameCvx, graph.findCode(CodesetType.TRADE_NAME,
+        "PEDIARIX")));
+  }
+}
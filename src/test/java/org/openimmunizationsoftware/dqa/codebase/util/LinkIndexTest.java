@@ -0,0 +1,72 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.Iterator;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code.Reference;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset.Code.Reference.LinkTo;
+
+import junit.framework.TestCase;
+
+public class LinkIndexTest extends TestCase
+{
+  private static LinkTo createLinkTo(String codeset, String value) {
+    LinkTo linkTo = new LinkTo();
+    linkTo.setCodeset(codeset);
+    linkTo.setValue(value);
+    return linkTo;
+  }
+
+  public void testAddIsUnique() {
+    Code code = new Code();
+    LinkIndex linkIndex = new LinkIndex(code);
+    assertTrue(linkIndex.add("VACCINATION_CVX_CODE", "03"));
+    assertFalse(linkIndex.add("VACCINATION_CVX_CODE", "03"));
+    assertTrue(linkIndex.add("VACCINE_GROUP", "03"));
+    assertEquals(2, code.getReference().getLinkTo().size());
+    assertTrue(linkIndex.contains("VACCINE_GROUP", "03"));
+    assertFalse(linkIndex.contains("VACCINE_GROUP", "04"));
+  }
+
+  public void testBuiltFromExistingLinks() {
+    Code code = new Code();
+    code.setReference(new Reference());
+    LinkTo linkTo = createLinkTo("VACCINATION_MANUFACTURER_CODE", "MSD");
+    code.getReference().getLinkTo().add(linkTo);
+    code.getReference().getLinkTo().add(createLinkTo("VACCINATION_MANUFACTURER_CODE", "MSD"));
+    LinkIndex linkIndex = new LinkIndex(code);
+    assertTrue(linkIndex.contains("VACCINATION_MANUFACTURER_CODE", "MSD"));
+    assertFalse(linkIndex.add("VACCINATION_MANUFACTURER_CODE", "MSD"));
+
+    // the repeated link is still there after one copy is removed
+    assertTrue(linkIndex.remove(linkTo));
+    assertFalse(linkIndex.remove(linkTo));
+    assertTrue(linkIndex.contains("VACCINATION_MANUFACTURER_CODE", "MSD"));
+
+    Iterator<LinkTo> it = linkIndex.iterator();
+    it.next();
+    it.remove();
+    assertFalse(it.hasNext());
+    assertFalse(linkIndex.contains("VACCINATION_MANUFACTURER_CODE", "MSD"));
+    assertTrue(linkIndex.add("VACCINATION_MANUFACTURER_CODE", "MSD"));
+    assertEquals(1, code.getReference().getLinkTo().size());
+  }
+
+  public void testIndexedCodesetKeepsOneIndexPerCode() {
+    Codeset codeset = new Codeset();
+    codeset.setType("VACCINATION_CVX_CODE");
+    IndexedCodeset indexedCodeset = new IndexedCodeset(codeset);
+    Code code = indexedCodeset.getOrCreate("08");
+    LinkIndex linkIndex = indexedCodeset.getLinkIndex(code);
+    assertSame(linkIndex, indexedCodeset.getLinkIndex(code));
+    linkIndex.add("VACCINE_GROUP", "HepB");
+
+    // a link changed in place is picked up once the codeset is reindexed
+    code.getReference().getLinkTo().get(0).setValue("Polio");
+    indexedCodeset.reindex();
+    assertNotSame(linkIndex, indexedCodeset.getLinkIndex(code));
+    assertTrue(indexedCodeset.getLinkIndex(code).contains("VACCINE_GROUP", "Polio"));
+    assertFalse(indexedCodeset.getLinkIndex(code).contains("VACCINE_GROUP", "HepB"));
+  }
+}
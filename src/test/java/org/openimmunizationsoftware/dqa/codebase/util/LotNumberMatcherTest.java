@@ -0,0 +1,99 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase.Codeset.Code;
+
+import junit.framework.TestCase;
+
+public class LotNumberMatcherTest extends TestCase
+{
+  private static final String MVX = "VACCINATION_MANUFACTURER_CODE";
+
+  private static CodebaseIndex createIndex(String... patterns) {
+    Codebase.Codeset patternCodeset = new Codebase.Codeset();
+    patternCodeset.setType(CodesetType.LOT_NUMBER_PATTERN);
+    Codebase.Codeset mvxCodeset = new Codebase.Codeset();
+    mvxCodeset.setType(MVX);
+    for (int i = 0; i < patterns.length; i++) {
+      Code code = new Code();
+      code.setValue(patterns[i]);
+      Code.Reference reference = new Code.Reference();
+      Code.Reference.LinkTo linkTo = new Code.Reference.LinkTo();
+      linkTo.setCodeset(MVX);
+      linkTo.setValue("M" + (i % 3));
+      reference.getLinkTo().add(linkTo);
+      code.setReference(reference);
+      patternCodeset.getCode().add(code);
+    }
+    for (int i = 0; i < 3; i++) {
+      Code code = new Code();
+      code.setValue("M" + i);
+      mvxCodeset.getCode().add(code);
+    }
+    Codebase codebase = new Codebase();
+    codebase.getCodeset().add(patternCodeset);
+    codebase.getCodeset().add(mvxCodeset);
+    return new CodebaseIndex(codebase);
+  }
+
+  private static String values(List<Code> codeList) {
+    StringBuilder sb = new StringBuilder();
+    for (Code code : codeList) {
+      if (sb.length() > 0) {
+        sb.append(" ");
+      }
+      sb.append(code.getValue());
+    }
+    return sb.toString();
+  }
+
+  public void testFindFirstChars() {
+    assertEquals("{65}", String.valueOf(LotNumberMatcher.findFirstChars("^A\\d+")));
+    assertEquals("{48, 49, 50, 51, 52, 53, 54, 55, 56, 57}", String.valueOf(LotNumberMatcher.findFirstChars("^\\d")));
+    assertEquals("{45, 65, 66, 67, 120}", String.valueOf(LotNumberMatcher.findFirstChars("^[A-Cx-]{2}")));
+    assertNull(LotNumberMatcher.findFirstChars("A\\d+"));
+    assertNull(LotNumberMatcher.findFirstChars("^A?B"));
+    assertNull(LotNumberMatcher.findFirstChars("^A*B"));
+    assertNull(LotNumberMatcher.findFirstChars("^A{0,1}B"));
+    assertNull(LotNumberMatcher.findFirstChars("^A|B"));
+    assertNull(LotNumberMatcher.findFirstChars("^[^A]"));
+    assertNull(LotNumberMatcher.findFirstChars("^(?i)a"));
+    assertNull(LotNumberMatcher.findFirstChars("^.A"));
+    assertNull(LotNumberMatcher.findFirstChars("^"));
+  }
+
+  public void testMatchesEveryPattern() {
+    LotNumberMatcher matcher = new LotNumberMatcher(createIndex("^[A-Z]{2}\\d{4}$", "^U\\d+", "\\d{4}$", "^U",
+        "^(", "^AB"));
+    assertEquals(5, matcher.getPatternCount());
+    assertEquals(4, matcher.getSortedCount());
+    assertEquals(Arrays.asList("^("), matcher.getInvalidPatternList());
+    assertEquals("^[A-Z]{2}\\d{4}$ \\d{4}$ ^AB", values(matcher.match("AB1234")));
+    assertEquals("^[A-Z]{2}\\d{4}$ \\d{4}$ ^U", values(matcher.match("UX1234")));
+    assertEquals("^U\\d+ \\d{4}$ ^U", values(matcher.match("U1234")));
+    assertEquals("\\d{4}$", values(matcher.match("x1234")));
+    assertEquals("", values(matcher.match("")));
+    assertEquals("", values(matcher.match(null)));
+    assertEquals("M1 M2 M0", values(matcher.matchLinked("U1234", MVX)));
+  }
+
+  public void testAgreesWithTryingEveryPattern() {
+    String[] patterns = { "^[A-Z]{2}\\d{4}$", "^U\\d+", "\\d{4}$", "^U", "^AB", "^[0-9]+[A-Z]$", "^\\d{6}",
+        "^[a-f0-9]{3}", "X", "^EH[0-9]" };
+    LotNumberMatcher matcher = new LotNumberMatcher(createIndex(patterns));
+    Random random = new Random(1);
+    String alphabet = "ABEHUXabf0123456789-\u00e9";
+    for (int i = 0; i < 5000; i++) {
+      char[] lot = new char[random.nextInt(8)];
+      for (int j = 0; j < lot.length; j++) {
+        lot[j] = alphabet.charAt(random.nextInt(alphabet.length()));
+      }
+      String lotNumber = new String(lot);
+      assertEquals(lotNumber, matcher.matchEvery(lotNumber), matcher.match(lotNumber));
+    }
+  }
+}
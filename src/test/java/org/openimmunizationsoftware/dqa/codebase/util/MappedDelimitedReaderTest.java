@@ -0,0 +1,47 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+public class MappedDelimitedReaderTest extends TestCase
+{
+  public void testSameRecordsAsSerialReader() throws IOException {
+    File file = File.createTempFile("ndc", ".txt");
+    file.deleteOnExit();
+    PrintWriter out = new PrintWriter(new FileWriter(file));
+    for (int i = 0; i < 500; i++) {
+      out.print("S" + i + "| " + (49281 + i) + " |0400||Vaccine " + i + (i % 7 == 0 ? "||" : "|20190101"));
+      out.print(i % 2 == 0 ? "\n" : "\r\n");
+    }
+    out.print("last|line");
+    out.close();
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try (DelimitedRecord serial = new DelimitedRecordReader(new FileReader(file), '|');
+        MappedDelimitedReader mapped = new MappedDelimitedReader(file, '|', Charset.defaultCharset(), pool, 64)) {
+      assertTrue(mapped.getChunkCount() > 1);
+      int lineCount = 0;
+      while (serial.next()) {
+        assertTrue(mapped.next());
+        lineCount++;
+        assertEquals(serial.getLineLength(), mapped.getLineLength());
+        assertEquals(serial.getFieldCount(), mapped.getFieldCount());
+        for (int i = 0; i < serial.getFieldCount(); i++) {
+          assertEquals(serial.get(i), mapped.get(i));
+          assertEquals(serial.length(i), mapped.length(i));
+        }
+      }
+      assertFalse(mapped.next());
+      assertEquals(501, lineCount);
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase.Codeset.Code;
+
+import junit.framework.TestCase;
+
+public class NdcIndexTest extends TestCase
+{
+  private static Code createCode(Codebase.Codeset codeset, String value) {
+    Code code = new Code();
+    code.setValue(value);
+    codeset.getCode().add(code);
+    return code;
+  }
+
+  private static void link(Code code, String codesetType, String value) {
+    if (code.getReference() == null) {
+      code.setReference(new Code.Reference());
+    }
+    Code.Reference.LinkTo linkTo = new Code.Reference.LinkTo();
+    linkTo.setCodeset(codesetType);
+    linkTo.setValue(value);
+    code.getReference().getLinkTo().add(linkTo);
+  }
+
+  private static void deprecate(Code code, String newCodeValue) {
+    code.setCodeStatus(new Code.CodeStatus());
+    code.getCodeStatus().setStatus("Deprecated");
+    code.getCodeStatus().setDeprecated(new Code.CodeStatus.Deprecated());
+    code.getCodeStatus().getDeprecated().setNewCodeValue(newCodeValue);
+  }
+
+  private static Codebase.Codeset createCodeset(Codebase codebase, String type) {
+    Codebase.Codeset codeset = new Codebase.Codeset();
+    codeset.setType(type);
+    codebase.getCodeset().add(codeset);
+    return codeset;
+  }
+
+  public void testParse() {
+    assertEquals(12345678901L, NdcKey.parse("12345-6789-01"));
+    assertEquals(12345678901L, NdcKey.parse(" 12345678901 "));
+    assertEquals(1234567801L, NdcKey.parse("1234-5678-01"));
+    assertEquals(12345067801L, NdcKey.parse("12345-678-01"));
+    assertEquals(12345678901L, NdcKey.parse("12345-6789-1"));
+    assertEquals(NdcKey.AMBIGUOUS, NdcKey.parse("1234567890"));
+    assertEquals(NdcKey.NO_KEY, NdcKey.parse("123-4567-890"));
+    assertEquals(NdcKey.NO_KEY, NdcKey.parse("12345-6789-01-1"));
+    assertEquals(NdcKey.NO_KEY, NdcKey.parse("12345-6789-0A"));
+    assertEquals(NdcKey.NO_KEY, NdcKey.parse("123456789012"));
+    assertEquals(NdcKey.NO_KEY, NdcKey.parse(""));
+    assertEquals(NdcKey.NO_KEY, NdcKey.parse(null));
+  }
+
+  public void testParseTenDigit() {
+    assertEquals(NdcKey.parse("1234-5678-90"), NdcKey.parseTenDigit("1234567890", NdcKey.LAYOUT_4_4_2));
+    assertEquals(NdcKey.parse("12345-678-90"), NdcKey.parseTenDigit("1234567890", NdcKey.LAYOUT_5_3_2));
+    assertEquals(NdcKey.parse("12345-6789-0"), NdcKey.parseTenDigit("1234567890", NdcKey.LAYOUT_5_4_1));
+    assertEquals(NdcKey.NO_KEY, NdcKey.parseTenDigit("12345678901", NdcKey.LAYOUT_4_4_2));
+  }
+
+  public void testToString() {
+    assertEquals("01234-5678-01", NdcKey.toString(NdcKey.parse("1234-5678-01")));
+    assertEquals("00000-0000-00", NdcKey.toString(0));
+  }
+
+  public void testFind() {
+    Codebase codebase = new Codebase();
+    Codebase.Codeset sale = createCodeset(codebase, CodesetType.NDC_UNIT_OF_SALE);
+    Codebase.Codeset use = createCodeset(codebase, CodesetType.NDC_UNIT_OF_USE);
+    createCode(createCodeset(codebase, CodesetType.CVX), "08");
+    createCode(createCodeset(codebase, CodesetType.MVX), "MSD");
+    Code current = createCode(sale, "00006-4981-00");
+    link(current, CodesetType.CVX, "08");
+    link(current, CodesetType.MVX, "MSD");
+    deprecate(createCode(sale, "0006-4981-00"), "00006-4981-00");
+    deprecate(createCode(sale, "00006498100"), "00006-4981-00");
+    Code unit = createCode(use, "58160-0820-52");
+    for (int i = 0; i < 100; i++) {
+      createCode(use, NdcKey.toString(70000000000L + i * 7919L));
+    }
+    NdcIndex index = new NdcIndex(new CodebaseIndex(codebase));
+    assertEquals(102, index.getRecordCount());
+
+    int record = index.find("00006-4981-00");
+    assertSame(current, index.getNdcCode(record));
+    assertEquals(record, index.find("0006-4981-00"));
+    assertEquals(record, index.find("00006498100"));
+    assertEquals(record, index.find("0006498100"));
+    assertEquals(record, index.find(NdcKey.parse("00006-4981-00")));
+    assertFalse(index.isUnitOfUse(record));
+    assertEquals("08", index.getCvxCode(record).getValue());
+    assertEquals("MSD", index.getMvxCode(record).getValue());
+
+    int unitRecord = index.find("5816082052");
+    assertNotSame(-1, unitRecord);
+    assertSame(unit, index.getNdcCode(unitRecord));
+    assertTrue(index.isUnitOfUse(unitRecord));
+    assertNull(index.getCvxCode(unitRecord));
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i + 2, index.find(70000000000L + i * 7919L));
+    }
+    assertEquals(-1, index.find("00006-4981-01"));
+    assertEquals(-1, index.find("not an ndc"));
+    assertEquals(-1, index.find(NdcKey.NO_KEY));
+  }
+}
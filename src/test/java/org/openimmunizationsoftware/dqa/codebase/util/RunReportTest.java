@@ -0,0 +1,63 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+public class RunReportTest extends TestCase
+{
+  public void testStepsAndTotals() throws Exception {
+    StepScheduler scheduler = new StepScheduler();
+    scheduler.add("Read", () -> {
+      StepScheduler.count(RunReport.RECORDS_PARSED, 10);
+      StepScheduler.count(RunReport.CODES_ADDED, 2);
+    });
+    scheduler.add("Link", () -> StepScheduler.count(RunReport.LINKS_MADE, 4), "Read");
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      scheduler.run(executor);
+    } finally {
+      executor.shutdown();
+    }
+
+    RunReport report = new RunReport();
+    report.setAttribute("location", "C:\\codebase");
+    report.setAttribute("incremental", false);
+    report.addStep(scheduler, "Read");
+    report.addStep(scheduler, "Link");
+    report.addPhase("Write", StepScheduler.STATUS_DONE, 0, 5, 1).count(RunReport.BYTES_WRITTEN, 1000);
+    report.finish(null);
+
+    assertEquals(3, report.getPhases().size());
+    assertEquals(StepScheduler.STATUS_DONE, report.getPhases().get(0).getStatus());
+    assertEquals(10, report.getPhases().get(0).getCount(RunReport.RECORDS_PARSED));
+    assertEquals(0, report.getPhases().get(0).getCount(RunReport.LINKS_MADE));
+    assertEquals(4, report.getTotal(RunReport.LINKS_MADE));
+    assertEquals(1000, report.getTotal(RunReport.BYTES_WRITTEN));
+
+    String json = report.toJson();
+    assertTrue(json.contains("\"status\": \"done\""));
+    assertTrue(json.contains("\"location\": \"C:\\\\codebase\""));
+    assertTrue(json.contains("\"incremental\": false"));
+    assertTrue(json.contains("\"name\": \"Link\""));
+    assertTrue(json.contains("\"codesAdded\": 2"));
+    assertFalse(json.contains("\"failure\""));
+  }
+
+  public void testFailure() {
+    RunReport report = new RunReport();
+    report.addPhase("NDC", StepScheduler.STATUS_SKIPPED, 0, 0, 0);
+    report.finish(new IOException("Unable to read \"NDC_Linker.txt\""));
+    String json = report.toJson();
+    assertTrue(json.contains("\"status\": \"failed\""));
+    assertTrue(json.contains("\"failure\": \"java.io.IOException: Unable to read \\\"NDC_Linker.txt\\\"\""));
+    assertTrue(json.contains("\"status\": \"skipped\""));
+  }
+
+  public void testQuote() {
+    assertEquals("\"a\\tb\\n\\u0001\"", RunReport.quote("a\tb\n\u0001"));
+    assertEquals("null", RunReport.quote(null));
+  }
+}
@@ -0,0 +1,116 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+public class StepSchedulerTest extends TestCase
+{
+  private ExecutorService executor;
+
+  @Override
+  protected void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @Override
+  protected void tearDown() {
+    executor.shutdown();
+  }
+
+  public void testRunsDependentStepsAfterTheirDependencies() throws Exception {
+    List<String> ranList = Collections.synchronizedList(new ArrayList<String>());
+    StepScheduler scheduler = new StepScheduler();
+    scheduler.add("a", () -> {
+      Thread.sleep(50);
+      ranList.add("a");
+    });
+    scheduler.add("b", () -> ranList.add("b"));
+    scheduler.add("c", () -> ranList.add("c"), "a");
+    scheduler.add("d", () -> ranList.add("d"), "b", "c");
+    scheduler.run(executor);
+
+    assertEquals(4, ranList.size());
+    assertTrue(ranList.indexOf("a") < ranList.indexOf("c"));
+    assertTrue(ranList.indexOf("c") < ranList.indexOf("d"));
+    assertTrue(ranList.indexOf("b") < ranList.indexOf("d"));
+    assertEquals(Arrays.asList("a", "c", "d"), scheduler.getCriticalPath());
+  }
+
+  public void testFailureSkipsDependentSteps() {
+    List<String> ranList = Collections.synchronizedList(new ArrayList<String>());
+    StepScheduler scheduler = new StepScheduler();
+    scheduler.add("a", () -> {
+      throw new IOException("a failed");
+    });
+    scheduler.add("b", () -> ranList.add("b"));
+    scheduler.add("c", () -> ranList.add("c"), "a");
+    try {
+      scheduler.run(executor);
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertEquals("a failed", e.getMessage());
+    }
+    assertEquals(Arrays.asList("b"), ranList);
+    assertEquals(StepScheduler.STATUS_FAILED, scheduler.getStatus("a"));
+    assertEquals(StepScheduler.STATUS_DONE, scheduler.getStatus("b"));
+    assertEquals(StepScheduler.STATUS_SKIPPED, scheduler.getStatus("c"));
+  }
+
+  public void testCountersAreKeptPerStep() throws Exception {
+    StepScheduler scheduler = new StepScheduler();
+    scheduler.add("a", () -> {
+      StepScheduler.count("records", 2);
+      StepScheduler.count("records", 3);
+    });
+    scheduler.add("b", () -> StepScheduler.count("links", 1));
+    StepScheduler.count("records", 100);
+    scheduler.run(executor);
+
+    assertEquals(Collections.singletonMap("records", 5L), scheduler.getCounters("a"));
+    assertEquals(Collections.singletonMap("links", 1L), scheduler.getCounters("b"));
+    assertTrue(scheduler.getCounters("missing").isEmpty());
+    assertTrue(scheduler.getCpuMillis("a") >= 0);
+  }
+
+  public void testCpuOfTasksHandedOutIsKeptWithStep() throws Exception {
+    if (StepScheduler.threadCpuNanos() < 0) {
+      return;
+    }
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      StepScheduler scheduler = new StepScheduler();
+      scheduler.add("a", () -> {
+        pool.submit(StepScheduler.inStep(() -> {
+          long start = StepScheduler.threadCpuNanos();
+          long sum = 0;
+          while (StepScheduler.threadCpuNanos() - start < 200000000L) {
+            sum++;
+          }
+          return sum;
+        })).get();
+      });
+      scheduler.run(executor);
+      assertTrue(scheduler.getCpuMillis("a") >= 200);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  public void testUnknownDependencyIsRejected() {
+    StepScheduler scheduler = new StepScheduler();
+    try {
+      scheduler.add("a", () -> {
+      }, "missing");
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.StringReader;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+
+import junit.framework.TestCase;
+
+public class StringPoolTest extends TestCase
+{
+  private static final String CODESET_XML = "<codeset><label>NDC</label>"
+      + "<type>VACCINATION_NDC_CODE_UNIT_OF_SALE</type>"
+      + "<code><value>00006-4981-00</value><code-status><status>Valid</status></code-status>"
+      + "<reference><link-to codeset=\"VACCINATION_CVX_CODE\">08</link-to></reference></code>"
+      + "<code><value>00006-4981-01</value><code-status><status>Valid</status></code-status>"
+      + "<reference><link-to codeset=\"VACCINATION_CVX_CODE\">08</link-to></reference></code>"
+      + "</codeset>";
+
+  public void testIntern() {
+    StringPool stringPool = new StringPool();
+    String first = new String("VACCINATION_CVX_CODE");
+    String second = new String("VACCINATION_CVX_CODE");
+    assertSame(first, stringPool.intern(first));
+    assertSame(first, stringPool.intern(second));
+    assertSame(first, stringPool.intern(first));
+    assertNull(stringPool.intern(null));
+    assertEquals(1, stringPool.size());
+    assertEquals(3, stringPool.getLookupCount());
+    assertEquals(1, stringPool.getDuplicateCount());
+    assertEquals(StringPool.estimateSize(second), stringPool.getBytesSaved());
+  }
+
+  public void testEstimateSize() {
+    assertTrue(StringPool.estimateSize("") >= 40);
+    assertTrue(StringPool.estimateSize("12345678901234567890") > StringPool.estimateSize("1"));
+    assertEquals(0, StringPool.estimateSize("VACCINATION_CVX_CODE") % 8);
+  }
+
+  public void testUnmarshal() throws Exception {
+    StringPool stringPool = new StringPool();
+    Unmarshaller unmarshaller = JAXBContext.newInstance(Codeset.class).createUnmarshaller();
+    unmarshaller.setListener(stringPool.createListener());
+    Codeset codeset = (Codeset) unmarshaller.unmarshal(new StringReader(CODESET_XML));
+    Codeset.Code first = codeset.getCode().get(0);
+    Codeset.Code second = codeset.getCode().get(1);
+    assertSame(first.getCodeStatus().getStatus(), second.getCodeStatus().getStatus());
+    Codeset.Code.Reference.LinkTo firstLink = first.getReference().getLinkTo().get(0);
+    Codeset.Code.Reference.LinkTo secondLink = second.getReference().getLinkTo().get(0);
+    assertSame(firstLink.getCodeset(), secondLink.getCodeset());
+    assertSame(firstLink.getValue(), secondLink.getValue());
+    assertEquals("08", secondLink.getValue());
+    assertEquals(3, stringPool.getDuplicateCount());
+  }
+}
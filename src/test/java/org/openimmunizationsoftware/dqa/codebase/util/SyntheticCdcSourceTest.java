@@ -0,0 +1,106 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codeset.Codeset;
+
+import junit.framework.TestCase;
+
+public class SyntheticCdcSourceTest extends TestCase
+{
+  private static final String[] SOURCE_FILES = { "cvx.xml", "mvx.xml", "vac2vg.xml", "cpt.xml", "tradename.xml",
+      "cvxvis.xml", "NDC_Unit_sale.txt", "NDC_Unit_use.txt", "NDC_Linker.txt" };
+
+  private final TempFiles tempFiles = new TempFiles();
+
+  @Override
+  protected void tearDown() throws Exception {
+    tempFiles.deleteAll();
+    super.tearDown();
+  }
+
+  private File write(long seed) throws Exception {
+    File dir = tempFiles.createDirectory("synthetic");
+    SyntheticCdcSource source = new SyntheticCdcSource(seed);
+    source.setScale(0.05);
+    source.write(dir);
+    assertTrue(source.getRecordCount() > 0);
+    return dir;
+  }
+
+  public void testSameSeedWritesSameFiles() throws Exception {
+    File first = write(7);
+    File second = write(7);
+    for (String filename : SOURCE_FILES) {
+      byte[] firstBytes = Files.readAllBytes(new File(first, "cdc-source/" + filename).toPath());
+      byte[] secondBytes = Files.readAllBytes(new File(second, "cdc-source/" + filename).toPath());
+      assertTrue(filename, firstBytes.length > 0);
+      assertTrue(filename, Arrays.equals(firstBytes, secondBytes));
+    }
+  }
+
+  public void testUpdateRunsOnSyntheticSource() throws Exception {
+    File dir = write(3);
+    CodesetIO codesetIO = new CodesetIO();
+    File ndcFile = new File(dir, "base/sets/Vaccination NDC Code Unit-of-Sale.xml");
+    int before = codesetIO.unmarshal(ndcFile).getCode().size();
+    File sourceDir = new File(dir, "cdc-source");
+    String[] sourceFilenames = sourceDir.list();
+    new UpdateFromCDCSource(new String[] { dir.getPath() }).go();
+    Codeset after = codesetIO.unmarshal(ndcFile);
+    assertTrue(after.getCode().size() > before);
+    assertEquals(sourceFilenames.length, sourceDir.list().length);
+
+    File reportFile = new File(dir, "report.json");
+    new UpdateFromCDCSource(new String[] { UpdateFromCDCSource.OPTION_REPORT + reportFile.getPath(), dir.getPath() })
+        .go();
+    assertTrue(reportFile.length() > 0);
+  }
+
+  public void testIncrementalUpdateMatchesFullUpdate() throws Exception {
+    File full = write(5);
+    File incremental = write(5);
+    File changed = write(6);
+    for (int pass = 0; pass < 2; pass++) {
+      if (pass == 1) {
+        // only the manufacturers change between the two runs
+        for (File dir : new File[] { full, incremental }) {
+          Files.copy(new File(changed, "cdc-source/mvx.xml").toPath(), new File(dir, "cdc-source/mvx.xml").toPath(),
+              StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+      new UpdateFromCDCSource(new String[] { full.getPath() }).go();
+      new UpdateFromCDCSource(new String[] { UpdateFromCDCSource.OPTION_INCREMENTAL, incremental.getPath() }).go();
+      for (String filename : new File(full, "base/sets").list()) {
+        byte[] fullBytes = Files.readAllBytes(new File(full, "base/sets/" + filename).toPath());
+        byte[] incrementalBytes = Files.readAllBytes(new File(incremental, "base/sets/" + filename).toPath());
+        assertTrue("Pass " + pass + ": " + filename, Arrays.equals(fullBytes, incrementalBytes));
+      }
+    }
+  }
+
+  public void testRejectsBadSettings() {
+    SyntheticCdcSource source = new SyntheticCdcSource(1);
+    try {
+      source.setScale(0);
+      fail();
+    } catch (IllegalArgumentException iae) {
+      // expected
+    }
+    try {
+      source.setFanOut(SyntheticCdcSource.MAX_FAN_OUT + 1);
+      fail();
+    } catch (IllegalArgumentException iae) {
+      // expected
+    }
+    try {
+      source.setSkew(-1);
+      fail();
+    } catch (IllegalArgumentException iae) {
+      // expected
+    }
+  }
+}
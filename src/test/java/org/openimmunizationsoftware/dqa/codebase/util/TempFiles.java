@@ -0,0 +1,46 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates temporary files and directories for a test and deletes them, with
+ * everything written into the directories, when the test calls
+ * {@link #deleteAll()} from its tearDown.
+ */
+class TempFiles
+{
+  private final List<File> fileList = new ArrayList<>();
+
+  File createFile(String prefix, String suffix) throws IOException {
+    File file = File.createTempFile(prefix, suffix);
+    fileList.add(file);
+    return file;
+  }
+
+  File createDirectory(String prefix) throws IOException {
+    File dir = Files.createTempDirectory(prefix).toFile();
+    fileList.add(dir);
+    return dir;
+  }
+
+  void deleteAll() {
+    for (File file : fileList) {
+      delete(file);
+    }
+    fileList.clear();
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,81 @@
+package org.openimmunizationsoftware.dqa.codebase.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+
+import org.openimmunizationsoftware.dqa.codebase.util.UseDateValidator.Validity;
+import org.openimmunizationsoftware.dqa.codebase.util.gen.codebase.Codebase;
+
+import junit.framework.TestCase;
+
+public class UseDateValidatorTest extends TestCase
+{
+  private final TempFiles tempFiles = new TempFiles();
+
+  @Override
+  protected void tearDown() throws Exception {
+    tempFiles.deleteAll();
+    super.tearDown();
+  }
+
+  private static Codebase createCodebase() {
+    Codebase.Codeset codeset = new Codebase.Codeset();
+    codeset.setType("VACCINATION_CVX_CODE");
+    Codebase.Codeset.Code limited = new Codebase.Codeset.Code();
+    limited.setValue("08");
+    Codebase.Codeset.Code.UseDate useDate = new Codebase.Codeset.Code.UseDate();
+    useDate.setNotBefore("19810101");
+    useDate.setNotExpectedBefore("19900101");
+    useDate.setNotExpectedAfter("20101231");
+    useDate.setNotAfter("20151231");
+    limited.setUseDate(useDate);
+    codeset.getCode().add(limited);
+    Codebase.Codeset.Code open = new Codebase.Codeset.Code();
+    open.setValue("998");
+    Codebase.Codeset.Code.UseDate textDate = new Codebase.Codeset.Code.UseDate();
+    textDate.setNotAfter("someday");
+    open.setUseDate(textDate);
+    codeset.getCode().add(open);
+    Codebase codebase = new Codebase();
+    codebase.getCodeset().add(codeset);
+    return codebase;
+  }
+
+  private static void assertClassifies(UseDateValidator validator) {
+    String cvx = "VACCINATION_CVX_CODE";
+    assertEquals(Validity.NOT_YET, validator.classify(cvx, "08", 19801231));
+    assertEquals(Validity.NOT_EXPECTED_YET, validator.classify(cvx, "08", 19810101));
+    assertEquals(Validity.VALID, validator.classify(cvx, "08", 19900101));
+    assertEquals(Validity.VALID, validator.classify(cvx, "08", 20101231));
+    assertEquals(Validity.EXPECTED_EXPIRED, validator.classify(cvx, "08", 20151231));
+    assertEquals(Validity.EXPIRED, validator.classify(cvx, "08", 20160101));
+    assertEquals(Validity.VALID, validator.classify(cvx, "998", 99991231));
+    assertNull(validator.classify(cvx, "99", 20000101));
+    assertNull(validator.classify("MISSING", "08", 20000101));
+  }
+
+  public void testClassify() {
+    assertClassifies(new UseDateValidator(createCodebase()));
+  }
+
+  public void testClassifyFromCompiledCodebase() throws Exception {
+    File binaryFile = tempFiles.createFile("Compiled", ".bin");
+    new CompiledCodebaseWriter().write(createCodebase(), 0, 0, binaryFile);
+    assertClassifies(new UseDateValidator(CompiledCodebase.open(binaryFile)));
+  }
+
+  public void testClassifyBatch() {
+    UseDateValidator validator = new UseDateValidator(createCodebase());
+    Validity[] results = validator.classify("VACCINATION_CVX_CODE", new String[] { "08", "99", "08", null },
+        new int[] { 20000101, 20000101, 20200101, 20000101 });
+    assertEquals(Arrays.asList(Validity.VALID, null, Validity.EXPIRED, null), Arrays.asList(results));
+    assertEquals(Arrays.asList(null, null), Arrays.asList(validator.classify("MISSING", new String[] { "08", "08" },
+        new int[] { 20000101, 20000101 })));
+  }
+
+  public void testPack() {
+    assertEquals(20240229, UseDateValidator.pack(2024, 2, 29));
+    assertEquals(20240229, UseDateValidator.pack(new GregorianCalendar(2024, 1, 29).getTime()));
+  }
+}